@@ -0,0 +1,113 @@
+package com.cardbot.bench;
+
+import com.cardbot.bot.UpdateDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Сравнение путей приёма update:
+ * <ul>
+ *   <li>sequential — один поток обрабатывает пачки getUpdates по очереди, как DefaultBotSession без диспетчера;</li>
+ *   <li>polling — поток чтения раскладывает пачки по полосам UpdateDispatcher, ожидая места в очереди;</li>
+ *   <li>webhook — каждый update ставится в UpdateDispatcher без ожидания, отказ повторяется как повторная доставка.</li>
+ * </ul>
+ * Update распределены по chats чатам.
+ * <p>
+ * Все update поступают одной пачкой; задержка считается от её прихода до конца обработки.
+ * Обработчик имитирует работу с БД и Telegram API задержкой; каждый slowEvery-й update медленный.
+ * Запуск:
+ * <pre>
+ * mvn -Pbench test-compile exec:java -Dexec.mainClass=com.cardbot.bench.IngestionBenchmark \
+ *     -Dupdates=5000 -Dchats=500 -DhandlerMs=5 -DslowEvery=100 -DslowMs=200 -Dconcurrency=16
+ * </pre>
+ */
+public final class IngestionBenchmark {
+
+    private static final int POLLING_BATCH = 100;
+
+    private final int updates = Integer.getInteger("updates", 5000);
+    private final int chats = Integer.getInteger("chats", 500);
+    private final long handlerNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("handlerMs", 5));
+    private final int slowEvery = Integer.getInteger("slowEvery", 100);
+    private final long slowNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("slowMs", 200));
+    private final int concurrency = Integer.getInteger("concurrency", 16);
+    private final int queueCapacity = Integer.getInteger("queueCapacity", 1000);
+
+    public static void main(String[] args) throws InterruptedException {
+        IngestionBenchmark bench = new IngestionBenchmark();
+        System.out.printf("updates=%d chats=%d handler=%dms slow=1/%d по %dms concurrency=%d%n",
+                bench.updates, bench.chats, TimeUnit.NANOSECONDS.toMillis(bench.handlerNanos), bench.slowEvery,
+                TimeUnit.NANOSECONDS.toMillis(bench.slowNanos), bench.concurrency);
+        bench.report("sequential", bench.runSequential());
+        bench.report("polling", bench.runDispatched(false));
+        bench.report("webhook", bench.runDispatched(true));
+    }
+
+    private Result runSequential() {
+        long[] latencies = new long[updates];
+        long start = System.nanoTime();
+        for (int batchStart = 0; batchStart < updates; batchStart += POLLING_BATCH) {
+            int batchEnd = Math.min(updates, batchStart + POLLING_BATCH);
+            for (int i = batchStart; i < batchEnd; i++) {
+                handle(i);
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        return new Result(latencies, System.nanoTime() - start);
+    }
+
+    private Result runDispatched(boolean webhook) throws InterruptedException {
+        long[] latencies = new long[updates];
+        CountDownLatch done = new CountDownLatch(updates);
+        UpdateDispatcher dispatcher = new UpdateDispatcher(concurrency, queueCapacity, new SimpleMeterRegistry());
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            int updateNo = i;
+            long chatId = i % chats;
+            Runnable task = () -> {
+                handle(updateNo);
+                latencies[updateNo] = System.nanoTime() - start;
+                done.countDown();
+            };
+            if (!webhook) {
+                dispatcher.dispatch(chatId, task);
+                continue;
+            }
+            // 503 от webhook — Telegram повторит доставку; здесь повторяем после короткой паузы
+            while (!dispatcher.tryDispatch(chatId, task)) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        dispatcher.shutdown();
+        return new Result(latencies, elapsed);
+    }
+
+    private void handle(int updateNo) {
+        long work = slowEvery > 0 && updateNo % slowEvery == 0 ? slowNanos : handlerNanos;
+        LockSupport.parkNanos(work);
+    }
+
+    private void report(String name, Result result) {
+        long[] sorted = result.latencies().clone();
+        Arrays.sort(sorted);
+        double seconds = result.elapsedNanos() / 1e9;
+        System.out.printf("%-10s %10.1f updates/s   p50=%8.1fms   p99=%8.1fms%n",
+                name,
+                updates / seconds,
+                percentile(sorted, 0.50) / 1e6,
+                percentile(sorted, 0.99) / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    private record Result(long[] latencies, long elapsedNanos) {}
+}
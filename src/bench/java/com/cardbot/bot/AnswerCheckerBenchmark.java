@@ -0,0 +1,45 @@
+package com.cardbot.bot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка ответа в режиме «Своё слово»: один вариант, несколько вариантов через |, промах.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AnswerCheckerBenchmark {
+
+    private String single = "яблоко";
+    private String variants = "идти|ходить|шагать|ступать";
+    private String answer = "  Шагать ";
+    private String wrong = "бежать";
+
+    @Benchmark
+    public boolean singleVariant() {
+        return AnswerChecker.isCorrect(single, "Яблоко");
+    }
+
+    @Benchmark
+    public boolean manyVariants() {
+        return AnswerChecker.isCorrect(variants, answer);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return AnswerChecker.isCorrect(variants, wrong);
+    }
+}
@@ -0,0 +1,99 @@
+package com.cardbot.bot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор callback data: прежняя цепочка startsWith/equals (строки старого формата в порядке веток
+ * бывшего handleCallback) против {@link CallbackCodec#decode} и {@link CallbackRouter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CallbackRoutingBenchmark {
+
+    /** Префикс и признак точного совпадения (equals) вместо startsWith — как в старой цепочке. */
+    private static final String[] LEGACY_CHAIN = {
+            "SHOW:", "LEARN_SET:", "LEARN_MODE:", "LEARN_INPUT:", "=LEARN_INPUT_EXIT", "=LEARN_INPUT_SKIP",
+            "=NEXT", "=END", "LSTCHOICE:", "LIST_SET:", "LIST:", "EDIT:", "MOVE:", "MOVETO:", "DEL:",
+            "DELYES:", "=REMIND_LEARN", "=DELNO", "=ADD_SET", "=ADD_DEFAULTS", "DELSET:", "DELSETYES:", "=DELSETNO",
+    };
+
+    /** Частые нажатия (показ, следующая, выбор режима) и последняя ветка старой цепочки. */
+    @Param({"SHOW", "NEXT", "LEARN_MODE", "DELETE_SET_CANCEL"})
+    public String action;
+
+    private String legacy;
+    private String encoded;
+    private CallbackRouter router;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (action) {
+            case "SHOW" -> {
+                legacy = "SHOW:123456";
+                encoded = CallbackCodec.encode(CallbackAction.SHOW, 123456);
+            }
+            case "NEXT" -> {
+                legacy = "NEXT";
+                encoded = CallbackCodec.encode(CallbackAction.NEXT);
+            }
+            case "LEARN_MODE" -> {
+                legacy = "LEARN_MODE:ALL:EN_RU:RANDOM:";
+                encoded = CallbackCodec.encode(CallbackAction.LEARN_MODE, CallbackCodec.SET_ALL,
+                        CallbackCodec.DIRECTION_EN_RU, CallbackCodec.ORDER_RANDOM, 0);
+            }
+            default -> {
+                legacy = "DELSETNO";
+                encoded = CallbackCodec.encode(CallbackAction.DELETE_SET_CANCEL);
+            }
+        }
+        router = new CallbackRouter();
+        for (CallbackAction a : CallbackAction.values()) {
+            router.on(a, (chatId, messageId, user, data) -> { });
+        }
+    }
+
+    @Benchmark
+    public Object legacyChain() {
+        for (String branch : LEGACY_CHAIN) {
+            boolean exact = branch.charAt(0) == '=';
+            String value = exact ? branch.substring(1) : branch;
+            if (exact ? value.equals(legacy) : legacy.startsWith(value)) {
+                String rest = legacy.substring(value.length());
+                if (rest.isEmpty()) {
+                    return value;
+                }
+                return rest.indexOf(':') >= 0 ? rest.split(":") : (Object) Long.parseLong(rest);
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public boolean codecAndRouter() {
+        CallbackData data = CallbackCodec.decode(encoded).orElseThrow();
+        return router.route(1L, 1, null, data);
+    }
+
+    @Benchmark
+    public boolean legacyStringViaCodec() {
+        CallbackData data = CallbackCodec.decode(legacy).orElseThrow();
+        return router.route(1L, 1, null, data);
+    }
+}
@@ -0,0 +1,39 @@
+package com.cardbot.bot;
+
+import com.cardbot.model.CardSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка Markdown-текста карточки, который отправляется на каждом шаге повторения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CardMessageBenchmark {
+
+    private final CardSnapshot card = new CardSnapshot(42L, "accomplishment", "достижение|свершение", "əˈkʌmplɪʃmənt");
+    private final CardSnapshot bare = new CardSnapshot(43L, "apple", "яблоко", null);
+
+    @Benchmark
+    public String enRuWithTranscriptionAndProgress() {
+        return CardTelegramBot.learningCardText(card, LearningSession.Direction.EN_RU, "\n\n(" + 7 + "/" + 20 + ")");
+    }
+
+    @Benchmark
+    public String ruEnWithoutProgress() {
+        return CardTelegramBot.learningCardText(bare, LearningSession.Direction.RU_EN, "");
+    }
+}
@@ -0,0 +1,161 @@
+package com.cardbot.bot;
+
+import com.cardbot.CardBotApplication;
+import com.cardbot.model.Card;
+import com.cardbot.model.User;
+import com.cardbot.repository.CardRepository;
+import com.cardbot.repository.UserRepository;
+import com.cardbot.service.CardService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Память одной сессии обучения: прежнее представление (все сущности Card набора в списке, как их загружал
+ * Hibernate) против колоды {@link SessionDeck} — массив id и окно снимков после первого показа.
+ * <p>
+ * Для каждого размера набора создаётся sessions сессий, каждая со своими объектами (отдельный запрос),
+ * и печатается прирост занятой кучи после сборки мусора в пересчёте на сессию, рядом — оценка
+ * {@link LearningSession#estimatedBytes()} для метрики cardbot.sessions.estimated.bytes.
+ * Запуск (числа точнее с -XX:+UseSerialGC, чтобы сборка мусора была полной):
+ * <pre>
+ * mvn -Pbench test-compile exec:java -Dexec.mainClass=com.cardbot.bot.SessionMemoryBenchmark \
+ *     -Ddecks=50,500,5000 -Dsessions=200
+ * </pre>
+ */
+public final class SessionMemoryBenchmark {
+
+    private final int[] decks = Arrays.stream(System.getProperty("decks", "50,500,5000").split(","))
+            .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+    private final int sessions = Integer.getInteger("sessions", 200);
+
+    public static void main(String[] args) throws Exception {
+        new SessionMemoryBenchmark().run();
+    }
+
+    private void run() throws InterruptedException {
+        applyDefaults();
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(CardBotApplication.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        try {
+            JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+            CardRepository cardRepository = ctx.getBean(CardRepository.class);
+            CardService cardService = ctx.getBean(CardService.class);
+            UserRepository userRepository = ctx.getBean(UserRepository.class);
+            System.out.printf("sessions=%d%n", sessions);
+            System.out.printf("%8s  %-12s %14s %14s%n", "карточек", "сессия", "куча, байт", "оценка, байт");
+            for (int i = 0; i < decks.length; i++) {
+                int size = decks[i];
+                User user = userRepository.save(User.builder().telegramId(6_000_000L + i).username("memory" + size).build());
+                seed(jdbc, user, size);
+                List<Long> ids = cardService.findIdsByUser(user.getId(), null);
+
+                LegacySession legacy = legacySession(cardRepository, ids);
+                report(size, "List<Card>", perSession(() -> legacySession(cardRepository, ids)), legacy.estimatedBytes());
+                LearningSession session = deckSession(cardService, user, ids);
+                report(size, "SessionDeck", perSession(() -> deckSession(cardService, user, ids)), session.estimatedBytes());
+            }
+        } finally {
+            ctx.close();
+        }
+    }
+
+    private static LearningSession deckSession(CardService cardService, User user, List<Long> ids) {
+        LearningSession session = LearningSession.create(null, LearningSession.Direction.EN_RU,
+                LearningSession.Order.SEQUENTIAL, SessionDeck.inOrder(ids), null);
+        session.getDeck().next(cardIds -> cardService.findSnapshots(user.getId(), cardIds));
+        return session;
+    }
+
+    /** Прежняя сессия: LearningSession.sequentialCards со всеми сущностями набора. */
+    private static LegacySession legacySession(CardRepository cardRepository, List<Long> ids) {
+        return new LegacySession(LearningSession.create(null, LearningSession.Direction.EN_RU,
+                LearningSession.Order.SEQUENTIAL, null, null), cardRepository.findAllById(ids));
+    }
+
+    private long perSession(Supplier<Object> factory) throws InterruptedException {
+        List<Object> retained = new ArrayList<>(sessions);
+        long baseline = usedHeap();
+        for (int i = 0; i < sessions; i++) {
+            retained.add(factory.get());
+        }
+        long used = usedHeap() - baseline;
+        if (retained.size() != sessions) {
+            throw new IllegalStateException();
+        }
+        return used / sessions;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void seed(JdbcTemplate jdbc, User user, int size) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> batch = new ArrayList<>(1000);
+        for (int i = 0; i < size; i++) {
+            batch.add(new Object[]{user.getId(), "word" + i, "слово" + i, i + 1, now, now});
+            if (batch.size() == 1000 || i == size - 1) {
+                jdbc.batchUpdate("INSERT INTO cards (user_id, word, translation, user_ordinal, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static void report(int size, String name, long heapBytes, long estimatedBytes) {
+        System.out.printf("%8d  %-12s %14d %14d%n", size, name, heapBytes, estimatedBytes);
+    }
+
+    private void applyDefaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("telegram.bot.token", "123456:BENCH");
+        defaults.put("telegram.bot.api-url", "http://127.0.0.1:9/bot");
+        if (System.getProperty("spring.datasource.url") == null) {
+            defaults.put("spring.datasource.url", "jdbc:h2:mem:memory;DB_CLOSE_DELAY=-1");
+            defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            defaults.put("spring.datasource.username", "sa");
+            defaults.put("spring.datasource.password", "");
+            defaults.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+            defaults.put("spring.flyway.enabled", "false");
+        }
+        defaults.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+    }
+
+    /** Сессия до перехода на колоду: параметры и список сущностей набора. */
+    private record LegacySession(LearningSession params, List<Card> sequentialCards) {
+
+        /** Прежняя оценка LearningSession.estimatedBytes(): объект, список и сущности со строками. */
+        long estimatedBytes() {
+            long bytes = 64 + 16 + 8L * sequentialCards.size();
+            for (Card card : sequentialCards) {
+                bytes += 96 + stringBytes(card.getWord()) + stringBytes(card.getTranslation())
+                        + stringBytes(card.getTranscription());
+            }
+            return bytes;
+        }
+
+        private static long stringBytes(String s) {
+            return s == null ? 0 : 40 + 2L * s.length();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.cardbot.bot;
+
+import com.cardbot.CardBotApplication;
+import com.cardbot.model.User;
+import com.cardbot.repository.SessionStateRepository;
+import com.cardbot.repository.UserRepository;
+import io.micrometer.core.instrument.search.Search;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Несколько экземпляров бота над одной таблицей session_state: у каждого свой {@link DatabaseSessionStore}
+ * с ближним кэшем и свои потоки. Операция — как нажатие «Следующая»: get, изменение сессии, flush.
+ * <p>
+ * Сценарии: sticky — чат почти всегда обслуживает один экземпляр (балансировщик с привязкой),
+ * random — каждый update попадает на случайный экземпляр. Доля hot операций приходится на hotUsers
+ * пользователей, чтобы экземпляры писали в одни и те же строки. Печатаются операции в секунду,
+ * перцентили, доля конфликтов и попаданий в ближний кэш.
+ * <p>
+ * По умолчанию база — H2 в памяти; для PostgreSQL передать -Dspring.datasource.url=jdbc:postgresql://...
+ * Запуск:
+ * <pre>
+ * mvn -Pbench test-compile exec:java -Dexec.mainClass=com.cardbot.bot.SessionStoreContentionBenchmark \
+ *     -Dinstances=4 -Dthreads=4 -Dusers=1000 -DhotUsers=10 -Dhot=0.2 -Dops=5000
+ * </pre>
+ */
+public final class SessionStoreContentionBenchmark {
+
+    private final int instances = Integer.getInteger("instances", 4);
+    private final int threads = Integer.getInteger("threads", 4);
+    private final int users = Integer.getInteger("users", 1000);
+    private final int hotUsers = Integer.getInteger("hotUsers", 10);
+    private final double hot = Double.parseDouble(System.getProperty("hot", "0.2"));
+    private final int ops = Integer.getInteger("ops", 5000);
+
+    public static void main(String[] args) throws Exception {
+        new SessionStoreContentionBenchmark().run();
+    }
+
+    private void run() throws Exception {
+        applyDefaults();
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(CardBotApplication.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        try {
+            SessionStateRepository repository = ctx.getBean(SessionStateRepository.class);
+            long[] userIds = seedUsers(ctx.getBean(UserRepository.class));
+            System.out.printf("instances=%d threads=%d users=%d hot=%.0f%% на %d пользователей, %d операций на поток%n",
+                    instances, threads, users, hot * 100, hotUsers, ops);
+            for (String scenario : List.of("sticky", "random")) {
+                repository.deleteAll();
+                report(scenario, runScenario(scenario.equals("sticky"), repository, userIds));
+            }
+        } finally {
+            ctx.close();
+        }
+    }
+
+    private Result runScenario(boolean sticky, SessionStateRepository repository, long[] userIds)
+            throws InterruptedException {
+        List<DatabaseSessionStore<LearningSession>> nodes = new ArrayList<>();
+        List<SimpleMeterRegistry> registries = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            registries.add(registry);
+            nodes.add(new DatabaseSessionStore<>("learningSession", Duration.ofMinutes(30), 100_000,
+                    LearningSession::estimatedBytes, LearningSessionCodec.INSTANCE,
+                    (userId, session, cause) -> {}, repository, registry));
+        }
+        long[][] latencies = new long[instances * threads][ops];
+        CountDownLatch done = new CountDownLatch(instances * threads);
+        long start = System.nanoTime();
+        for (int n = 0; n < instances; n++) {
+            for (int t = 0; t < threads; t++) {
+                int node = n;
+                long[] out = latencies[n * threads + t];
+                Thread thread = new Thread(() -> {
+                    try {
+                        work(nodes, node, sticky, userIds, out);
+                    } finally {
+                        done.countDown();
+                    }
+                }, "node-" + n + "-" + t);
+                thread.start();
+            }
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        return new Result(Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray(), elapsed,
+                sum(registries, "cardbot.sessions.conflicts", null),
+                sum(registries, "cardbot.sessions.near.cache", "hit"),
+                sum(registries, "cardbot.sessions.near.cache", "miss"));
+    }
+
+    private void work(List<DatabaseSessionStore<LearningSession>> nodes, int home, boolean sticky,
+                      long[] userIds, long[] latencies) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < ops; i++) {
+            int index = random.nextDouble() < hot ? random.nextInt(hotUsers) : random.nextInt(userIds.length);
+            int node = sticky ? index % nodes.size() : random.nextInt(nodes.size());
+            if (sticky && nodes.size() > 1 && random.nextInt(100) == 0) {
+                node = home; // редкие переезды чата на другой экземпляр
+            }
+            DatabaseSessionStore<LearningSession> store = nodes.get(node);
+            long started = System.nanoTime();
+            LearningSession session = store.get(userIds[index]);
+            if (session == null) {
+                store.put(userIds[index], LearningSession.create(null, LearningSession.Direction.EN_RU,
+                        LearningSession.Order.RANDOM, null, null));
+            } else {
+                session.incrementViewedCount();
+            }
+            store.flush();
+            latencies[i] = System.nanoTime() - started;
+        }
+    }
+
+    private static double sum(List<SimpleMeterRegistry> registries, String name, String result) {
+        double total = 0;
+        for (SimpleMeterRegistry registry : registries) {
+            Search search = registry.find(name);
+            if (result != null) {
+                search = search.tag("result", result);
+            }
+            total += search.counters().stream().mapToDouble(c -> c.count()).sum();
+        }
+        return total;
+    }
+
+    private void report(String scenario, Result result) {
+        long count = result.latencies().length;
+        double seconds = result.elapsedNanos() / 1e9;
+        double reads = result.nearHits() + result.nearMisses();
+        System.out.printf("%-7s %9.0f ops/s   p50=%6.2fms   p99=%6.2fms   конфликты=%.2f%%   ближний кэш=%.1f%%%n",
+                scenario, count / seconds,
+                percentile(result.latencies(), 0.50) / 1e6, percentile(result.latencies(), 0.99) / 1e6,
+                100.0 * result.conflicts() / count,
+                reads > 0 ? 100.0 * result.nearHits() / reads : 0.0);
+    }
+
+    private long[] seedUsers(UserRepository userRepository) {
+        List<User> created = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            created.add(User.builder().telegramId(5_000_000L + i).username("bench" + i).build());
+        }
+        return userRepository.saveAll(created).stream().mapToLong(User::getId).toArray();
+    }
+
+    private void applyDefaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("telegram.bot.token", "123456:BENCH");
+        // Бот в контексте поднимается, но к Telegram не обращается: адрес заведомо недоступен
+        defaults.put("telegram.bot.api-url", "http://127.0.0.1:9/bot");
+        // Конфликты ожидаемы: не засоряем вывод предупреждениями о них и об одновременных вставках
+        defaults.put("logging.level.com.cardbot.bot.DatabaseSessionStore", "error");
+        defaults.put("logging.level.org.hibernate.engine.jdbc.spi.SqlExceptionHelper", "off");
+        if (System.getProperty("spring.datasource.url") == null) {
+            defaults.put("spring.datasource.url", "jdbc:h2:mem:sessions;DB_CLOSE_DELAY=-1");
+            defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            defaults.put("spring.datasource.username", "sa");
+            defaults.put("spring.datasource.password", "");
+            defaults.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+            defaults.put("spring.flyway.enabled", "false");
+        }
+        defaults.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    private record Result(long[] latencies, long elapsedNanos, double conflicts, double nearHits, double nearMisses) {}
+}
@@ -0,0 +1,216 @@
+package com.cardbot.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Локальная заглушка Telegram Bot API для нагрузочных прогонов.
+ * <p>
+ * Отдаёт боту update через getUpdates (long polling) и принимает sendMessage, editMessageText,
+ * deleteMessage, answerCallbackQuery, setMyCommands. Каждое отправленное или изменённое сообщение
+ * передаётся {@link Listener}, который играет роль пользователя. Лимитов Telegram заглушка не имитирует.
+ */
+final class FakeTelegramApi implements AutoCloseable {
+
+    /** Сообщение, которое бот отправил или изменил в чате. */
+    interface Listener {
+        void onMessage(long chatId, JsonNode message);
+    }
+
+    private static final long MAX_POLL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Listener listener;
+
+    private final Object updatesLock = new Object();
+    private final ArrayDeque<ObjectNode> updates = new ArrayDeque<>();
+    private int nextUpdateId = 1;
+
+    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+    private final AtomicInteger nextCallbackId = new AtomicInteger(1);
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+
+    FakeTelegramApi(int threads, Listener listener) throws IOException {
+        this.listener = listener;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /** Значение для telegram.bot.api-url. */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+    }
+
+    void sendText(long chatId, String text) {
+        ObjectNode message = message(nextMessageId.getAndIncrement(), chatId);
+        message.set("from", user(chatId));
+        message.put("text", text);
+        if (text.startsWith("/")) {
+            int end = text.indexOf(' ');
+            message.putArray("entities").addObject()
+                    .put("type", "bot_command")
+                    .put("offset", 0)
+                    .put("length", end < 0 ? text.length() : end);
+        }
+        ObjectNode update = mapper.createObjectNode();
+        update.set("message", message);
+        push(update);
+    }
+
+    void pressButton(long chatId, int messageId, String callbackData) {
+        ObjectNode callback = mapper.createObjectNode();
+        callback.put("id", String.valueOf(nextCallbackId.getAndIncrement()));
+        callback.set("from", user(chatId));
+        callback.set("message", message(messageId, chatId));
+        callback.put("chat_instance", String.valueOf(chatId));
+        callback.put("data", callbackData);
+        ObjectNode update = mapper.createObjectNode();
+        update.set("callback_query", callback);
+        push(update);
+    }
+
+    /** Число вызовов по методам Bot API. */
+    Map<String, Long> calls() {
+        Map<String, Long> result = new TreeMap<>();
+        calls.forEach((method, count) -> result.put(method, count.sum()));
+        return result;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void push(ObjectNode update) {
+        synchronized (updatesLock) {
+            update.put("update_id", nextUpdateId++);
+            updates.addLast(update);
+            updatesLock.notifyAll();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            // клиент пишет имя метода в разном регистре (getupdates, sendmessage)
+            String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+            calls.computeIfAbsent(method, m -> new LongAdder()).increment();
+            JsonNode body = readBody(exchange);
+            JsonNode result = switch (method) {
+                case "getupdates" -> getUpdates(body);
+                case "sendmessage" -> sendMessage(body);
+                case "editmessagetext" -> editMessageText(body);
+                default -> mapper.getNodeFactory().booleanNode(true);
+            };
+            ObjectNode response = mapper.createObjectNode();
+            response.put("ok", true);
+            response.set("result", result);
+            byte[] bytes = mapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        byte[] bytes = exchange.getRequestBody().readAllBytes();
+        if (bytes.length == 0) {
+            return mapper.createObjectNode();
+        }
+        return mapper.readTree(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private JsonNode getUpdates(JsonNode request) {
+        long offset = request.path("offset").asLong(0);
+        int limit = request.path("limit").asInt(100);
+        long waitMillis = Math.min(MAX_POLL_MILLIS, TimeUnit.SECONDS.toMillis(request.path("timeout").asLong(0)));
+        long deadline = System.currentTimeMillis() + waitMillis;
+        var result = mapper.createArrayNode();
+        synchronized (updatesLock) {
+            // update с id меньше offset подтверждены ботом
+            while (!updates.isEmpty() && updates.peekFirst().get("update_id").asLong() < offset) {
+                updates.pollFirst();
+            }
+            long remaining = waitMillis;
+            while (updates.isEmpty() && remaining > 0) {
+                try {
+                    updatesLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return result;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            for (ObjectNode update : updates) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(update);
+            }
+        }
+        return result;
+    }
+
+    private JsonNode sendMessage(JsonNode request) {
+        long chatId = request.path("chat_id").asLong();
+        ObjectNode message = message(nextMessageId.getAndIncrement(), chatId);
+        return deliver(chatId, message, request);
+    }
+
+    private JsonNode editMessageText(JsonNode request) {
+        long chatId = request.path("chat_id").asLong();
+        ObjectNode message = message(request.path("message_id").asInt(), chatId);
+        return deliver(chatId, message, request);
+    }
+
+    private JsonNode deliver(long chatId, ObjectNode message, JsonNode request) {
+        message.put("text", request.path("text").asText(""));
+        if (request.has("reply_markup")) {
+            message.set("reply_markup", request.get("reply_markup"));
+        }
+        listener.onMessage(chatId, message);
+        return message;
+    }
+
+    private ObjectNode message(int messageId, long chatId) {
+        ObjectNode message = mapper.createObjectNode();
+        message.put("message_id", messageId);
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.putObject("chat").put("id", chatId).put("type", "private");
+        return message;
+    }
+
+    private ObjectNode user(long id) {
+        return mapper.createObjectNode()
+                .put("id", id)
+                .put("is_bot", false)
+                .put("first_name", "Load")
+                .put("username", "load" + id);
+    }
+}
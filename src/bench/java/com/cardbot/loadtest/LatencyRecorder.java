@@ -0,0 +1,38 @@
+package com.cardbot.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Накопитель задержек в наносекундах.
+ */
+final class LatencyRecorder {
+
+    private long[] values = new long[1024];
+    private int size;
+
+    synchronized void record(long nanos) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = nanos;
+    }
+
+    synchronized int count() {
+        return size;
+    }
+
+    /** Перцентили в миллисекундах для p из [0, 1]. */
+    synchronized double[] percentilesMillis(double... ps) {
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        double[] result = new double[ps.length];
+        for (int i = 0; i < ps.length; i++) {
+            if (sorted.length == 0) {
+                continue;
+            }
+            int idx = (int) Math.ceil(ps[i] * sorted.length) - 1;
+            result[i] = sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+        }
+        return result;
+    }
+}
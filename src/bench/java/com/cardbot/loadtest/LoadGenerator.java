@@ -0,0 +1,174 @@
+package com.cardbot.loadtest;
+
+import com.cardbot.CardBotApplication;
+import com.cardbot.bot.CardTelegramBot;
+import com.cardbot.model.TemplateCard;
+import com.cardbot.model.TemplateSet;
+import com.cardbot.repository.TemplateSetRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.generics.BotSession;
+import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сквозной нагрузочный прогон: бот поднимается целиком (Spring, JPA, диспетчер, очередь отправки)
+ * и работает в режиме long polling против {@link FakeTelegramApi}. Виртуальные пользователи проходят
+ * сценарий {@link VirtualUser}; в конце печатаются update/s, перцентили задержки ответа
+ * и число SQL-запросов на update (статистика Hibernate).
+ * <p>
+ * По умолчанию база — H2 в памяти со сгенерированными стандартными наборами. Для PostgreSQL
+ * достаточно передать -Dspring.datasource.url=jdbc:postgresql://... (схема и наборы — из миграций).
+ * Любое свойство бота можно переопределить через -D, например -Dtelegram.bot.outbound.global-rate=30.
+ * Запуск:
+ * <pre>
+ * mvn -Pbench test-compile exec:java -Dexec.mainClass=com.cardbot.loadtest.LoadGenerator \
+ *     -Dusers=1000 -Dcards=10 -DthinkMs=0 -DrampUpMs=2000
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private final int users = Integer.getInteger("users", 1000);
+    private final int cards = Integer.getInteger("cards", 10);
+    private final long thinkMillis = Long.getLong("thinkMs", 0);
+    private final long rampUpMillis = Long.getLong("rampUpMs", 2000);
+    private final long timeoutSeconds = Long.getLong("timeoutSec", 300);
+    private final int templateSets = Integer.getInteger("templateSets", 3);
+    private final int templateCards = Integer.getInteger("templateCards", 50);
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+    }
+
+    private void run() throws Exception {
+        Map<Long, VirtualUser> byChat = new ConcurrentHashMap<>();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        LatencyRecorder latencies = new LatencyRecorder();
+        CountDownLatch finished = new CountDownLatch(users);
+
+        try (FakeTelegramApi api = new FakeTelegramApi(32, (chatId, message) -> {
+            VirtualUser user = byChat.get(chatId);
+            if (user != null) {
+                user.onMessage(message);
+            }
+        })) {
+            applyDefaults(api.baseUrl());
+            ConfigurableApplicationContext ctx = new SpringApplicationBuilder(CardBotApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run();
+            try {
+                seedTemplates(ctx);
+                BotSession session = new TelegramBotsApi(DefaultBotSession.class)
+                        .registerBot(ctx.getBean(CardTelegramBot.class));
+                Statistics statistics = ctx.getBean(EntityManagerFactory.class)
+                        .unwrap(SessionFactory.class).getStatistics();
+                statistics.setStatisticsEnabled(true);
+
+                List<VirtualUser> all = new ArrayList<>(users);
+                for (int i = 0; i < users; i++) {
+                    long chatId = 1_000_000L + i;
+                    VirtualUser user = new VirtualUser(chatId, cards, api, scheduler, thinkMillis, latencies, finished);
+                    byChat.put(chatId, user);
+                    all.add(user);
+                }
+
+                System.out.printf("users=%d cards=%d think=%dms rampUp=%dms api=%s%n",
+                        users, cards, thinkMillis, rampUpMillis, api.baseUrl());
+                statistics.clear();
+                long start = System.nanoTime();
+                for (int i = 0; i < users; i++) {
+                    VirtualUser user = all.get(i);
+                    long delay = users > 1 ? rampUpMillis * i / (users - 1) : 0;
+                    scheduler.schedule(user::start, delay, TimeUnit.MILLISECONDS);
+                }
+                boolean completed = finished.await(timeoutSeconds, TimeUnit.SECONDS);
+                long elapsed = System.nanoTime() - start;
+
+                report(all, latencies, statistics, api, elapsed, completed);
+                session.stop();
+            } finally {
+                scheduler.shutdownNow();
+                ctx.close();
+            }
+        }
+    }
+
+    private void applyDefaults(String apiUrl) {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("telegram.bot.token", "123456:LOADTEST");
+        defaults.put("telegram.bot.api-url", apiUrl);
+        defaults.put("telegram.bot.mode", "polling");
+        // Лимиты Telegram не мерим: интересна пропускная способность самого бота
+        defaults.put("telegram.bot.outbound.global-rate", "1000000");
+        defaults.put("telegram.bot.outbound.per-chat-rate", "1000");
+        defaults.put("telegram.bot.outbound.per-chat-burst", "1000");
+        defaults.put("telegram.bot.outbound.http-threads", "32");
+        if (System.getProperty("spring.datasource.url") == null) {
+            defaults.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+            defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            defaults.put("spring.datasource.username", "sa");
+            defaults.put("spring.datasource.password", "");
+            defaults.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+            defaults.put("spring.flyway.enabled", "false");
+        }
+        // Системные свойства старше application.yml, поэтому -D из командной строки имеют приоритет
+        defaults.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+    }
+
+    /** В H2 миграции не выполняются — стандартные наборы генерируются, чтобы /learn было что показывать. */
+    private void seedTemplates(ConfigurableApplicationContext ctx) {
+        TemplateSetRepository repository = ctx.getBean(TemplateSetRepository.class);
+        if (repository.count() > 0) {
+            return;
+        }
+        for (int s = 0; s < templateSets; s++) {
+            TemplateSet set = TemplateSet.builder().name("Load set " + s).sortOrder(s).build();
+            for (int c = 0; c < templateCards; c++) {
+                set.getCards().add(TemplateCard.builder()
+                        .templateSet(set)
+                        .word("word" + s + "_" + c)
+                        .translation("слово" + s + "_" + c)
+                        .build());
+            }
+            repository.save(set);
+        }
+    }
+
+    private void report(List<VirtualUser> all, LatencyRecorder latencies, Statistics statistics,
+                        FakeTelegramApi api, long elapsedNanos, boolean completed) {
+        long stuck = all.stream().filter(u -> !u.isDone()).count();
+        if (!completed) {
+            all.stream().filter(u -> !u.isDone()).limit(5)
+                    .forEach(u -> System.out.println("не завершён, шаг " + u.progress()));
+        }
+        int updates = latencies.count();
+        double seconds = elapsedNanos / 1e9;
+        double[] p = latencies.percentilesMillis(0.50, 0.95, 0.99);
+        System.out.printf("завершено %d/%d пользователей за %.1f с (%d update на сценарий)%n",
+                all.size() - stuck, all.size(), seconds, all.get(0).updatesPerScenario());
+        System.out.printf("%.1f updates/s   p50=%.1fms   p95=%.1fms   p99=%.1fms%n",
+                updates / seconds, p[0], p[1], p[2]);
+        System.out.printf("SQL: %d запросов, %.1f на update%n",
+                statistics.getPrepareStatementCount(),
+                updates > 0 ? (double) statistics.getPrepareStatementCount() / updates : 0.0);
+        System.out.println("Bot API: " + api.calls());
+    }
+}
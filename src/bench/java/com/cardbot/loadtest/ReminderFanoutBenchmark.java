@@ -0,0 +1,121 @@
+package com.cardbot.loadtest;
+
+import com.cardbot.CardBotApplication;
+import com.cardbot.bot.OutboundMessageQueue;
+import com.cardbot.service.ReminderService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Пропускная способность рассылки напоминаний против {@link FakeTelegramApi}, который отвечает на каждый
+ * sendMessage через latencyMs: прежняя отправка по одному с ожиданием ответа против
+ * {@link ReminderService#sendDueReminders()} (параллельная отправка порциями, фиксация порции транзакцией).
+ * <p>
+ * Лимит Telegram (~30 сообщений/с на бота) здесь снят, чтобы было видно, во что упирается сам бот;
+ * в бою темп ограничивает cardbot.reminders.rate. Запуск:
+ * <pre>
+ * mvn -Pbench test-compile exec:java -Dexec.mainClass=com.cardbot.loadtest.ReminderFanoutBenchmark \
+ *     -Dusers=5000 -DlatencyMs=50 -Dcardbot.reminders.rate=1000
+ * </pre>
+ */
+public final class ReminderFanoutBenchmark {
+
+    private final int users = Integer.getInteger("users", 5000);
+    private final long latencyMillis = Long.getLong("latencyMs", 50);
+    private final int sequentialUsers = Integer.getInteger("sequentialUsers", 500);
+
+    public static void main(String[] args) throws Exception {
+        new ReminderFanoutBenchmark().run();
+    }
+
+    private void run() throws Exception {
+        try (FakeTelegramApi api = new FakeTelegramApi(64, (chatId, message) ->
+                LockSupport.parkNanos(latencyMillis * 1_000_000))) {
+            applyDefaults(api.baseUrl());
+            ConfigurableApplicationContext ctx = new SpringApplicationBuilder(CardBotApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run();
+            try {
+                List<Long> chats = seed(ctx.getBean(JdbcTemplate.class));
+                System.out.printf("users=%d latency=%dms rate=%s chunk=%s%n", users, latencyMillis,
+                        System.getProperty("cardbot.reminders.rate"), System.getProperty("cardbot.reminders.chunk-size"));
+
+                OutboundMessageQueue outbound = ctx.getBean(OutboundMessageQueue.class);
+                int sequential = Math.min(sequentialUsers, chats.size());
+                long start = System.nanoTime();
+                for (Long chatId : chats.subList(0, sequential)) {
+                    outbound.send(SendMessage.builder().chatId(chatId.toString()).text("⏰").build()).join();
+                }
+                report("по одному", sequential, System.nanoTime() - start);
+
+                long before = api.calls().getOrDefault("sendmessage", 0L);
+                start = System.nanoTime();
+                ctx.getBean(ReminderService.class).sendDueReminders();
+                long elapsed = System.nanoTime() - start;
+                report("порциями", api.calls().getOrDefault("sendmessage", 0L) - before, elapsed);
+            } finally {
+                ctx.close();
+            }
+        }
+    }
+
+    /** Пользователи с одной карточкой, без статистики и с наступившим напоминанием — все попадают в рассылку. */
+    private List<Long> seed(JdbcTemplate jdbc) {
+        long firstChat = jdbc.queryForObject("SELECT COALESCE(MAX(telegram_id), 0) + 1 FROM users", Long.class);
+        long firstUserId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class);
+        Timestamp now = Timestamp.from(Instant.now());
+        Timestamp due = Timestamp.from(Instant.now().minusSeconds(60));
+        List<Object[]> batch = new ArrayList<>();
+        List<Long> chats = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            batch.add(new Object[]{firstChat + i, due, now});
+            chats.add(firstChat + i);
+        }
+        jdbc.batchUpdate("INSERT INTO users (telegram_id, next_reminder_at, created_at) VALUES (?, ?, ?)", batch);
+        jdbc.update("INSERT INTO cards (user_id, word, translation, user_ordinal, created_at, updated_at) "
+                + "SELECT id, 'word', 'слово', 1, created_at, created_at FROM users WHERE id > ?", firstUserId);
+        return chats;
+    }
+
+    private static void report(String name, long sent, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%-10s отправлено=%d  за %.2fs  %.1f напоминаний/с%n", name, sent, seconds, sent / seconds);
+    }
+
+    private void applyDefaults(String apiUrl) {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("telegram.bot.token", "123456:LOADTEST");
+        defaults.put("telegram.bot.api-url", apiUrl);
+        defaults.put("telegram.bot.mode", "polling");
+        defaults.put("telegram.bot.outbound.global-rate", "1000000");
+        defaults.put("telegram.bot.outbound.http-threads", "64");
+        defaults.put("cardbot.reminders.rate", "1000");
+        defaults.put("cardbot.reminders.chunk-size", "1000");
+        // тик запускается вручную, чтобы замер не делил корзину с планировщиком
+        defaults.put("cardbot.reminders.cron", "-");
+        if (System.getProperty("spring.datasource.url") == null) {
+            defaults.put("spring.datasource.url", "jdbc:h2:mem:reminders;DB_CLOSE_DELAY=-1");
+            defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            defaults.put("spring.datasource.username", "sa");
+            defaults.put("spring.datasource.password", "");
+            defaults.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+            defaults.put("spring.flyway.enabled", "false");
+        }
+        defaults.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+    }
+}
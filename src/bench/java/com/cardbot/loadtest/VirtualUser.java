@@ -0,0 +1,135 @@
+package com.cardbot.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пользователь, проходящий сценарий: /start → /learn → выбор набора и режима →
+ * N раз «Показать перевод» / «Следующая» → «Закончить» → /stats.
+ * <p>
+ * Кнопки выбираются по тексту, как это делает человек, а не по callback data —
+ * сценарий не зависит от формата callback. Следующий шаг выполняется, когда в чат пришло
+ * сообщение, которое ждёт текущий шаг; время от отправки update до этого сообщения — задержка шага.
+ */
+final class VirtualUser {
+
+    private record Step(String input, boolean click, String expectButton, String expectText) {
+
+        static Step send(String text, String expectButton, String expectText) {
+            return new Step(text, false, expectButton, expectText);
+        }
+
+        static Step click(String button, String expectButton, String expectText) {
+            return new Step(button, true, expectButton, expectText);
+        }
+
+        boolean matches(JsonNode message) {
+            if (expectText != null && !message.path("text").asText().contains(expectText)) {
+                return false;
+            }
+            return expectButton == null || findButton(message, expectButton) != null;
+        }
+    }
+
+    private final long chatId;
+    private final FakeTelegramApi api;
+    private final ScheduledExecutorService scheduler;
+    private final long thinkMillis;
+    private final LatencyRecorder latencies;
+    private final CountDownLatch finished;
+    private final List<Step> steps;
+
+    private int current = -1;
+    private long sentAt;
+    private boolean done;
+
+    VirtualUser(long chatId, int cards, FakeTelegramApi api, ScheduledExecutorService scheduler,
+                long thinkMillis, LatencyRecorder latencies, CountDownLatch finished) {
+        this.chatId = chatId;
+        this.api = api;
+        this.scheduler = scheduler;
+        this.thinkMillis = thinkMillis;
+        this.latencies = latencies;
+        this.finished = finished;
+        this.steps = scenario(cards);
+    }
+
+    private static List<Step> scenario(int cards) {
+        List<Step> steps = new ArrayList<>();
+        steps.add(Step.send("/start", null, "Привет"));
+        steps.add(Step.send("/learn", "📚 Все карточки", null));
+        steps.add(Step.click("📚 Все карточки", "🔄 Повторение EN→RU", null));
+        steps.add(Step.click("🔄 Повторение EN→RU", "Показать перевод", null));
+        for (int i = 0; i < cards; i++) {
+            steps.add(Step.click("Показать перевод", "Следующая", null));
+            steps.add(Step.click("Следующая", "Показать перевод", null));
+        }
+        steps.add(Step.click("Закончить", null, "Сессия завершена"));
+        steps.add(Step.send("/stats", null, "📊 Статистика"));
+        return steps;
+    }
+
+    int updatesPerScenario() {
+        return steps.size();
+    }
+
+    synchronized boolean isDone() {
+        return done;
+    }
+
+    synchronized String progress() {
+        return (current + 1) + "/" + steps.size();
+    }
+
+    void start() {
+        perform(null);
+    }
+
+    /** Вызывается заглушкой API для каждого сообщения бота в этом чате. */
+    void onMessage(JsonNode message) {
+        synchronized (this) {
+            if (done || current < 0 || !steps.get(current).matches(message)) {
+                return;
+            }
+            latencies.record(System.nanoTime() - sentAt);
+            if (current == steps.size() - 1) {
+                done = true;
+                finished.countDown();
+                return;
+            }
+        }
+        if (thinkMillis > 0) {
+            scheduler.schedule(() -> perform(message), thinkMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(() -> perform(message));
+        }
+    }
+
+    private synchronized void perform(JsonNode lastMessage) {
+        current++;
+        Step step = steps.get(current);
+        sentAt = System.nanoTime();
+        if (!step.click()) {
+            api.sendText(chatId, step.input());
+            return;
+        }
+        JsonNode button = findButton(lastMessage, step.input());
+        api.pressButton(chatId, lastMessage.path("message_id").asInt(), button.path("callback_data").asText());
+    }
+
+    private static JsonNode findButton(JsonNode message, String text) {
+        for (JsonNode row : message.path("reply_markup").path("inline_keyboard")) {
+            for (JsonNode button : row) {
+                if (text.equals(button.path("text").asText())) {
+                    return button;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,71 @@
+package com.cardbot.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ввода /add: одна строка и массовая загрузка из 10 000 строк
+ * (разбиение на строки — как в createBulkFromInput).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CardParsingBenchmark {
+
+    private static final int BULK_LINES = 10_000;
+
+    private final CardService cardService = new CardService(null, null, null, null, null);
+
+    private String line;
+    private String lineWithSet;
+    private String bulk;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        line = "accomplishment — достижение";
+        lineWithSet = "Работа: accomplishment - достижение";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < BULK_LINES; i++) {
+            if (i % 3 == 0) {
+                sb.append("Набор ").append(i % 10).append(": ");
+            }
+            sb.append("word").append(i).append(i % 2 == 0 ? " — " : " - ").append("слово").append(i).append('\n');
+        }
+        bulk = sb.toString();
+    }
+
+    @Benchmark
+    public Object singleLine() {
+        return cardService.parseCardInput(line);
+    }
+
+    @Benchmark
+    public Object singleLineWithSet() {
+        return cardService.parseCardInputWithSet(lineWithSet);
+    }
+
+    @Benchmark
+    public void bulk10k(Blackhole bh) {
+        for (String l : bulk.split("\\r?\\n")) {
+            String trimmed = l.trim();
+            if (!trimmed.isEmpty()) {
+                bh.consume(cardService.parseCardInputWithSet(trimmed));
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.cardbot.service;
+
+import com.cardbot.CardBotApplication;
+import com.cardbot.model.User;
+import com.cardbot.repository.UserRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Выбор случайной карточки на колодах разного размера: прежний ORDER BY RANDOM() LIMIT 1
+ * против {@link CardService#getRandomCard(User)} (случайный номер по индексу (user_id, user_ordinal)).
+ * <p>
+ * foreignEvery > 0 вставляет после каждой карточки столько же чужих — id колоды становятся разреженными,
+ * как у пользователя, добавлявшего карточки по одной. templateCards > 0 — раскладка «шаблон + добавления»:
+ * первые templateCards карточек идут подряд в наборе, как шаблонные наборы при регистрации, остальные
+ * без набора вперемешку с чужими; дополнительно меряются выбор из набора и из карточек без набора.
+ * Для колоды до 1000 карточек считается χ² частот выпадения (при равномерном выборе около числа
+ * степеней свободы).
+ * <p>
+ * Цифры имеют смысл на PostgreSQL:
+ * <pre>
+ * mvn -Pbench test-compile exec:java -Dexec.mainClass=com.cardbot.service.RandomCardBenchmark \
+ *     -Dspring.datasource.url=jdbc:postgresql://localhost:5432/cardbot_bench -Ddecks=100,10000,100000 -Ddraws=500 \
+ *     -DtemplateCards=200 -DforeignEvery=20
+ * </pre>
+ */
+public final class RandomCardBenchmark {
+
+    private final int[] decks = Arrays.stream(System.getProperty("decks", "100,10000,100000").split(","))
+            .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+    private final int draws = Integer.getInteger("draws", 500);
+    private final int warmup = Integer.getInteger("warmup", 200);
+    private final int foreignEvery = Integer.getInteger("foreignEvery", 0);
+    private final int templateCards = Integer.getInteger("templateCards", 0);
+    private final int uniformityDraws = Integer.getInteger("uniformityDraws", 20_000);
+
+    public static void main(String[] args) throws Exception {
+        new RandomCardBenchmark().run();
+    }
+
+    private void run() {
+        applyDefaults();
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(CardBotApplication.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        try {
+            JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+            CardService cardService = ctx.getBean(CardService.class);
+            UserRepository userRepository = ctx.getBean(UserRepository.class);
+            // В H2 схема создаётся из сущностей, без индексов из миграций
+            jdbc.execute("CREATE INDEX IF NOT EXISTS idx_cards_user_id_id ON cards(user_id, id)");
+            jdbc.execute("CREATE INDEX IF NOT EXISTS idx_cards_user_set_id ON cards(user_id, set_id, id)");
+            jdbc.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_cards_user_ordinal ON cards(user_id, user_ordinal)");
+            System.out.printf("draws=%d foreignEvery=%d templateCards=%d%n", draws, foreignEvery, templateCards);
+            for (int i = 0; i < decks.length; i++) {
+                int size = decks[i];
+                User user = userRepository.save(User.builder().telegramId(7_000_000L + i).username("deck" + size).build());
+                User foreign = userRepository.save(User.builder().telegramId(8_000_000L + i).username("foreign" + size).build());
+                Long setId = seed(jdbc, user, foreign, size);
+                jdbc.execute("ANALYZE");
+
+                report(size, "order-by-random", measure(() ->
+                        jdbc.queryForList("SELECT * FROM cards WHERE user_id = ? ORDER BY RANDOM() LIMIT 1", user.getId())));
+                report(size, "ordinal", measure(() -> cardService.getRandomCard(user)));
+                if (setId != null) {
+                    report(size, "ordinal-set", measure(() -> cardService.getRandomCard(user, setId)));
+                    if (size > templateCards) {
+                        report(size, "ordinal-no-set", measure(() -> cardService.getRandomCardWithoutSet(user)));
+                    }
+                }
+                if (size <= 1000) {
+                    System.out.printf("%8d  χ²=%.1f (степеней свободы %d)%n", size,
+                            chiSquare(size, () -> cardService.getRandomCard(user).orElseThrow().getId()), size - 1);
+                    if (setId != null && size > templateCards) {
+                        int withoutSet = size - templateCards;
+                        System.out.printf("%8d  χ² без набора=%.1f (степеней свободы %d)%n", size,
+                                chiSquare(withoutSet, () -> cardService.getRandomCardWithoutSet(user).orElseThrow().getId()),
+                                withoutSet - 1);
+                    }
+                }
+            }
+        } finally {
+            ctx.close();
+        }
+    }
+
+    /** @return id набора с шаблонными карточками или null, если templateCards = 0 */
+    private Long seed(JdbcTemplate jdbc, User user, User foreign, int size) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int template = Math.min(size, templateCards);
+        Long setId = null;
+        if (template > 0) {
+            jdbc.update("INSERT INTO card_sets (user_id, name, card_count, created_at) VALUES (?, ?, ?, ?)",
+                    user.getId(), "Шаблон", template, now);
+            setId = jdbc.queryForObject("SELECT id FROM card_sets WHERE user_id = ?", Long.class, user.getId());
+        }
+        List<Object[]> batch = new ArrayList<>(1000);
+        int foreignOrdinal = 0;
+        for (int i = 0; i < size; i++) {
+            boolean inTemplate = i < template;
+            batch.add(new Object[]{user.getId(), inTemplate ? setId : null, "word" + i, "слово" + i, i + 1, now, now});
+            for (int j = 0; !inTemplate && j < foreignEvery; j++) {
+                batch.add(new Object[]{foreign.getId(), null, "foreign" + i, "чужое" + i, ++foreignOrdinal, now, now});
+            }
+            if (batch.size() >= 1000) {
+                insert(jdbc, batch);
+            }
+        }
+        insert(jdbc, batch);
+        // карточки вставлены в обход CardService — счётчик ведём сами
+        jdbc.update("UPDATE users SET card_count = ? WHERE id = ?", size, user.getId());
+        jdbc.update("UPDATE users SET card_count = ? WHERE id = ?", foreignOrdinal, foreign.getId());
+        return setId;
+    }
+
+    private static void insert(JdbcTemplate jdbc, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbc.batchUpdate("INSERT INTO cards (user_id, set_id, word, translation, user_ordinal, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    private long[] measure(Supplier<?> draw) {
+        for (int i = 0; i < warmup; i++) {
+            draw.get();
+        }
+        long[] nanos = new long[draws];
+        for (int i = 0; i < draws; i++) {
+            long start = System.nanoTime();
+            draw.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private double chiSquare(long deck, Supplier<Long> draw) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int i = 0; i < uniformityDraws; i++) {
+            counts.merge(draw.get(), 1, Integer::sum);
+        }
+        double expected = (double) uniformityDraws / deck;
+        double chi = (deck - counts.size()) * expected;
+        for (int count : counts.values()) {
+            chi += (count - expected) * (count - expected) / expected;
+        }
+        return chi;
+    }
+
+    private void report(int size, String name, long[] sorted) {
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        System.out.printf("%8d  %-16s mean=%7.3fms   p50=%7.3fms   p99=%7.3fms%n",
+                size, name, mean / 1e6, percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6);
+    }
+
+    private void applyDefaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("telegram.bot.token", "123456:BENCH");
+        defaults.put("telegram.bot.api-url", "http://127.0.0.1:9/bot");
+        if (System.getProperty("spring.datasource.url") == null) {
+            defaults.put("spring.datasource.url", "jdbc:h2:mem:random;DB_CLOSE_DELAY=-1");
+            defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            defaults.put("spring.datasource.username", "sa");
+            defaults.put("spring.datasource.password", "");
+            defaults.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+            defaults.put("spring.flyway.enabled", "false");
+        }
+        defaults.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+}
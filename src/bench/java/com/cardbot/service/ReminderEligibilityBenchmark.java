@@ -0,0 +1,189 @@
+package com.cardbot.service;
+
+import com.cardbot.CardBotApplication;
+import com.cardbot.repository.ReminderTarget;
+import com.cardbot.repository.UserRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Стоимость минутного тика напоминаний на users пользователях: next_reminder_at равномерно разложен по суткам,
+ * тик выбирает корзину {@link UserRepository#findDueReminders} порциями по pageSize. Меряются обычная корзина
+ * (наступившая минута) и догоняющая после простоя на catchUpMinutes. Напоминания не отправляются и не переносятся —
+ * меряется только выборка.
+ * <p>
+ * Доли пользователей: withCards% с карточками; среди них activeToday% учились сегодня, остальные без статистики.
+ * <p>
+ * Цифры имеют смысл на PostgreSQL с миграциями (частичный индекс V18, индексы V11, V16):
+ * <pre>
+ * mvn -Pbench test-compile exec:java -Dexec.mainClass=com.cardbot.service.ReminderEligibilityBenchmark \
+ *     -Dspring.datasource.url=jdbc:postgresql://localhost:5432/cardbot_bench -Dusers=1000000 -DpageSize=1000
+ * </pre>
+ */
+public final class ReminderEligibilityBenchmark {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final int users = Integer.getInteger("users", 1_000_000);
+    private final int withCards = Integer.getInteger("withCards", 60);
+    private final int activeToday = Integer.getInteger("activeToday", 30);
+    private final int pageSize = Integer.getInteger("pageSize", 1000);
+    private final int catchUpMinutes = Integer.getInteger("catchUpMinutes", 60);
+    private final int iterations = Integer.getInteger("iterations", 50);
+
+    public static void main(String[] args) throws Exception {
+        new ReminderEligibilityBenchmark().run();
+    }
+
+    private void run() {
+        applyDefaults();
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(CardBotApplication.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        try {
+            JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+            UserRepository userRepository = ctx.getBean(UserRepository.class);
+            // база в будущем, чтобы корзины не смешивались с уже существующими пользователями
+            Instant base = Instant.now().plus(Duration.ofDays(2)).truncatedTo(ChronoUnit.MINUTES);
+            if (!isPostgres(jdbc)) {
+                // В H2 схема создаётся из сущностей, без индексов из миграций (и без частичных)
+                jdbc.execute("CREATE INDEX IF NOT EXISTS idx_users_next_reminder_at ON users(next_reminder_at)");
+                jdbc.execute("CREATE INDEX IF NOT EXISTS idx_cards_user_id_id ON cards(user_id, id)");
+            }
+            long seedStart = System.nanoTime();
+            seed(jdbc, base);
+            jdbc.execute("ANALYZE");
+            System.out.printf("users=%d withCards=%d%% activeToday=%d%% pageSize=%d, подготовка %.1fs%n",
+                    users, withCards, activeToday, pageSize, (System.nanoTime() - seedStart) / 1e9);
+
+            tick(userRepository, "минута", base.plus(Duration.ofMinutes(1)));
+            tick(userRepository, "догон " + catchUpMinutes + "м", base.plus(Duration.ofMinutes(catchUpMinutes)));
+        } finally {
+            ctx.close();
+        }
+    }
+
+    private void seed(JdbcTemplate jdbc, Instant base) {
+        long firstTelegramId = jdbc.queryForObject("SELECT COALESCE(MAX(telegram_id), 0) + 1 FROM users", Long.class);
+        long firstUserId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class);
+        Timestamp now = Timestamp.from(Instant.now());
+        Timestamp learnedToday = Timestamp.from(base.minus(Duration.ofMinutes(5)));
+        SplittableRandom random = new SplittableRandom(42);
+        List<Object[]> userBatch = new ArrayList<>(1000);
+        for (int i = 0; i < users; i++) {
+            Instant next = base.plusSeconds(random.nextLong(MINUTES_PER_DAY * 60L));
+            userBatch.add(new Object[]{firstTelegramId + i, Timestamp.from(next), now});
+            if (userBatch.size() == 1000) {
+                insertUsers(jdbc, userBatch);
+            }
+        }
+        insertUsers(jdbc, userBatch);
+        List<Long> ids = jdbc.queryForList("SELECT id FROM users WHERE id > ? ORDER BY id", Long.class, firstUserId);
+
+        List<Object[]> cards = new ArrayList<>(1000);
+        List<Object[]> stats = new ArrayList<>(1000);
+        for (Long id : ids) {
+            if (random.nextInt(100) < withCards) {
+                int deck = 1 + random.nextInt(3);
+                for (int c = 0; c < deck; c++) {
+                    cards.add(new Object[]{id, "word" + c, "слово" + c, c + 1, now, now});
+                }
+            }
+            if (random.nextInt(100) < activeToday) {
+                stats.add(new Object[]{id, learnedToday, now, now});
+            }
+            if (cards.size() >= 1000) {
+                insertCards(jdbc, cards);
+            }
+            if (stats.size() >= 1000) {
+                insertStats(jdbc, stats);
+            }
+        }
+        insertCards(jdbc, cards);
+        insertStats(jdbc, stats);
+    }
+
+    private static void insertUsers(JdbcTemplate jdbc, List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO users (telegram_id, next_reminder_at, created_at) VALUES (?, ?, ?)", batch);
+            batch.clear();
+        }
+    }
+
+    private static void insertCards(JdbcTemplate jdbc, List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO cards (user_id, word, translation, user_ordinal, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)", batch);
+            batch.clear();
+        }
+    }
+
+    private static void insertStats(JdbcTemplate jdbc, List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO learning_stats (user_id, cards_viewed_total, current_streak, longest_streak, "
+                    + "last_learned_at, created_at, updated_at) VALUES (?, 0, 0, 0, ?, ?, ?)", batch);
+            batch.clear();
+        }
+    }
+
+    /** Первая порция корзины на момент now: её тик выбирает снова и снова, пока корзина не опустеет. */
+    private void tick(UserRepository userRepository, String name, Instant now) {
+        // прогрев: планы запросов и JIT
+        List<ReminderTarget> page = userRepository.findDueReminders(now, Limit.of(pageSize));
+        long[] sorted = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            page = userRepository.findDueReminders(now, Limit.of(pageSize));
+            sorted[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(sorted);
+        long recipients = page.stream().filter(target -> ReminderService.needsReminder(target, now)).count();
+        System.out.printf("%-12s порция=%d (к отправке %d)  запрос p50=%.2fms p99=%.2fms max=%.2fms%n",
+                name, page.size(), recipients,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static boolean isPostgres(JdbcTemplate jdbc) {
+        return "PostgreSQL".equals(jdbc.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName()));
+    }
+
+    private void applyDefaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("telegram.bot.token", "123456:BENCH");
+        defaults.put("telegram.bot.api-url", "http://127.0.0.1:9/bot");
+        // собственный тик не должен забирать корзины во время замеров
+        defaults.put("cardbot.reminders.cron", "-");
+        if (System.getProperty("spring.datasource.url") == null) {
+            defaults.put("spring.datasource.url", "jdbc:h2:mem:reminders;DB_CLOSE_DELAY=-1");
+            defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            defaults.put("spring.datasource.username", "sa");
+            defaults.put("spring.datasource.password", "");
+            defaults.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+            defaults.put("spring.flyway.enabled", "false");
+        }
+        defaults.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,103 @@
+package com.cardbot.service;
+
+import com.cardbot.model.LearningStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Серия дней: прежний пересчёт по истории за год (непрерывная серия — обход всех дней, история через день —
+ * серия из одного дня, но сортируется всё) против чтения сохранённой серии из learning_stats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StreakBenchmark {
+
+    private static final int DAYS = 365;
+
+    private Set<LocalDate> continuous;
+    private Set<LocalDate> everyOtherDay;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        continuous = new HashSet<>();
+        everyOtherDay = new HashSet<>();
+        for (int i = 0; i < DAYS; i++) {
+            continuous.add(today.minusDays(i));
+            if (i % 2 == 0) {
+                everyOtherDay.add(today.minusDays(i));
+            }
+        }
+    }
+
+    private LearningStats stored;
+    private LocalDate today;
+
+    @Setup(Level.Trial)
+    public void setUpStored() {
+        today = LocalDate.now(ZoneOffset.UTC);
+        stored = LearningStats.builder().currentStreak(DAYS).longestStreak(DAYS).lastActiveDay(today).build();
+    }
+
+    @Benchmark
+    public int continuousYear() {
+        return legacyStreak(continuous);
+    }
+
+    @Benchmark
+    public int everyOtherDay() {
+        return legacyStreak(everyOtherDay);
+    }
+
+    @Benchmark
+    public int storedStreak() {
+        return StatsService.currentStreak(stored, today);
+    }
+
+    /** Прежний StatsService.computeStreak: сортировка дат за год и обход от последнего дня. */
+    private static int legacyStreak(Set<LocalDate> distinctDates) {
+        if (distinctDates.isEmpty()) {
+            return 0;
+        }
+        List<LocalDate> sorted = distinctDates.stream()
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate mostRecent = sorted.get(0);
+        if (mostRecent.isBefore(today.minusDays(1))) {
+            return 0;
+        }
+        int count = 0;
+        LocalDate expected = mostRecent;
+        for (LocalDate d : sorted) {
+            if (d.equals(expected)) {
+                count++;
+                expected = expected.minusDays(1);
+            } else if (d.isBefore(expected)) {
+                break;
+            }
+        }
+        return count;
+    }
+}
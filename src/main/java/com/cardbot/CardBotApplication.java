@@ -1,10 +1,13 @@
 package com.cardbot;
 
+import com.cardbot.bot.CardTelegramBot;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
@@ -14,7 +17,17 @@ public class CardBotApplication {
 
     public static void main(String[] args) throws TelegramApiException {
         ConfigurableApplicationContext ctx = SpringApplication.run(CardBotApplication.class, args);
-        TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-        botsApi.registerBot(ctx.getBean(com.cardbot.bot.CardTelegramBot.class));
+        Environment env = ctx.getEnvironment();
+        CardTelegramBot bot = ctx.getBean(CardTelegramBot.class);
+        if ("webhook".equalsIgnoreCase(env.getProperty("telegram.bot.mode", "polling"))) {
+            // Обновления приходят POST-запросами в TelegramWebhookController; без секрета контекст не поднимется
+            bot.execute(SetWebhook.builder()
+                    .url(env.getRequiredProperty("telegram.bot.webhook.url"))
+                    .secretToken(env.getRequiredProperty("telegram.bot.webhook.secret"))
+                    .build());
+        } else {
+            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
+            botsApi.registerBot(bot);
+        }
     }
 }
@@ -0,0 +1,85 @@
+package com.cardbot.bot;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link SessionStore} в памяти процесса на Caffeine.
+ * <p>
+ * Простой отсчитывается от последнего get/put. Просроченные записи снимает системный планировщик,
+ * поэтому слушатель срабатывает и для пользователя, который больше ничего не пишет.
+ * Оценка занятой памяти считается обходом записей при снятии метрики.
+ */
+@Slf4j
+class CaffeineSessionStore<V> implements SessionStore<V> {
+
+    private final Cache<Long, V> cache;
+
+    CaffeineSessionStore(String name, Duration idleTimeout, long maximumSize, ToLongFunction<V> estimator,
+                         EvictionListener<V> listener, MeterRegistry meterRegistry) {
+        this(name, idleTimeout, maximumSize, estimator, listener, meterRegistry,
+                Ticker.systemTicker(), Scheduler.systemScheduler(), Runnable::run);
+    }
+
+    CaffeineSessionStore(String name, Duration idleTimeout, long maximumSize, ToLongFunction<V> estimator,
+                         EvictionListener<V> listener, MeterRegistry meterRegistry,
+                         Ticker ticker, Scheduler scheduler, Executor executor) {
+        Counter expired = SessionStoreMeters.evicted(meterRegistry, name, "expired");
+        Counter size = SessionStoreMeters.evicted(meterRegistry, name, "size");
+        this.cache = Caffeine.newBuilder()
+                .expireAfterAccess(idleTimeout)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .scheduler(scheduler)
+                .executor(executor)
+                .<Long, V>removalListener((userId, value, cause) -> {
+                    if (!cause.wasEvicted() || userId == null || value == null) {
+                        return;
+                    }
+                    boolean bySize = cause == RemovalCause.SIZE;
+                    (bySize ? size : expired).increment();
+                    try {
+                        listener.onEvicted(userId, value, bySize ? EvictionCause.SIZE : EvictionCause.EXPIRED);
+                    } catch (RuntimeException e) {
+                        log.warn("Ошибка обработки вытеснения {} пользователя {}", name, userId, e);
+                    }
+                })
+                .build();
+        SessionStoreMeters.registerResident(meterRegistry, name, cache, estimator);
+    }
+
+    @Override
+    public V get(Long userId) {
+        return cache.getIfPresent(userId);
+    }
+
+    @Override
+    public void put(Long userId, V value) {
+        cache.put(userId, value);
+    }
+
+    @Override
+    public void remove(Long userId) {
+        cache.invalidate(userId);
+    }
+
+    @Override
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /** Выполняет отложенное обслуживание кэша (вытеснение) немедленно; для тестов. */
+    void cleanUp() {
+        cache.cleanUp();
+    }
+}
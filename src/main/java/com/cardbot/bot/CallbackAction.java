@@ -0,0 +1,102 @@
+package com.cardbot.bot;
+
+/**
+ * Действие inline-кнопки. Код записывается в callback data и уже разосланные кнопки
+ * продолжают на него ссылаться: коды не переиспользуются и не меняются, новые — только в конец.
+ */
+public enum CallbackAction {
+
+    /** Показать перевод карточки: cardId. */
+    SHOW(1, Arg.ID),
+    NEXT(2),
+    END(3),
+    /** Редактировать карточку: cardId. */
+    EDIT(4, Arg.ID),
+    /** Запросить подтверждение удаления карточки: cardId. */
+    DELETE(5, Arg.ID),
+    /** Удалить карточку: cardId. */
+    DELETE_CONFIRM(6, Arg.ID),
+    DELETE_CANCEL(7),
+    /** Страница списка: набор (см. {@link CallbackCodec#SET_ALL}), номер страницы. */
+    LIST(8, Arg.SET_CHOICE, Arg.PAGE),
+    REMIND_LEARN(9),
+    /** Выбор набора для обучения: набор. */
+    LEARN_SET(10, Arg.SET_CHOICE),
+    /** Повторение: набор, направление, порядок, цель (0 — без цели). */
+    LEARN_MODE(11, Arg.SET_CHOICE, Arg.DIRECTION, Arg.ORDER, Arg.GOAL),
+    /** Режим «Своё слово»: набор, направление, цель (0 — без цели). */
+    LEARN_INPUT(12, Arg.SET_CHOICE, Arg.DIRECTION, Arg.GOAL),
+    LEARN_INPUT_EXIT(13),
+    LEARN_INPUT_SKIP(14),
+    /** Выбор набора для списка: набор. */
+    LIST_CHOICE(15, Arg.SET_CHOICE),
+    /** Выбрать набор для переноса карточки: cardId. */
+    MOVE(16, Arg.ID),
+    /** Перенести карточку: cardId, набор ({@link CallbackCodec#SET_NONE} — без набора). */
+    MOVE_TO(17, Arg.ID, Arg.SET_CHOICE),
+    ADD_SET(18),
+    ADD_DEFAULTS(19),
+    /** Запросить подтверждение удаления набора: setId. */
+    DELETE_SET(20, Arg.ID),
+    /** Удалить набор: setId. */
+    DELETE_SET_CONFIRM(21, Arg.ID),
+    DELETE_SET_CANCEL(22),
+    /** Оценка карточки в интервальном повторении: cardId, оценка ({@link com.cardbot.service.ReviewGrade}). */
+    GRADE(23, Arg.ID, Arg.GRADE);
+
+    /** Допустимый диапазон аргумента; проверяется при декодировании. */
+    enum Arg {
+        ID(1, Long.MAX_VALUE),
+        SET_CHOICE(CallbackCodec.SET_NONE, Long.MAX_VALUE),
+        PAGE(0, 100_000),
+        DIRECTION(0, 1),
+        ORDER(0, 2),
+        GOAL(0, 10_000),
+        GRADE(0, 3);
+
+        final long min;
+        final long max;
+
+        Arg(long min, long max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        boolean accepts(long value) {
+            return value >= min && value <= max;
+        }
+    }
+
+    private static final CallbackAction[] BY_CODE;
+
+    static {
+        int max = 0;
+        for (CallbackAction action : values()) {
+            max = Math.max(max, action.code);
+        }
+        BY_CODE = new CallbackAction[max + 1];
+        for (CallbackAction action : values()) {
+            if (BY_CODE[action.code] != null) {
+                throw new IllegalStateException("Повторяющийся код callback: " + action.code);
+            }
+            BY_CODE[action.code] = action;
+        }
+    }
+
+    final int code;
+    final Arg[] args;
+
+    CallbackAction(int code, Arg... args) {
+        this.code = code;
+        this.args = args;
+    }
+
+    /** Действие по коду или null, если код неизвестен. */
+    static CallbackAction byCode(int code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    static int maxCode() {
+        return BY_CODE.length - 1;
+    }
+}
@@ -0,0 +1,246 @@
+package com.cardbot.bot;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Кодирование callback data inline-кнопок.
+ * <p>
+ * Формат: base64url без паддинга от байтов [версия][код действия][аргументы zigzag-varint...].
+ * Самая длинная кнопка (LEARN_MODE с четырьмя аргументами) занимает не больше 57 символов
+ * при лимите Telegram в 64 байта.
+ * <p>
+ * Кнопки в уже отправленных сообщениях содержат строки старого формата ("SHOW:42", "LIST_SET:7:2");
+ * они по-прежнему разбираются в те же {@link CallbackData}.
+ */
+public final class CallbackCodec {
+
+    /** Все карточки пользователя. */
+    public static final long SET_ALL = 0;
+    /** Карточки без набора. */
+    public static final long SET_NONE = -1;
+
+    public static final long DIRECTION_EN_RU = 0;
+    public static final long DIRECTION_RU_EN = 1;
+    public static final long ORDER_RANDOM = 0;
+    public static final long ORDER_SEQUENTIAL = 1;
+    public static final long ORDER_SPACED = 2;
+
+    private static final int VERSION = 1;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final Map<String, LegacyFormat> LEGACY = new HashMap<>();
+
+    static {
+        legacy("SHOW", CallbackAction.SHOW, Field.NUMBER);
+        legacy("NEXT", CallbackAction.NEXT);
+        legacy("END", CallbackAction.END);
+        legacy("EDIT", CallbackAction.EDIT, Field.NUMBER);
+        legacy("DEL", CallbackAction.DELETE, Field.NUMBER);
+        legacy("DELYES", CallbackAction.DELETE_CONFIRM, Field.NUMBER);
+        legacy("DELNO", CallbackAction.DELETE_CANCEL);
+        legacy("REMIND_LEARN", CallbackAction.REMIND_LEARN);
+        legacy("LEARN_SET", CallbackAction.LEARN_SET, Field.SET_CHOICE);
+        legacy("LEARN_MODE", CallbackAction.LEARN_MODE, Field.SET_CHOICE, Field.DIRECTION, Field.ORDER, Field.OPTIONAL_NUMBER);
+        legacy("LEARN_INPUT", CallbackAction.LEARN_INPUT, Field.SET_CHOICE, Field.DIRECTION, Field.OPTIONAL_NUMBER);
+        legacy("LEARN_INPUT_EXIT", CallbackAction.LEARN_INPUT_EXIT);
+        legacy("LEARN_INPUT_SKIP", CallbackAction.LEARN_INPUT_SKIP);
+        legacy("LIST_SET", CallbackAction.LIST, Field.NUMBER, Field.OPTIONAL_NUMBER);
+        legacy("LSTCHOICE", CallbackAction.LIST_CHOICE, Field.SET_CHOICE);
+        legacy("MOVE", CallbackAction.MOVE, Field.NUMBER);
+        legacy("MOVETO", CallbackAction.MOVE_TO, Field.NUMBER, Field.SET_CHOICE);
+        legacy("ADD_SET", CallbackAction.ADD_SET);
+        legacy("ADD_DEFAULTS", CallbackAction.ADD_DEFAULTS);
+        legacy("DELSET", CallbackAction.DELETE_SET, Field.NUMBER);
+        legacy("DELSETYES", CallbackAction.DELETE_SET_CONFIRM, Field.NUMBER);
+        legacy("DELSETNO", CallbackAction.DELETE_SET_CANCEL);
+        // "LIST:страница" и "LIST:набор:страница" разбираются отдельно, см. decodeLegacyList
+    }
+
+    private CallbackCodec() {}
+
+    public static String encode(CallbackAction action, long... args) {
+        if (args.length != action.args.length) {
+            throw new IllegalArgumentException(action + " ожидает аргументов: " + action.args.length);
+        }
+        byte[] buffer = new byte[2 + args.length * MAX_VARINT_BYTES];
+        buffer[0] = VERSION;
+        buffer[1] = (byte) action.code;
+        int pos = 2;
+        for (long arg : args) {
+            long v = (arg << 1) ^ (arg >> 63);
+            while ((v & ~0x7FL) != 0) {
+                buffer[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[pos++] = (byte) v;
+        }
+        byte[] bytes = new byte[pos];
+        System.arraycopy(buffer, 0, bytes, 0, pos);
+        return ENCODER.encodeToString(bytes);
+    }
+
+    /**
+     * Разбирает callback data. Пусто, если данные повреждены, версия или действие неизвестны,
+     * число аргументов не совпадает или аргумент вне допустимого диапазона.
+     */
+    public static Optional<CallbackData> decode(String data) {
+        if (data == null || data.isEmpty() || data.length() > 64) {
+            return Optional.empty();
+        }
+        int colon = data.indexOf(':');
+        LegacyFormat legacy = LEGACY.get(colon < 0 ? data : data.substring(0, colon));
+        if (legacy != null) {
+            return decodeLegacy(legacy, data, colon);
+        }
+        if (colon == 4 && data.startsWith("LIST")) {
+            return decodeLegacyList(data.substring(colon + 1));
+        }
+        return decodeBinary(data);
+    }
+
+    private static Optional<CallbackData> decodeBinary(String data) {
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(data);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (bytes.length < 2 || bytes[0] != VERSION) {
+            return Optional.empty();
+        }
+        CallbackAction action = CallbackAction.byCode(bytes[1] & 0xFF);
+        if (action == null) {
+            return Optional.empty();
+        }
+        long[] args = new long[action.args.length];
+        int pos = 2;
+        for (int i = 0; i < args.length; i++) {
+            long v = 0;
+            int shift = 0;
+            while (true) {
+                if (pos >= bytes.length || shift >= 7 * MAX_VARINT_BYTES) {
+                    return Optional.empty();
+                }
+                byte b = bytes[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            args[i] = (v >>> 1) ^ -(v & 1);
+        }
+        if (pos != bytes.length) {
+            return Optional.empty();
+        }
+        return validated(action, args);
+    }
+
+    private static Optional<CallbackData> decodeLegacy(LegacyFormat format, String data, int colon) {
+        String[] parts = colon < 0 ? new String[0] : data.substring(colon + 1).split(":", -1);
+        long[] args = new long[format.fields.length];
+        for (int i = 0; i < args.length; i++) {
+            String part = i < parts.length ? parts[i] : "";
+            Long value = format.fields[i].parse(part);
+            if (value == null) {
+                return Optional.empty();
+            }
+            args[i] = value;
+        }
+        return validated(format.action, args);
+    }
+
+    private static Optional<CallbackData> decodeLegacyList(String rest) {
+        String[] parts = rest.split(":", -1);
+        Long setId = parts.length >= 2 ? Field.NUMBER.parse(parts[0]) : Long.valueOf(SET_ALL);
+        Long page = Field.NUMBER.parse(parts[parts.length - 1]);
+        if (setId == null || page == null) {
+            return Optional.empty();
+        }
+        return validated(CallbackAction.LIST, new long[]{setId, page});
+    }
+
+    private static Optional<CallbackData> validated(CallbackAction action, long[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (!action.args[i].accepts(args[i])) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(new CallbackData(action, args));
+    }
+
+    public static LearningSession.Direction direction(long code) {
+        return code == DIRECTION_RU_EN ? LearningSession.Direction.RU_EN : LearningSession.Direction.EN_RU;
+    }
+
+    public static long direction(LearningSession.Direction direction) {
+        return direction == LearningSession.Direction.RU_EN ? DIRECTION_RU_EN : DIRECTION_EN_RU;
+    }
+
+    public static LearningSession.Order order(long code) {
+        if (code == ORDER_SPACED) {
+            return LearningSession.Order.SPACED;
+        }
+        return code == ORDER_SEQUENTIAL ? LearningSession.Order.SEQUENTIAL : LearningSession.Order.RANDOM;
+    }
+
+    private static void legacy(String head, CallbackAction action, Field... fields) {
+        LEGACY.put(head, new LegacyFormat(action, fields));
+    }
+
+    private record LegacyFormat(CallbackAction action, Field[] fields) {}
+
+    /** Поле строки старого формата; null — значение не разобрано. */
+    private enum Field {
+        NUMBER {
+            @Override
+            Long parse(String s) {
+                try {
+                    return Long.parseLong(s);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        },
+        OPTIONAL_NUMBER {
+            @Override
+            Long parse(String s) {
+                return s.isEmpty() ? 0L : NUMBER.parse(s);
+            }
+        },
+        SET_CHOICE {
+            @Override
+            Long parse(String s) {
+                return switch (s) {
+                    case "ALL" -> SET_ALL;
+                    case "NONE" -> SET_NONE;
+                    default -> NUMBER.parse(s);
+                };
+            }
+        },
+        DIRECTION {
+            @Override
+            Long parse(String s) {
+                return switch (s) {
+                    case "EN_RU" -> DIRECTION_EN_RU;
+                    case "RU_EN" -> DIRECTION_RU_EN;
+                    default -> null;
+                };
+            }
+        },
+        ORDER {
+            @Override
+            Long parse(String s) {
+                return "SEQ".equals(s) ? ORDER_SEQUENTIAL : ORDER_RANDOM;
+            }
+        };
+
+        abstract Long parse(String s);
+    }
+}
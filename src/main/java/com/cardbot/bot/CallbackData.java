@@ -0,0 +1,40 @@
+package com.cardbot.bot;
+
+import java.util.Arrays;
+
+/**
+ * Разобранные callback data: действие и его числовые аргументы (см. {@link CallbackAction}).
+ */
+public final class CallbackData {
+
+    private final CallbackAction action;
+    private final long[] args;
+
+    CallbackData(CallbackAction action, long[] args) {
+        this.action = action;
+        this.args = args;
+    }
+
+    public CallbackAction action() {
+        return action;
+    }
+
+    public long arg(int index) {
+        return args[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CallbackData other && action == other.action && Arrays.equals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * action.hashCode() + Arrays.hashCode(args);
+    }
+
+    @Override
+    public String toString() {
+        return action + Arrays.toString(args);
+    }
+}
@@ -0,0 +1,37 @@
+package com.cardbot.bot;
+
+import com.cardbot.model.User;
+
+/**
+ * Таблица обработчиков callback, индексированная кодом действия: выбор обработчика не зависит
+ * от числа действий и порядка их регистрации.
+ */
+final class CallbackRouter {
+
+    @FunctionalInterface
+    interface Handler {
+        void handle(Long chatId, Integer messageId, User user, CallbackData data);
+    }
+
+    private final Handler[] handlers = new Handler[CallbackAction.maxCode() + 1];
+
+    CallbackRouter on(CallbackAction action, Handler handler) {
+        if (handlers[action.code] != null) {
+            throw new IllegalStateException("Обработчик уже задан: " + action);
+        }
+        handlers[action.code] = handler;
+        return this;
+    }
+
+    /**
+     * @return false, если для действия нет обработчика
+     */
+    boolean route(Long chatId, Integer messageId, User user, CallbackData data) {
+        Handler handler = handlers[data.action().code];
+        if (handler == null) {
+            return false;
+        }
+        handler.handle(chatId, messageId, user, data);
+        return true;
+    }
+}
@@ -2,6 +2,8 @@ package com.cardbot.bot;
 
 import com.cardbot.model.Card;
 import com.cardbot.model.CardSet;
+import com.cardbot.model.CardSnapshot;
+import com.cardbot.metrics.QueryTimeTracker;
 import com.cardbot.model.User;
 import com.cardbot.service.*;
 import lombok.extern.slf4j.Slf4j;
@@ -18,12 +20,13 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMar
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 import jakarta.annotation.PostConstruct;
 
@@ -41,34 +44,19 @@ public class CardTelegramBot extends TelegramLongPollingBot {
     private static final String CMD_HELP = "/help";
     private static final String CMD_CANCEL = "/cancel";
     private static final String CMD_SETS = "/sets";
+    private static final String CMD_REMINDER = "/reminder";
+
+    private static final String REMINDER_USAGE = """
+            /reminder 9 — напоминать в 9:00
+            /reminder Europe/Moscow — часовой пояс (или смещение: +03:00)
+            /reminder 20 Asia/Almaty — час и пояс сразу
+            /reminder off — выключить""";
 
-    private static final String CB_SHOW = "SHOW:";
-    private static final String CB_NEXT = "NEXT";
-    private static final String CB_END = "END";
-    private static final String CB_EDIT = "EDIT:";
-    private static final String CB_DELETE = "DEL:";
-    private static final String CB_DEL_YES = "DELYES:";
-    private static final String CB_DEL_NO = "DELNO";
-    private static final String CB_LIST = "LIST:";
-    private static final String CB_REMIND_LEARN = "REMIND_LEARN";
-    private static final String CB_LEARN_SET = "LEARN_SET:";
-    private static final String CB_LEARN_MODE = "LEARN_MODE:";
-    private static final String CB_LEARN_INPUT = "LEARN_INPUT:";
-    private static final String CB_LEARN_INPUT_EXIT = "LEARN_INPUT_EXIT";
-    private static final String CB_LEARN_INPUT_SKIP = "LEARN_INPUT_SKIP";
-    private static final String CB_LIST_SET = "LIST_SET:";
-    private static final String CB_LIST_CHOICE = "LSTCHOICE:";
     private static final Long LEARNING_FILTER_ALL = null;
     private static final Long LEARNING_FILTER_NONE = -1L;
 
-    private static final String CB_MOVE = "MOVE:";
-    private static final String CB_MOVE_TO = "MOVETO:";
-
-    private static final String CB_ADD_SET = "ADD_SET";
-    private static final String CB_ADD_DEFAULTS = "ADD_DEFAULTS";
-    private static final String CB_DEL_SET = "DELSET:";
-    private static final String CB_DEL_SET_YES = "DELSETYES:";
-    private static final String CB_DEL_SET_NO = "DELSETNO";
+    private static final Set<String> KNOWN_COMMANDS = Set.of(
+            CMD_START, CMD_ADD, CMD_LEARN, CMD_STATS, CMD_LIST, CMD_HELP, CMD_CANCEL, CMD_SETS, CMD_REMINDER);
 
     private static final String BTN_ADD = "➕ Добавить";
     private static final String BTN_LEARN = "📚 Учить";
@@ -83,44 +71,95 @@ public class CardTelegramBot extends TelegramLongPollingBot {
     private final LearningService learningService;
     private final StatsService statsService;
     private final DefaultTopicsService defaultTopicsService;
-
-    private final Map<Long, UserState> userState = new ConcurrentHashMap<>();
-    private final Map<Long, LearningSession> learningSession = new ConcurrentHashMap<>();
+    private final SpacedRepetitionService spacedRepetitionService;
+    private final UpdateDispatcher updateDispatcher;
+    private final OutboundMessageQueue outbound;
+    private final UpdateMetrics updateMetrics;
+    private final CallbackRouter callbackRouter;
+
+    // Доступ к состоянию одного пользователя идёт только из полосы его чата (см. UpdateDispatcher);
+    // исключение — слушатель вытеснения, он работает в потоке планировщика
+    private final SessionStores sessionStores;
+    private final SessionStore<UserState> userState;
+    private final SessionStore<LearningSession> learningSession;
+    private final long sessionIdleMinutes;
 
     public CardTelegramBot(@Value("${telegram.bot.token}") String botToken,
+                          @Value("${telegram.bot.api-url:https://api.telegram.org/bot}") String apiUrl,
                           UserService userService,
                           CardService cardService,
                           CardSetService cardSetService,
                           LearningService learningService,
                           StatsService statsService,
-                          DefaultTopicsService defaultTopicsService) {
-        super(botToken);
+                          DefaultTopicsService defaultTopicsService,
+                          SpacedRepetitionService spacedRepetitionService,
+                          UpdateDispatcher updateDispatcher,
+                          OutboundMessageQueue outbound,
+                          UpdateMetrics updateMetrics,
+                          SessionStores sessionStores) {
+        super(TelegramOptions.create(apiUrl, 1), botToken);
         this.userService = userService;
         this.cardService = cardService;
         this.cardSetService = cardSetService;
         this.learningService = learningService;
         this.statsService = statsService;
         this.defaultTopicsService = defaultTopicsService;
+        this.spacedRepetitionService = spacedRepetitionService;
+        this.updateDispatcher = updateDispatcher;
+        this.outbound = outbound;
+        this.updateMetrics = updateMetrics;
+        this.callbackRouter = new CallbackRouter()
+                .on(CallbackAction.SHOW, this::onShow)
+                .on(CallbackAction.LEARN_SET, this::onLearnSet)
+                .on(CallbackAction.LEARN_MODE, this::onLearnMode)
+                .on(CallbackAction.LEARN_INPUT, this::onLearnInput)
+                .on(CallbackAction.LEARN_INPUT_EXIT, this::onLearnInputExit)
+                .on(CallbackAction.LEARN_INPUT_SKIP, this::onLearnInputSkip)
+                .on(CallbackAction.NEXT, this::onNext)
+                .on(CallbackAction.END, this::onEnd)
+                .on(CallbackAction.LIST_CHOICE, this::onListChoice)
+                .on(CallbackAction.LIST, this::onList)
+                .on(CallbackAction.EDIT, this::onEdit)
+                .on(CallbackAction.MOVE, this::onMove)
+                .on(CallbackAction.MOVE_TO, this::onMoveTo)
+                .on(CallbackAction.DELETE, this::onDelete)
+                .on(CallbackAction.DELETE_CONFIRM, this::onDeleteConfirm)
+                .on(CallbackAction.REMIND_LEARN, this::onRemindLearn)
+                .on(CallbackAction.DELETE_CANCEL, this::onDeleteCancel)
+                .on(CallbackAction.ADD_SET, this::onAddSet)
+                .on(CallbackAction.ADD_DEFAULTS, this::onAddDefaults)
+                .on(CallbackAction.DELETE_SET, this::onDeleteSet)
+                .on(CallbackAction.DELETE_SET_CONFIRM, this::onDeleteSetConfirm)
+                .on(CallbackAction.DELETE_SET_CANCEL, this::onDeleteSetCancel)
+                .on(CallbackAction.GRADE, this::onGrade);
+        this.sessionStores = sessionStores;
+        this.userState = sessionStores.create("userState", state -> UserState.ESTIMATED_BYTES,
+                UserStateCodec.INSTANCE, (userId, state, cause) -> {});
+        this.learningSession = sessionStores.create("learningSession", LearningSession::estimatedBytes,
+                LearningSessionCodec.INSTANCE, this::onLearningSessionEvicted);
+        this.sessionIdleMinutes = sessionStores.idleTimeout().toMinutes();
     }
 
     @PostConstruct
     public void registerMenuCommands() {
-        try {
-            List<BotCommand> commands = List.of(
-                    new BotCommand("start", "Начать / главное меню"),
-                    new BotCommand("add", "Добавить карточку или группу"),
-                    new BotCommand("learn", "Начать обучение"),
-                    new BotCommand("list", "Список карточек"),
-                    new BotCommand("sets", "Управление наборами"),
-                    new BotCommand("stats", "Статистика"),
-                    new BotCommand("help", "Справка"),
-                    new BotCommand("cancel", "Отменить действие")
-            );
-            execute(new SetMyCommands(commands, null, null));
-            log.info("Меню команд зарегистрировано");
-        } catch (TelegramApiException e) {
-            log.warn("Не удалось зарегистрировать меню команд: {}", e.getMessage());
-        }
+        List<BotCommand> commands = List.of(
+                new BotCommand("start", "Начать / главное меню"),
+                new BotCommand("add", "Добавить карточку или группу"),
+                new BotCommand("learn", "Начать обучение"),
+                new BotCommand("list", "Список карточек"),
+                new BotCommand("sets", "Управление наборами"),
+                new BotCommand("stats", "Статистика"),
+                new BotCommand("reminder", "Время напоминаний"),
+                new BotCommand("help", "Справка"),
+                new BotCommand("cancel", "Отменить действие")
+        );
+        outbound.send(new SetMyCommands(commands, null, null)).whenComplete((ok, e) -> {
+            if (e != null) {
+                log.warn("Не удалось зарегистрировать меню команд: {}", e.getMessage());
+            } else {
+                log.info("Меню команд зарегистрировано");
+            }
+        });
     }
 
     @Override
@@ -128,20 +167,85 @@ public class CardTelegramBot extends TelegramLongPollingBot {
         return "VitaCardsBot";
     }
 
+    /**
+     * Long polling: поток чтения ждёт, пока в очереди полосы чата освободится место.
+     */
     @Override
     public void onUpdateReceived(Update update) {
+        updateDispatcher.dispatch(chatIdOf(update), () -> processUpdate(update));
+    }
+
+    /**
+     * Webhook: ставит update в очередь без ожидания.
+     * @return false, если очередь переполнена и update нужно отклонить
+     */
+    public boolean submitUpdate(Update update) {
+        return updateDispatcher.tryDispatch(chatIdOf(update), () -> processUpdate(update));
+    }
+
+    private long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery()) {
+            var callback = update.getCallbackQuery();
+            return callback.getMessage() != null ? callback.getMessage().getChatId() : callback.getFrom().getId();
+        }
+        return 0L;
+    }
+
+    private void processUpdate(Update update) {
+        updateMetrics.recordLag(update);
+        long startedAt = System.nanoTime();
+        boolean success = true;
+        CallbackData callback = update.hasCallbackQuery()
+                ? CallbackCodec.decode(update.getCallbackQuery().getData()).orElse(null)
+                : null;
+        QueryTimeTracker.start();
         try {
             if (update.hasMessage() && update.getMessage().hasText()) {
                 handleMessage(update);
             } else if (update.hasCallbackQuery()) {
-                handleCallback(update);
+                handleCallback(update, callback);
             }
         } catch (Exception e) {
+            success = false;
             log.error("Ошибка обработки update", e);
             String chatId = update.hasMessage() ? update.getMessage().getChatId().toString()
                     : update.getCallbackQuery().getMessage().getChatId().toString();
             sendText(chatId, "Произошла ошибка. Попробуйте позже.");
+        } finally {
+            sessionStores.complete(success);
+            QueryTimeTracker.Usage db = QueryTimeTracker.stop();
+            updateMetrics.recordHandled(update.hasCallbackQuery() ? "callback" : "message", handlerName(update, callback),
+                    success, System.nanoTime() - startedAt, db);
+        }
+    }
+
+    /**
+     * Имя обработчика для метрик: команда, text для обычного ввода или действие callback.
+     */
+    private String handlerName(Update update, CallbackData callback) {
+        if (update.hasCallbackQuery()) {
+            return callback != null ? callback.action().name() : "unknown";
+        }
+        if (!update.hasMessage() || !update.getMessage().hasText()) {
+            return "other";
         }
+        String command = mapButtonToCommand(update.getMessage().getText());
+        if (!command.startsWith("/")) {
+            return "text";
+        }
+        int end = command.length();
+        for (int i = 1; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (c == ' ' || c == '@' || c == '\n') {
+                end = i;
+                break;
+            }
+        }
+        String name = command.substring(0, end);
+        return KNOWN_COMMANDS.contains(name) ? name : "unknown";
     }
 
     private void handleMessage(Update update) {
@@ -204,6 +308,8 @@ public class CardTelegramBot extends TelegramLongPollingBot {
             showListSetChoice(chatId, user);
         } else if (effectiveCommand.startsWith(CMD_HELP)) {
             handleHelp(chatId, update.getMessage().getFrom());
+        } else if (effectiveCommand.startsWith(CMD_REMINDER)) {
+            handleReminder(chatId, user, text.substring(CMD_REMINDER.length()).trim());
         } else {
             sendText(chatId.toString(), "Неизвестная команда. Используйте /help для справки.");
         }
@@ -261,11 +367,7 @@ public class CardTelegramBot extends TelegramLongPollingBot {
                 .text(msg)
                 .replyMarkup(buildMainMenuKeyboard())
                 .build();
-        try {
-            execute(sendMsg);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки приветствия", e);
-        }
+        outbound.send(sendMsg);
     }
 
     private void handleAdd(Long chatId, User user, String input) {
@@ -322,166 +424,192 @@ public class CardTelegramBot extends TelegramLongPollingBot {
     }
 
     private void handleLearn(Long chatId, User user) {
-        if (cardService.countByUser(user) == 0) {
+        var overview = cardSetService.overview(user);
+        if (overview.totalCards() == 0) {
             sendText(chatId.toString(), "Нет карточек для изучения. Добавьте карточки через /add");
             return;
         }
-        showLearnSetChoice(chatId, user);
+        showLearnSetChoice(chatId, overview);
     }
 
-    private void showLearnSetChoice(Long chatId, User user) {
-        var sets = cardSetService.findAllByUser(user);
-        long withoutSet = cardService.countByUserWithoutSet(user);
+    private void showLearnSetChoice(Long chatId, CardSetService.SetsOverview overview) {
+        long withoutSet = overview.withoutSet();
 
         var keyboard = new java.util.ArrayList<List<InlineKeyboardButton>>();
-        keyboard.add(List.of(InlineKeyboardButton.builder().text("📚 Все карточки").callbackData(CB_LEARN_SET + "ALL").build()));
+        keyboard.add(List.of(InlineKeyboardButton.builder().text("📚 Все карточки").callbackData(CallbackCodec.encode(CallbackAction.LEARN_SET, CallbackCodec.SET_ALL)).build()));
         if (withoutSet > 0) {
-            keyboard.add(List.of(InlineKeyboardButton.builder().text("📋 Без набора (" + withoutSet + ")").callbackData(CB_LEARN_SET + "NONE").build()));
+            keyboard.add(List.of(InlineKeyboardButton.builder().text("📋 Без набора (" + withoutSet + ")").callbackData(CallbackCodec.encode(CallbackAction.LEARN_SET, CallbackCodec.SET_NONE)).build()));
         }
-        for (var set : sets) {
-            long count = cardService.countByUser(user, set.getId());
-            if (count > 0) {
-                keyboard.add(List.of(InlineKeyboardButton.builder().text("📁 " + set.getName() + " (" + count + ")").callbackData(CB_LEARN_SET + set.getId()).build()));
+        for (var set : overview.sets()) {
+            if (set.cardCount() > 0) {
+                keyboard.add(List.of(InlineKeyboardButton.builder().text("📁 " + set.name() + " (" + set.cardCount() + ")").callbackData(CallbackCodec.encode(CallbackAction.LEARN_SET, set.id())).build()));
             }
         }
 
-        try {
-            execute(SendMessage.builder()
-                    .chatId(chatId.toString())
-                    .text("Выберите набор для изучения:")
-                    .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка", e);
-        }
+        outbound.send(SendMessage.builder()
+                .chatId(chatId.toString())
+                .text("Выберите набор для изучения:")
+                .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
+                .build());
     }
 
-    private void showLearnModeChoice(Long chatId, User user, String setChoice) {
+    private void showLearnModeChoice(Long chatId, User user, long setChoice) {
         var keyboard = new java.util.ArrayList<List<InlineKeyboardButton>>();
         keyboard.add(List.of(
                 InlineKeyboardButton.builder()
                         .text("🔄 Повторение EN→RU")
-                        .callbackData(CB_LEARN_MODE + setChoice + ":EN_RU:RANDOM:")
+                        .callbackData(CallbackCodec.encode(CallbackAction.LEARN_MODE, setChoice, CallbackCodec.DIRECTION_EN_RU, CallbackCodec.ORDER_RANDOM, 0))
                         .build()
         ));
         keyboard.add(List.of(
                 InlineKeyboardButton.builder()
                         .text("🔄 Повторение RU→EN")
-                        .callbackData(CB_LEARN_MODE + setChoice + ":RU_EN:RANDOM:")
+                        .callbackData(CallbackCodec.encode(CallbackAction.LEARN_MODE, setChoice, CallbackCodec.DIRECTION_RU_EN, CallbackCodec.ORDER_RANDOM, 0))
+                        .build()
+        ));
+        keyboard.add(List.of(
+                InlineKeyboardButton.builder()
+                        .text("🧠 Интервальное повторение")
+                        .callbackData(CallbackCodec.encode(CallbackAction.LEARN_MODE, setChoice, CallbackCodec.DIRECTION_EN_RU, CallbackCodec.ORDER_SPACED, 0))
                         .build()
         ));
         keyboard.add(List.of(
                 InlineKeyboardButton.builder()
                         .text("✏️ Ввести слово RU→EN")
-                        .callbackData(CB_LEARN_INPUT + setChoice + ":RU_EN:")
+                        .callbackData(CallbackCodec.encode(CallbackAction.LEARN_INPUT, setChoice, CallbackCodec.DIRECTION_RU_EN, 0))
                         .build()
         ));
         keyboard.add(List.of(
                 InlineKeyboardButton.builder()
                         .text("✏️ Ввести слово EN→RU")
-                        .callbackData(CB_LEARN_INPUT + setChoice + ":EN_RU:")
+                        .callbackData(CallbackCodec.encode(CallbackAction.LEARN_INPUT, setChoice, CallbackCodec.DIRECTION_EN_RU, 0))
                         .build()
         ));
-        try {
-            execute(SendMessage.builder()
-                    .chatId(chatId.toString())
-                    .text("Выберите режим:\n\n" +
-                            "1️⃣ *Повторение EN→RU* — английское слово, кнопка «Показать перевод»\n" +
-                            "2️⃣ *Повторение RU→EN* — русское слово, кнопка «Показать слово»\n" +
-                            "3️⃣ *Ввести слово RU→EN* — русское слово → ввести английское\n" +
-                            "4️⃣ *Ввести слово EN→RU* — английское слово → ввести перевод")
-                    .parseMode("Markdown")
-                    .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка", e);
-        }
+        outbound.send(SendMessage.builder()
+                .chatId(chatId.toString())
+                .text("Выберите режим:\n\n" +
+                        "1️⃣ *Повторение EN→RU* — английское слово, кнопка «Показать перевод»\n" +
+                        "2️⃣ *Повторение RU→EN* — русское слово, кнопка «Показать слово»\n" +
+                        "3️⃣ *Интервальное повторение* — сначала карточки, которые пора повторить; оцените, насколько легко вспомнили\n" +
+                        "4️⃣ *Ввести слово RU→EN* — русское слово → ввести английское\n" +
+                        "5️⃣ *Ввести слово EN→RU* — английское слово → ввести перевод")
+                .parseMode("Markdown")
+                .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
+                .build());
     }
 
-    private void startLearningWithMode(Long chatId, User user, String setChoice, String directionStr, String orderStr, Integer goal) {
-        Long setIdFilter = switch (setChoice) {
-            case "ALL" -> LEARNING_FILTER_ALL;
-            case "NONE" -> LEARNING_FILTER_NONE;
-            default -> Long.parseLong(setChoice);
-        };
-        LearningSession.Direction direction = "RU_EN".equals(directionStr) ? LearningSession.Direction.RU_EN : LearningSession.Direction.EN_RU;
-        LearningSession.Order order = "SEQ".equals(orderStr) ? LearningSession.Order.SEQUENTIAL : LearningSession.Order.RANDOM;
-
-        List<Card> sequentialCards;
-        if (setIdFilter == null) {
-            sequentialCards = cardService.findAllByUserOrdered(user.getId(), null);
-        } else if (LEARNING_FILTER_NONE.equals(setIdFilter)) {
-            sequentialCards = cardService.findAllByUserOrdered(user.getId(), -1L);
-        } else {
-            sequentialCards = cardService.findAllByUserOrdered(user.getId(), setIdFilter);
+    private void startLearningWithMode(Long chatId, User user, long setChoice, LearningSession.Direction direction, LearningSession.Order order, Integer goal) {
+        Long setIdFilter = setFilter(setChoice);
+
+        if (order == LearningSession.Order.SPACED) {
+            Optional<CardSnapshot> due = spacedRepetitionService.nextDue(user.getId(), setIdFilter).map(CardSnapshot::of);
+            if (due.isEmpty()) {
+                sendText(chatId.toString(), "Сейчас нечего повторять в выбранном наборе. Загляните позже.");
+                return;
+            }
+            LearningSession session = LearningSession.create(setIdFilter, direction, order, null, goal);
+            session.setChatId(chatId);
+            learningSession.put(user.getId(), session);
+            sendCardForLearning(chatId.toString(), user, due.get(), direction, goal);
+            return;
         }
 
-        if (sequentialCards.isEmpty()) {
+        Optional<CardSnapshot> firstCard = startDeckSession(chatId, user, setIdFilter, direction, order, goal);
+        if (firstCard.isEmpty()) {
             sendText(chatId.toString(), "Нет карточек в выбранном наборе.");
             return;
         }
-
-        LearningSession session = LearningSession.create(setIdFilter, direction, order, sequentialCards, goal);
-        learningSession.put(user.getId(), session);
-
-        Card firstCard = order == LearningSession.Order.SEQUENTIAL ? sequentialCards.get(0) : getRandomFromList(sequentialCards);
-        sendCardForLearning(chatId.toString(), user, firstCard, direction, goal);
+        sendCardForLearning(chatId.toString(), user, firstCard.get(), direction, goal);
     }
 
-    private void startLearningWithInputMode(Long chatId, User user, String setChoice, LearningSession.Direction direction, Integer goal) {
-        Long setIdFilter = switch (setChoice) {
-            case "ALL" -> LEARNING_FILTER_ALL;
-            case "NONE" -> LEARNING_FILTER_NONE;
-            default -> Long.parseLong(setChoice);
-        };
-
-        List<Card> cards;
-        if (setIdFilter == null) {
-            cards = cardService.findAllByUser(user);
-        } else if (LEARNING_FILTER_NONE.equals(setIdFilter)) {
-            cards = cardService.findAllByUserWithoutSet(user);
-        } else {
-            cards = cardService.findAllByUser(user, setIdFilter);
-        }
-
-        if (cards.isEmpty()) {
+    private void startLearningWithInputMode(Long chatId, User user, long setChoice, LearningSession.Direction direction, Integer goal) {
+        Optional<CardSnapshot> firstCard = startDeckSession(chatId, user, setFilter(setChoice), direction,
+                LearningSession.Order.RANDOM, goal);
+        if (firstCard.isEmpty()) {
             sendText(chatId.toString(), "Нет карточек в выбранном наборе.");
             return;
         }
+        sendCardForInputMode(chatId.toString(), user, firstCard.get(), direction);
+    }
 
-        LearningSession session = LearningSession.create(setIdFilter, direction, LearningSession.Order.RANDOM, cards, goal);
+    /**
+     * Сессия по колоде: загружаются только id карточек (для случайного порядка — перемешанные),
+     * содержимое подгружается окнами снимков по мере прохода. Пусто, если карточек нет.
+     */
+    private Optional<CardSnapshot> startDeckSession(Long chatId, User user, Long setIdFilter, LearningSession.Direction direction,
+                                                    LearningSession.Order order, Integer goal) {
+        List<Long> ids = cardService.findIdsByUser(user.getId(), setIdFilter);
+        if (ids.isEmpty()) {
+            return Optional.empty();
+        }
+        SessionDeck deck = order == LearningSession.Order.RANDOM
+                ? SessionDeck.shuffled(ids, ThreadLocalRandom.current())
+                : SessionDeck.inOrder(ids);
+        LearningSession session = LearningSession.create(setIdFilter, direction, order, deck, goal);
+        session.setChatId(chatId);
         learningSession.put(user.getId(), session);
+        return deck.next(cardIds -> cardService.findSnapshots(user.getId(), cardIds));
+    }
+
+    /**
+     * Сессию вытеснили по простою или по лимиту. Слушатель вызывается из потока планировщика, поэтому
+     * состояние пользователя меняется в полосе его чата, как при обработке update.
+     */
+    private void onLearningSessionEvicted(Long userId, LearningSession session, SessionStore.EvictionCause cause) {
+        Long chatId = session.getChatId();
+        if (chatId == null) {
+            return; // режим ввода ответа без сессии снимется при следующем ответе
+        }
+        if (!updateDispatcher.tryDispatch(chatId, () -> endEvictedSession(chatId, userId, cause))) {
+            log.debug("Очередь чата {} переполнена, завершение сессии пропущено", chatId);
+        }
+    }
 
-        Card firstCard = getRandomFromList(cards);
-        sendCardForInputMode(chatId.toString(), user, firstCard, direction);
+    /** Снимает режим ввода ответа и сообщает пользователю, если он не начал новую сессию. */
+    private void endEvictedSession(Long chatId, Long userId, SessionStore.EvictionCause cause) {
+        boolean success = true;
+        try {
+            if (learningSession.get(userId) != null) {
+                return;
+            }
+            UserState state = userState.get(userId);
+            if (state != null && state.getType() == UserState.Type.TYPE_LEARN_INPUT) {
+                userState.remove(userId);
+            }
+            String reason = cause == SessionStore.EvictionCause.SIZE
+                    ? "Сессия обучения прервана: сейчас слишком много активных сессий."
+                    : "Сессия обучения завершена: не было активности больше " + sessionIdleMinutes + " мин.";
+            sendText(chatId.toString(), reason + " Чтобы продолжить, нажмите /learn.");
+        } catch (RuntimeException e) {
+            success = false;
+            log.warn("Ошибка завершения сессии пользователя {}", userId, e);
+        } finally {
+            sessionStores.complete(success);
+        }
     }
 
-    private void sendCardForInputMode(String chatId, User user, Card card, LearningSession.Direction direction) {
-        userState.put(user.getId(), UserState.typeLearnInput(card.getId()));
+    private void sendCardForInputMode(String chatId, User user, CardSnapshot card, LearningSession.Direction direction) {
+        userState.put(user.getId(), UserState.typeLearnInput(card.id()));
         LearningSession session = learningSession.get(user.getId());
-        String question = direction == LearningSession.Direction.RU_EN ? card.getTranslation() : card.getWord();
-        String transcription = (direction == LearningSession.Direction.EN_RU && card.getTranscription() != null && !card.getTranscription().isBlank())
-                ? "\n_" + card.getTranscription() + "_"
+        String question = direction == LearningSession.Direction.RU_EN ? card.translation() : card.word();
+        String transcription = (direction == LearningSession.Direction.EN_RU && card.transcription() != null && !card.transcription().isBlank())
+                ? "\n_" + card.transcription() + "_"
                 : "";
         String prompt = direction == LearningSession.Direction.RU_EN ? "Введите слово на английском:" : "Введите перевод на русском:";
         String progress = session != null && session.getGoal() != null
                 ? "\n\n(" + (session.getViewedCount() + 1) + "/" + session.getGoal() + ")"
                 : "";
         String msg = "*" + question + "*" + transcription + "\n\n" + prompt + progress;
-        try {
-            execute(SendMessage.builder()
-                    .chatId(chatId)
-                    .text(msg)
-                    .parseMode("Markdown")
-                    .replyMarkup(InlineKeyboardMarkup.builder()
-                            .keyboardRow(List.of(
-                                    InlineKeyboardButton.builder().text("⏭ Пропустить").callbackData(CB_LEARN_INPUT_SKIP).build(),
-                                    InlineKeyboardButton.builder().text("🚪 Выйти").callbackData(CB_LEARN_INPUT_EXIT).build()))
-                            .build())
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки карточки", e);
-        }
+        outbound.send(SendMessage.builder()
+                .chatId(chatId)
+                .text(msg)
+                .parseMode("Markdown")
+                .replyMarkup(InlineKeyboardMarkup.builder()
+                        .keyboardRow(List.of(
+                                InlineKeyboardButton.builder().text("⏭ Пропустить").callbackData(CallbackCodec.encode(CallbackAction.LEARN_INPUT_SKIP)).build(),
+                                InlineKeyboardButton.builder().text("🚪 Выйти").callbackData(CallbackCodec.encode(CallbackAction.LEARN_INPUT_EXIT)).build()))
+                        .build())
+                .build());
     }
 
     private void handleLearnInput(Long chatId, User user, String userInput, Long cardId) {
@@ -510,15 +638,11 @@ public class CardTelegramBot extends TelegramLongPollingBot {
         String resultMsg = correct
                 ? "✅ Верно!"
                 : "❌ Неверно. Правильно: *" + escapeMarkdown(displayExpected) + "*";
-        try {
-            execute(SendMessage.builder()
-                    .chatId(chatId.toString())
-                    .text(resultMsg)
-                    .parseMode("Markdown")
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка", e);
-        }
+        outbound.send(SendMessage.builder()
+                .chatId(chatId.toString())
+                .text(resultMsg)
+                .parseMode("Markdown")
+                .build());
 
         if (session != null && session.isGoalReached()) {
             learningSession.remove(user.getId());
@@ -526,7 +650,7 @@ public class CardTelegramBot extends TelegramLongPollingBot {
             return;
         }
 
-        var nextCard = getNextCardForLearning(user);
+        var nextCard = getNextCardForLearning(user, null);
         if (nextCard.isPresent()) {
             sendCardForInputMode(chatId.toString(), user, nextCard.get(), direction);
         } else {
@@ -548,506 +672,535 @@ public class CardTelegramBot extends TelegramLongPollingBot {
                 || t.equals(BTN_STATS) || t.equals(BTN_HELP) || t.equals(BTN_SETS);
     }
 
-    private Card getRandomFromList(List<Card> cards) {
-        return cards.get((int) (Math.random() * cards.size()));
-    }
-
-    private Optional<Card> getNextCardForLearning(User user) {
+    /**
+     * @param gradedCardId карточка, которую только что оценили в интервальном повторении; null — без оценки
+     */
+    private Optional<CardSnapshot> getNextCardForLearning(User user, Long gradedCardId) {
         LearningSession session = learningSession.get(user.getId());
         if (session == null) {
-            return learningService.getNextCard(user);
+            return learningService.getNextCard(user).map(CardSnapshot::of);
         }
-        if (session.getOrder() == LearningSession.Order.SEQUENTIAL) {
-            session.incrementIndex();
-            if (session.getSequentialIndex() >= session.getSequentialCards().size()) {
-                return Optional.empty();
+        if (session.getOrder() == LearningSession.Order.SPACED) {
+            Optional<CardSnapshot> prefetched = session.takePrefetched(gradedCardId);
+            updateMetrics.recordPrefetch(prefetched.isPresent());
+            if (prefetched.isPresent()) {
+                return prefetched;
             }
-            return Optional.of(session.getSequentialCards().get(session.getSequentialIndex()));
+            return spacedRepetitionService.nextDue(user.getId(), session.getSetIdFilter()).map(CardSnapshot::of);
+        }
+        if (session.getDeck() != null) {
+            updateMetrics.recordPrefetch(session.getDeck().isLoaded());
+            return session.getDeck().next(ids -> cardService.findSnapshots(user.getId(), ids));
         }
         Long filter = session.getSetIdFilter();
+        Optional<Card> card;
         if (filter == null) {
-            return learningService.getNextCard(user);
-        }
-        if (LEARNING_FILTER_NONE.equals(filter)) {
-            return learningService.getNextCardWithoutSet(user);
+            card = learningService.getNextCard(user);
+        } else if (LEARNING_FILTER_NONE.equals(filter)) {
+            card = learningService.getNextCardWithoutSet(user);
+        } else {
+            card = learningService.getNextCard(user, filter);
         }
-        return learningService.getNextCard(user, filter);
+        return card.map(CardSnapshot::of);
     }
 
-    private void sendCardForLearning(String chatId, User user, Card card, LearningSession.Direction direction, Integer goal) {
+    private void sendCardForLearning(String chatId, User user, CardSnapshot card, LearningSession.Direction direction, Integer goal) {
         LearningSession session = learningSession.get(user.getId());
-        String question = direction == LearningSession.Direction.EN_RU ? card.getWord() : card.getTranslation();
-        String transcription = (direction == LearningSession.Direction.EN_RU && card.getTranscription() != null && !card.getTranscription().isBlank())
-                ? "\n_" + card.getTranscription() + "_"
-                : "";
         String showLabel = direction == LearningSession.Direction.EN_RU ? "Показать перевод" : "Показать слово";
         String progress = goal != null && session != null ? "\n\n(" + (session.getViewedCount() + 1) + "/" + goal + ")" : "";
 
         SendMessage msg = new SendMessage();
         msg.setChatId(chatId);
-        msg.setText("*" + question + "*" + transcription + progress);
+        msg.setText(learningCardText(card, direction, progress));
         msg.setParseMode("Markdown");
+        msg.setReplyMarkup(learningKeyboard(session, card.id(), showLabel));
+        outbound.send(msg);
+    }
 
+    /**
+     * Кнопки карточки: «Показать», затем «Следующая» и «Закончить»; в интервальном повторении
+     * вместо «Следующая» — ряд оценок.
+     */
+    private InlineKeyboardMarkup learningKeyboard(LearningSession session, long cardId, String showLabel) {
         InlineKeyboardButton showBtn = InlineKeyboardButton.builder()
                 .text(showLabel)
-                .callbackData(CB_SHOW + card.getId())
+                .callbackData(CallbackCodec.encode(CallbackAction.SHOW, cardId))
                 .build();
-        InlineKeyboardButton nextBtn = InlineKeyboardButton.builder()
-                .text("Следующая")
-                .callbackData(CB_NEXT)
+        if (isSpaced(session)) {
+            return InlineKeyboardMarkup.builder()
+                    .keyboardRow(List.of(showBtn))
+                    .keyboardRow(gradeRow(cardId))
+                    .keyboardRow(List.of(endButton()))
+                    .build();
+        }
+        return InlineKeyboardMarkup.builder()
+                .keyboardRow(List.of(showBtn))
+                .keyboardRow(List.of(nextButton(), endButton()))
                 .build();
-        InlineKeyboardButton endBtn = InlineKeyboardButton.builder()
-                .text("Закончить")
-                .callbackData(CB_END)
+    }
+
+    private static boolean isSpaced(LearningSession session) {
+        return session != null && session.getOrder() == LearningSession.Order.SPACED;
+    }
+
+    private static List<InlineKeyboardButton> gradeRow(long cardId) {
+        return List.of(
+                gradeButton("🔁 Снова", cardId, ReviewGrade.AGAIN),
+                gradeButton("😓 Трудно", cardId, ReviewGrade.HARD),
+                gradeButton("🙂 Хорошо", cardId, ReviewGrade.GOOD),
+                gradeButton("😎 Легко", cardId, ReviewGrade.EASY));
+    }
+
+    private static InlineKeyboardButton gradeButton(String text, long cardId, ReviewGrade grade) {
+        return InlineKeyboardButton.builder()
+                .text(text)
+                .callbackData(CallbackCodec.encode(CallbackAction.GRADE, cardId, grade.ordinal()))
                 .build();
+    }
 
-        msg.setReplyMarkup(InlineKeyboardMarkup.builder()
-                .keyboardRow(List.of(showBtn))
-                .keyboardRow(List.of(nextBtn, endBtn))
+    private static InlineKeyboardButton nextButton() {
+        return InlineKeyboardButton.builder().text("Следующая").callbackData(CallbackCodec.encode(CallbackAction.NEXT)).build();
+    }
+
+    private static InlineKeyboardButton endButton() {
+        return InlineKeyboardButton.builder().text("Закончить").callbackData(CallbackCodec.encode(CallbackAction.END)).build();
+    }
+
+    /**
+     * Текст карточки в режиме повторения (Markdown): вопрос жирным, транскрипция курсивом, прогресс.
+     */
+    static String learningCardText(CardSnapshot card, LearningSession.Direction direction, String progress) {
+        String question = direction == LearningSession.Direction.EN_RU ? card.word() : card.translation();
+        String transcription = (direction == LearningSession.Direction.EN_RU && card.transcription() != null && !card.transcription().isBlank())
+                ? "\n_" + card.transcription() + "_"
+                : "";
+        return "*" + question + "*" + transcription + progress;
+    }
+
+    private void handleCallback(Update update, CallbackData callback) {
+        if (callback == null) {
+            log.debug("Некорректные callback data: {}", update.getCallbackQuery().getData());
+        } else {
+            Long chatId = update.getCallbackQuery().getMessage().getChatId();
+            Integer messageId = update.getCallbackQuery().getMessage().getMessageId();
+            Long telegramId = update.getCallbackQuery().getFrom().getId();
+            User user = userService.getOrCreate(telegramId, update.getCallbackQuery().getFrom().getUserName());
+            callbackRouter.route(chatId, messageId, user, callback);
+        }
+
+        outbound.send(org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery.builder()
+                .callbackQueryId(update.getCallbackQuery().getId())
                 .build());
+    }
+
+    private void onShow(Long chatId, Integer messageId, User user, CallbackData data) {
+        long cardId = data.arg(0);
+        cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
+            learningService.incrementCardsViewed(user, card);
+            LearningSession.Direction dir = getLearningDirection(user);
+            editToTranslation(chatId, messageId, card, dir, isSpaced(learningSession.get(user.getId())));
+            schedulePrefetch(chatId, user, cardId);
+        });
+    }
+
+    /**
+     * Пока пользователь читает перевод, готовит следующую карточку, чтобы «Следующая» или оценка
+     * обошлись без запросов. Задача встаёт в полосу чата за текущим update, поэтому сессию, как и везде,
+     * трогает только поток полосы; при переполненной очереди подготовка пропускается.
+     */
+    private void schedulePrefetch(Long chatId, User user, long shownCardId) {
+        LearningSession session = learningSession.get(user.getId());
+        if (session == null || (session.getDeck() == null && !isSpaced(session))) {
+            return;
+        }
+        updateDispatcher.tryDispatch(chatId, () -> prefetchNext(user, shownCardId));
+    }
 
+    private void prefetchNext(User user, long shownCardId) {
+        boolean success = true;
         try {
-            execute(msg);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки карточки", e);
+            LearningSession session = learningSession.get(user.getId());
+            if (session == null) {
+                return;
+            }
+            if (session.getDeck() != null) {
+                session.getDeck().prefetch(ids -> cardService.findSnapshots(user.getId(), ids));
+            } else if (isSpaced(session)) {
+                session.prefetch(shownCardId, spacedRepetitionService
+                        .nextDueAfter(user.getId(), session.getSetIdFilter(), shownCardId)
+                        .map(CardSnapshot::of)
+                        .orElse(null));
+            }
+        } catch (RuntimeException e) {
+            success = false;
+            log.warn("Не удалось подготовить следующую карточку пользователя {}", user.getId(), e);
+        } finally {
+            sessionStores.complete(success);
         }
     }
 
-    private void handleCallback(Update update) {
-        String data = update.getCallbackQuery().getData();
-        Long chatId = update.getCallbackQuery().getMessage().getChatId();
-        Integer messageId = update.getCallbackQuery().getMessage().getMessageId();
-        Long telegramId = update.getCallbackQuery().getFrom().getId();
+    /** Карточки пользователя изменились: подготовленное заранее могло устареть. */
+    private void invalidatePrefetch(User user) {
+        LearningSession session = learningSession.get(user.getId());
+        if (session != null) {
+            session.invalidatePrefetch();
+        }
+    }
+
+    private void onLearnSet(Long chatId, Integer messageId, User user, CallbackData data) {
+        long setChoice = data.arg(0);
+        outbound.send(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .build());
+        showLearnModeChoice(chatId, user, setChoice);
+    }
 
-        User user = userService.getOrCreate(telegramId, update.getCallbackQuery().getFrom().getUserName());
+    private void onLearnMode(Long chatId, Integer messageId, User user, CallbackData data) {
+        long setChoice = data.arg(0);
+        LearningSession.Direction direction = CallbackCodec.direction(data.arg(1));
+        LearningSession.Order order = CallbackCodec.order(data.arg(2));
+        Integer goal = data.arg(3) > 0 ? (int) data.arg(3) : null;
+        outbound.send(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .build());
+        startLearningWithMode(chatId, user, setChoice, direction, order, goal);
+    }
+
+    private void onLearnInput(Long chatId, Integer messageId, User user, CallbackData data) {
+        long setChoice = data.arg(0);
+        LearningSession.Direction direction = CallbackCodec.direction(data.arg(1));
+        Integer goal = data.arg(2) > 0 ? (int) data.arg(2) : null;
+        outbound.send(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .build());
+        startLearningWithInputMode(chatId, user, setChoice, direction, goal);
+    }
+
+    private void onLearnInputExit(Long chatId, Integer messageId, User user, CallbackData data) {
+        userState.remove(user.getId());
+        learningSession.remove(user.getId());
+        outbound.send(EditMessageText.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .text("Режим «Своё слово» завершён. Нажмите /learn для новой сессии.")
+                .build());
+    }
 
-        if (data.startsWith(CB_SHOW)) {
-            Long cardId = Long.parseLong(data.substring(CB_SHOW.length()));
+    private void onLearnInputSkip(Long chatId, Integer messageId, User user, CallbackData data) {
+        UserState state = userState.get(user.getId());
+        if (state != null && state.getType() == UserState.Type.TYPE_LEARN_INPUT) {
+            Long cardId = state.getCardId();
+            userState.remove(user.getId());
             cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
                 learningService.incrementCardsViewed(user, card);
+                LearningSession session = learningSession.get(user.getId());
+                if (session != null) {
+                    session.incrementViewedCount();
+                }
                 LearningSession.Direction dir = getLearningDirection(user);
-                editToTranslation(chatId, messageId, card, dir);
-            });
-        } else if (data.startsWith(CB_LEARN_SET)) {
-            String setChoice = data.substring(CB_LEARN_SET.length());
-            try {
-                execute(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+                String correctAnswer = dir == LearningSession.Direction.RU_EN ? card.getWord() : card.getTranslation();
+                outbound.send(EditMessageText.builder()
                         .chatId(chatId.toString())
                         .messageId(messageId)
+                        .text("⏭ Пропущено. Правильно: *" + escapeMarkdown(correctAnswer) + "*")
+                        .parseMode("Markdown")
                         .build());
-            } catch (TelegramApiException ignored) {}
-            showLearnModeChoice(chatId, user, setChoice);
-        } else if (data.startsWith(CB_LEARN_MODE)) {
-            String rest = data.substring(CB_LEARN_MODE.length());
-            String[] parts = rest.split(":");
-            String setChoice = parts[0];
-            String direction = parts[1];
-            String order = parts[2];
-            Integer goal = parts.length > 3 && !parts[3].isEmpty() ? Integer.parseInt(parts[3]) : null;
-            try {
-                execute(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
-                        .chatId(chatId.toString())
-                        .messageId(messageId)
-                        .build());
-            } catch (TelegramApiException ignored) {}
-            startLearningWithMode(chatId, user, setChoice, direction, order, goal);
-        } else if (data.startsWith(CB_LEARN_INPUT)) {
-            String rest = data.substring(CB_LEARN_INPUT.length());
-            String[] parts = rest.split(":");
-            String setChoice = parts[0];
-            LearningSession.Direction direction = parts.length > 1 && "EN_RU".equals(parts[1])
-                    ? LearningSession.Direction.EN_RU
-                    : LearningSession.Direction.RU_EN;
-            Integer goal = parts.length > 2 && !parts[2].isEmpty() ? Integer.parseInt(parts[2]) : null;
-            try {
-                execute(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
-                        .chatId(chatId.toString())
-                        .messageId(messageId)
-                        .build());
-            } catch (TelegramApiException ignored) {}
-            startLearningWithInputMode(chatId, user, setChoice, direction, goal);
-        } else if (CB_LEARN_INPUT_EXIT.equals(data)) {
-            userState.remove(user.getId());
-            learningSession.remove(user.getId());
-            try {
-                execute(EditMessageText.builder()
-                        .chatId(chatId.toString())
-                        .messageId(messageId)
-                        .text("Режим «Своё слово» завершён. Нажмите /learn для новой сессии.")
-                        .build());
-            } catch (TelegramApiException e) {
-                log.error("Ошибка", e);
-            }
-        } else if (CB_LEARN_INPUT_SKIP.equals(data)) {
-            UserState state = userState.get(user.getId());
-            if (state != null && state.getType() == UserState.Type.TYPE_LEARN_INPUT) {
-                Long cardId = state.getCardId();
-                userState.remove(user.getId());
-                cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
-                    learningService.incrementCardsViewed(user, card);
-                    LearningSession session = learningSession.get(user.getId());
-                    if (session != null) {
-                        session.incrementViewedCount();
-                    }
-                    LearningSession.Direction dir = getLearningDirection(user);
-                    String correctAnswer = dir == LearningSession.Direction.RU_EN ? card.getWord() : card.getTranslation();
-                    try {
-                        execute(EditMessageText.builder()
-                                .chatId(chatId.toString())
-                                .messageId(messageId)
-                                .text("⏭ Пропущено. Правильно: *" + escapeMarkdown(correctAnswer) + "*")
-                                .parseMode("Markdown")
-                                .build());
-                    } catch (TelegramApiException e) {
-                        log.error("Ошибка", e);
-                    }
-                    if (session != null && session.isGoalReached()) {
-                        learningSession.remove(user.getId());
-                        sendText(chatId.toString(), "🎉 Сессия завершена! " + session.getViewedCount() + " карточек. Нажмите /learn для новой сессии.");
-                        return;
-                    }
-                    var nextCard = getNextCardForLearning(user);
-                    if (nextCard.isPresent()) {
-                        sendCardForInputMode(chatId.toString(), user, nextCard.get(), dir);
-                    } else {
-                        learningSession.remove(user.getId());
-                        sendText(chatId.toString(), "Карточки закончились. Нажмите /learn для новой сессии.");
-                    }
-                });
-            }
-        } else if (CB_NEXT.equals(data)) {
-            LearningSession session = learningSession.get(user.getId());
-            if (session != null) {
-                session.incrementViewedCount();
-                if (session.isGoalReached()) {
+                if (session != null && session.isGoalReached()) {
                     learningSession.remove(user.getId());
-                    try {
-                        execute(EditMessageText.builder()
-                                .chatId(chatId.toString())
-                                .messageId(messageId)
-                                .text("🎉 Сессия завершена! " + session.getViewedCount() + " карточек просмотрено. Нажмите /learn для новой сессии.")
-                                .build());
-                    } catch (TelegramApiException e) {
-                        log.error("Ошибка", e);
-                    }
-                } else {
-                    var nextCard = getNextCardForLearning(user);
-                    LearningSession.Direction dir = getLearningDirection(user);
-                    if (nextCard.isPresent()) {
-                    String question = dir == LearningSession.Direction.EN_RU ? nextCard.get().getWord() : nextCard.get().getTranslation();
-                    String showLabel = dir == LearningSession.Direction.EN_RU ? "Показать перевод" : "Показать слово";
-                    String progress = session != null && session.getGoal() != null ? "\n\n(" + session.getViewedCount() + "/" + session.getGoal() + ")" : "";
-                    try {
-                        execute(EditMessageText.builder()
-                                .chatId(chatId.toString())
-                                .messageId(messageId)
-                                .text("*" + question + "*" + progress)
-                                .parseMode("Markdown")
-                                .replyMarkup(InlineKeyboardMarkup.builder()
-                                        .keyboardRow(List.of(InlineKeyboardButton.builder().text(showLabel).callbackData(CB_SHOW + nextCard.get().getId()).build()))
-                                        .keyboardRow(List.of(
-                                                InlineKeyboardButton.builder().text("Следующая").callbackData(CB_NEXT).build(),
-                                                InlineKeyboardButton.builder().text("Закончить").callbackData(CB_END).build()))
-                                        .build())
-                                .build());
-                    } catch (TelegramApiException e) {
-                        log.error("Ошибка редактирования", e);
-                    }
-                    } else {
-                        try {
-                            execute(EditMessageText.builder()
-                                    .chatId(chatId.toString())
-                                    .messageId(messageId)
-                                    .text("Карточки закончились. Нажмите /learn для новой сессии.")
-                                    .build());
-                        } catch (TelegramApiException e) {
-                            log.error("Ошибка", e);
-                        }
-                    }
+                    sendText(chatId.toString(), "🎉 Сессия завершена! " + session.getViewedCount() + " карточек. Нажмите /learn для новой сессии.");
+                    return;
                 }
-            } else {
-                var nextCard = getNextCardForLearning(user);
-                LearningSession.Direction dir = getLearningDirection(user);
+                var nextCard = getNextCardForLearning(user, null);
                 if (nextCard.isPresent()) {
-                    String question = dir == LearningSession.Direction.EN_RU ? nextCard.get().getWord() : nextCard.get().getTranslation();
-                    String showLabel = dir == LearningSession.Direction.EN_RU ? "Показать перевод" : "Показать слово";
-                    try {
-                        execute(EditMessageText.builder()
-                                .chatId(chatId.toString())
-                                .messageId(messageId)
-                                .text("*" + question + "*")
-                                .parseMode("Markdown")
-                                .replyMarkup(InlineKeyboardMarkup.builder()
-                                        .keyboardRow(List.of(InlineKeyboardButton.builder().text(showLabel).callbackData(CB_SHOW + nextCard.get().getId()).build()))
-                                        .keyboardRow(List.of(
-                                                InlineKeyboardButton.builder().text("Следующая").callbackData(CB_NEXT).build(),
-                                                InlineKeyboardButton.builder().text("Закончить").callbackData(CB_END).build()))
-                                        .build())
-                                .build());
-                    } catch (TelegramApiException e) {
-                        log.error("Ошибка редактирования", e);
-                    }
+                    sendCardForInputMode(chatId.toString(), user, nextCard.get(), dir);
                 } else {
-                    try {
-                        execute(EditMessageText.builder()
-                                .chatId(chatId.toString())
-                                .messageId(messageId)
-                                .text("Карточки закончились. Нажмите /learn для новой сессии.")
-                                .build());
-                    } catch (TelegramApiException e) {
-                        log.error("Ошибка", e);
-                    }
+                    learningSession.remove(user.getId());
+                    sendText(chatId.toString(), "Карточки закончились. Нажмите /learn для новой сессии.");
                 }
-            }
-        } else if (CB_END.equals(data)) {
-            learningSession.remove(user.getId());
-            try {
-                execute(EditMessageText.builder()
-                        .chatId(chatId.toString())
-                        .messageId(messageId)
-                        .text("Сессия завершена. Нажмите /learn чтобы продолжить.")
-                        .build());
-            } catch (TelegramApiException e) {
-                log.error("Ошибка", e);
-            }
-        } else if (data.startsWith(CB_LIST_CHOICE)) {
-            String choice = data.substring(CB_LIST_CHOICE.length());
-            Long setId = switch (choice) {
-                case "ALL" -> null;
-                case "NONE" -> LEARNING_FILTER_NONE;
-                default -> Long.parseLong(choice);
-            };
-            try {
-                execute(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
-                        .chatId(chatId.toString())
-                        .messageId(messageId)
-                        .build());
-            } catch (TelegramApiException ignored) {}
-            handleList(chatId, user, setId, 0);
-        } else if (data.startsWith("LIST_SET:")) {
-            String rest = data.substring("LIST_SET:".length());
-            String[] parts = rest.split(":");
-            Long setId = Long.parseLong(parts[0]);
-            int page = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
-            handleList(chatId, user, setId, page);
-            try {
-                execute(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+            });
+        }
+    }
+
+    private void onNext(Long chatId, Integer messageId, User user, CallbackData data) {
+        showNext(chatId, messageId, user, null);
+    }
+
+    private void showNext(Long chatId, Integer messageId, User user, Long gradedCardId) {
+        LearningSession session = learningSession.get(user.getId());
+        if (session != null) {
+            session.incrementViewedCount();
+            if (session.isGoalReached()) {
+                learningSession.remove(user.getId());
+                outbound.send(EditMessageText.builder()
                         .chatId(chatId.toString())
                         .messageId(messageId)
+                        .text("🎉 Сессия завершена! " + session.getViewedCount() + " карточек просмотрено. Нажмите /learn для новой сессии.")
                         .build());
-            } catch (TelegramApiException ignored) {}
-        } else if (data.startsWith(CB_LIST)) {
-            String listData = data.substring(CB_LIST.length());
-            String[] parts = listData.split(":");
-            Long listSetId = parts.length >= 2 ? Long.parseLong(parts[0]) : null;
-            int page = parts.length >= 2 ? Integer.parseInt(parts[1]) : Integer.parseInt(listData);
-            handleList(chatId, user, listSetId, page);
-            try {
-                execute(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+            } else {
+                var nextCard = getNextCardForLearning(user, gradedCardId);
+                LearningSession.Direction dir = getLearningDirection(user);
+                if (nextCard.isPresent()) {
+                String question = dir == LearningSession.Direction.EN_RU ? nextCard.get().word() : nextCard.get().translation();
+                String showLabel = dir == LearningSession.Direction.EN_RU ? "Показать перевод" : "Показать слово";
+                String progress = session != null && session.getGoal() != null ? "\n\n(" + session.getViewedCount() + "/" + session.getGoal() + ")" : "";
+                outbound.send(EditMessageText.builder()
                         .chatId(chatId.toString())
                         .messageId(messageId)
+                        .text("*" + question + "*" + progress)
+                        .parseMode("Markdown")
+                        .replyMarkup(learningKeyboard(session, nextCard.get().id(), showLabel))
                         .build());
-            } catch (TelegramApiException ignored) {}
-        } else if (data.startsWith(CB_EDIT)) {
-            Long cardId = Long.parseLong(data.substring(CB_EDIT.length()));
-            cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
-                userState.put(user.getId(), UserState.editing(cardId));
-                sendText(chatId.toString(), "Редактирование: " + card.getWord() + " — " + card.getTranslation() +
-                        "\n\nВведите новое значение: слово — перевод\nИли /cancel для отмены");
-            });
-        } else if (data.startsWith(CB_MOVE)) {
-            Long cardId = Long.parseLong(data.substring(CB_MOVE.length()));
-            cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
-                showMoveSetChoice(chatId, messageId, user, card);
-            });
-        } else if (data.startsWith(CB_MOVE_TO)) {
-            String rest = data.substring(CB_MOVE_TO.length());
-            String[] parts = rest.split(":");
-            Long cardId = Long.parseLong(parts[0]);
-            String targetSet = parts[1];
-            cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
-                CardSet newSet = null;
-                if (!"NONE".equals(targetSet)) {
-                    Long setId = Long.parseLong(targetSet);
-                    newSet = cardSetService.findByIdAndUserId(setId, user.getId()).orElse(null);
-                }
-                cardService.moveToSet(card, newSet);
-                String result = newSet != null ? "Карточка перемещена в набор «" + newSet.getName() + "»" : "Карточка убрана из набора";
-                try {
-                    execute(EditMessageText.builder()
-                            .chatId(chatId.toString())
-                            .messageId(messageId)
-                            .text(result + ": " + card.getWord() + " — " + card.getTranslation())
-                            .build());
-                } catch (TelegramApiException e) {
-                    log.error("Ошибка", e);
-                }
-            });
-        } else if (data.startsWith(CB_DELETE)) {
-            Long cardId = Long.parseLong(data.substring(CB_DELETE.length()));
-            cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
-                try {
-                    execute(EditMessageText.builder()
-                            .chatId(chatId.toString())
-                            .messageId(messageId)
-                            .text("Удалить карточку «" + card.getWord() + " — " + card.getTranslation() + "»?")
-                            .replyMarkup(InlineKeyboardMarkup.builder()
-                                    .keyboardRow(List.of(
-                                            InlineKeyboardButton.builder().text("Да, удалить").callbackData(CB_DEL_YES + cardId).build(),
-                                            InlineKeyboardButton.builder().text("Нет").callbackData(CB_DEL_NO).build()))
-                                    .build())
-                            .build());
-                } catch (TelegramApiException e) {
-                    log.error("Ошибка", e);
-                }
-            });
-        } else if (data.startsWith(CB_DEL_YES)) {
-            Long cardId = Long.parseLong(data.substring(CB_DEL_YES.length()));
-            cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
-                cardService.delete(card);
-                try {
-                    execute(EditMessageText.builder()
-                            .chatId(chatId.toString())
-                            .messageId(messageId)
-                            .text("Карточка удалена.")
-                            .build());
-                } catch (TelegramApiException e) {
-                    log.error("Ошибка", e);
-                }
-            });
-        } else if (CB_REMIND_LEARN.equals(data)) {
-            var cardOpt = learningService.getNextCard(user);
-            if (cardOpt.isPresent()) {
-                try {
-                    execute(EditMessageText.builder()
-                            .chatId(chatId.toString())
-                            .messageId(messageId)
-                            .text("*" + cardOpt.get().getWord() + "*")
-                            .parseMode("Markdown")
-                            .replyMarkup(InlineKeyboardMarkup.builder()
-                                    .keyboardRow(List.of(InlineKeyboardButton.builder().text("Показать перевод").callbackData(CB_SHOW + cardOpt.get().getId()).build()))
-                                    .keyboardRow(List.of(
-                                            InlineKeyboardButton.builder().text("Следующая").callbackData(CB_NEXT).build(),
-                                            InlineKeyboardButton.builder().text("Закончить").callbackData(CB_END).build()))
-                                    .build())
-                            .build());
-                } catch (TelegramApiException e) {
-                    log.error("Ошибка", e);
-                }
-            } else {
-                try {
-                    execute(EditMessageText.builder()
+                } else {
+                    outbound.send(EditMessageText.builder()
                             .chatId(chatId.toString())
                             .messageId(messageId)
-                            .text("Нет карточек для изучения. Добавьте через /add")
+                            .text(isSpaced(session)
+                                    ? "✅ На сейчас всё повторено. Загляните позже — /learn."
+                                    : "Карточки закончились. Нажмите /learn для новой сессии.")
                             .build());
-                } catch (TelegramApiException e) {
-                    log.error("Ошибка", e);
                 }
             }
-        } else if (CB_DEL_NO.equals(data)) {
-            handleList(chatId, user, null, 0);
-            try {
-                execute(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+        } else {
+            var nextCard = getNextCardForLearning(user, null);
+            LearningSession.Direction dir = getLearningDirection(user);
+            if (nextCard.isPresent()) {
+                String question = dir == LearningSession.Direction.EN_RU ? nextCard.get().word() : nextCard.get().translation();
+                String showLabel = dir == LearningSession.Direction.EN_RU ? "Показать перевод" : "Показать слово";
+                outbound.send(EditMessageText.builder()
                         .chatId(chatId.toString())
                         .messageId(messageId)
+                        .text("*" + question + "*")
+                        .parseMode("Markdown")
+                        .replyMarkup(learningKeyboard(null, nextCard.get().id(), showLabel))
                         .build());
-            } catch (TelegramApiException ignored) {}
-        } else if (CB_ADD_SET.equals(data)) {
-            userState.put(user.getId(), UserState.addingSet());
-            sendText(chatId.toString(), "Введите название набора (например: Животные, Отпуск). Или /cancel для отмены.");
-        } else if (CB_ADD_DEFAULTS.equals(data)) {
-            int added = defaultTopicsService.createDefaultSetsForUser(user);
-            String msg = added > 0
-                    ? "✅ Добавлено " + added + " стандартных наборов:\nЖивотные, Еда и напитки, Семья, Дом, Цвета, Путешествия, Работа, Природа"
-                    : "Все стандартные наборы уже добавлены.";
-            try {
-                execute(EditMessageText.builder()
+            } else {
+                outbound.send(EditMessageText.builder()
                         .chatId(chatId.toString())
                         .messageId(messageId)
-                        .text(msg)
+                        .text("Карточки закончились. Нажмите /learn для новой сессии.")
                         .build());
-            } catch (TelegramApiException e) {
-                log.error("Ошибка", e);
             }
-        } else if (data.startsWith(CB_DEL_SET)) {
-            Long setId = Long.parseLong(data.substring(CB_DEL_SET.length()));
-            cardSetService.findByIdAndUserId(setId, user.getId()).ifPresent(set -> {
-                try {
-                    execute(EditMessageText.builder()
-                            .chatId(chatId.toString())
-                            .messageId(messageId)
-                            .text("Удалить набор «" + set.getName() + "»? Карточки останутся без набора.")
-                            .replyMarkup(InlineKeyboardMarkup.builder()
-                                    .keyboardRow(List.of(
-                                            InlineKeyboardButton.builder().text("Да, удалить").callbackData(CB_DEL_SET_YES + setId).build(),
-                                            InlineKeyboardButton.builder().text("Нет").callbackData(CB_DEL_SET_NO).build()))
-                                    .build())
-                            .build());
-                } catch (TelegramApiException e) {
-                    log.error("Ошибка", e);
-                }
-            });
-        } else if (data.startsWith(CB_DEL_SET_YES)) {
-            Long setId = Long.parseLong(data.substring(CB_DEL_SET_YES.length()));
-            cardSetService.findByIdAndUserId(setId, user.getId()).ifPresent(set -> {
-                cardSetService.delete(set);
-                try {
-                    execute(EditMessageText.builder()
-                            .chatId(chatId.toString())
-                            .messageId(messageId)
-                            .text("Набор удалён.")
-                            .build());
-                } catch (TelegramApiException e) {
-                    log.error("Ошибка", e);
-                }
-            });
-        } else if (CB_DEL_SET_NO.equals(data)) {
-            handleSets(chatId, user);
-            try {
-                execute(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
-                        .chatId(chatId.toString())
-                        .messageId(messageId)
-                        .build());
-            } catch (TelegramApiException ignored) {}
         }
+    }
 
-        try {
-            execute(org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery.builder()
-                    .callbackQueryId(update.getCallbackQuery().getId())
+    /** Оценка в интервальном повторении: карточка переносится в очереди, дальше — как «Следующая». */
+    private void onGrade(Long chatId, Integer messageId, User user, CallbackData data) {
+        spacedRepetitionService.grade(user.getId(), data.arg(0), ReviewGrade.values()[(int) data.arg(1)]);
+        showNext(chatId, messageId, user, data.arg(0));
+    }
+
+    private void onEnd(Long chatId, Integer messageId, User user, CallbackData data) {
+        learningSession.remove(user.getId());
+        outbound.send(EditMessageText.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .text("Сессия завершена. Нажмите /learn чтобы продолжить.")
+                .build());
+    }
+
+    private void onListChoice(Long chatId, Integer messageId, User user, CallbackData data) {
+        Long setId = setFilter(data.arg(0));
+        outbound.send(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .build());
+        handleList(chatId, user, setId, 0);
+    }
+
+    private void onList(Long chatId, Integer messageId, User user, CallbackData data) {
+        Long listSetId = setFilter(data.arg(0));
+        int page = (int) data.arg(1);
+        handleList(chatId, user, listSetId, page);
+        outbound.send(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .build());
+    }
+
+    private void onEdit(Long chatId, Integer messageId, User user, CallbackData data) {
+        long cardId = data.arg(0);
+        cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
+            userState.put(user.getId(), UserState.editing(cardId));
+            sendText(chatId.toString(), "Редактирование: " + card.getWord() + " — " + card.getTranslation() +
+                    "\n\nВведите новое значение: слово — перевод\nИли /cancel для отмены");
+        });
+    }
+
+    private void onMove(Long chatId, Integer messageId, User user, CallbackData data) {
+        long cardId = data.arg(0);
+        cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
+            showMoveSetChoice(chatId, messageId, user, card);
+        });
+    }
+
+    private void onMoveTo(Long chatId, Integer messageId, User user, CallbackData data) {
+        long cardId = data.arg(0);
+        long targetSet = data.arg(1);
+        cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
+            CardSet newSet = null;
+            if (targetSet != CallbackCodec.SET_NONE) {
+                newSet = cardSetService.findByIdAndUserId(targetSet, user.getId()).orElse(null);
+            }
+            cardService.moveToSet(card, newSet);
+            invalidatePrefetch(user);
+            String result = newSet != null ? "Карточка перемещена в набор «" + newSet.getName() + "»" : "Карточка убрана из набора";
+            outbound.send(EditMessageText.builder()
+                    .chatId(chatId.toString())
+                    .messageId(messageId)
+                    .text(result + ": " + card.getWord() + " — " + card.getTranslation())
                     .build());
-        } catch (TelegramApiException ignored) {}
+        });
     }
 
-    private LearningSession.Direction getLearningDirection(User user) {
-        LearningSession session = learningSession.get(user.getId());
-        return session != null ? session.getDirection() : LearningSession.Direction.EN_RU;
+    private void onDelete(Long chatId, Integer messageId, User user, CallbackData data) {
+        long cardId = data.arg(0);
+        cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
+            outbound.send(EditMessageText.builder()
+                    .chatId(chatId.toString())
+                    .messageId(messageId)
+                    .text("Удалить карточку «" + card.getWord() + " — " + card.getTranslation() + "»?")
+                    .replyMarkup(InlineKeyboardMarkup.builder()
+                            .keyboardRow(List.of(
+                                    InlineKeyboardButton.builder().text("Да, удалить").callbackData(CallbackCodec.encode(CallbackAction.DELETE_CONFIRM, cardId)).build(),
+                                    InlineKeyboardButton.builder().text("Нет").callbackData(CallbackCodec.encode(CallbackAction.DELETE_CANCEL)).build()))
+                            .build())
+                    .build());
+        });
     }
 
-    private void editToTranslation(Long chatId, Integer messageId, Card card, LearningSession.Direction direction) {
-        try {
-            String transcription = (card.getTranscription() != null && !card.getTranscription().isBlank())
-                    ? " [" + card.getTranscription() + "]"
-                    : "";
-            String text = direction == LearningSession.Direction.EN_RU
-                    ? card.getWord() + transcription + " — " + card.getTranslation()
-                    : card.getTranslation() + " — " + card.getWord() + transcription;
-            InlineKeyboardButton nextBtn = InlineKeyboardButton.builder().text("Следующая").callbackData(CB_NEXT).build();
-            InlineKeyboardButton endBtn = InlineKeyboardButton.builder().text("Закончить").callbackData(CB_END).build();
-
-            execute(EditMessageText.builder()
+    private void onDeleteConfirm(Long chatId, Integer messageId, User user, CallbackData data) {
+        long cardId = data.arg(0);
+        cardService.findByIdAndUserId(cardId, user.getId()).ifPresent(card -> {
+            cardService.delete(card);
+            invalidatePrefetch(user);
+            outbound.send(EditMessageText.builder()
                     .chatId(chatId.toString())
                     .messageId(messageId)
-                    .text(text)
+                    .text("Карточка удалена.")
+                    .build());
+        });
+    }
+
+    private void onRemindLearn(Long chatId, Integer messageId, User user, CallbackData data) {
+        var cardOpt = learningService.getNextCard(user);
+        if (cardOpt.isPresent()) {
+            outbound.send(EditMessageText.builder()
+                    .chatId(chatId.toString())
+                    .messageId(messageId)
+                    .text("*" + cardOpt.get().getWord() + "*")
+                    .parseMode("Markdown")
                     .replyMarkup(InlineKeyboardMarkup.builder()
-                            .keyboardRow(List.of(nextBtn, endBtn))
+                            .keyboardRow(List.of(InlineKeyboardButton.builder().text("Показать перевод").callbackData(CallbackCodec.encode(CallbackAction.SHOW, cardOpt.get().getId())).build()))
+                            .keyboardRow(List.of(
+                                    InlineKeyboardButton.builder().text("Следующая").callbackData(CallbackCodec.encode(CallbackAction.NEXT)).build(),
+                                    InlineKeyboardButton.builder().text("Закончить").callbackData(CallbackCodec.encode(CallbackAction.END)).build()))
                             .build())
                     .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка показа перевода", e);
+        } else {
+            outbound.send(EditMessageText.builder()
+                    .chatId(chatId.toString())
+                    .messageId(messageId)
+                    .text("Нет карточек для изучения. Добавьте через /add")
+                    .build());
         }
     }
 
+    private void onDeleteCancel(Long chatId, Integer messageId, User user, CallbackData data) {
+        handleList(chatId, user, null, 0);
+        outbound.send(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .build());
+    }
+
+    private void onAddSet(Long chatId, Integer messageId, User user, CallbackData data) {
+        userState.put(user.getId(), UserState.addingSet());
+        sendText(chatId.toString(), "Введите название набора (например: Животные, Отпуск). Или /cancel для отмены.");
+    }
+
+    private void onAddDefaults(Long chatId, Integer messageId, User user, CallbackData data) {
+        int added = defaultTopicsService.createDefaultSetsForUser(user);
+        String msg = added > 0
+                ? "✅ Добавлено " + added + " стандартных наборов:\nЖивотные, Еда и напитки, Семья, Дом, Цвета, Путешествия, Работа, Природа"
+                : "Все стандартные наборы уже добавлены.";
+        outbound.send(EditMessageText.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .text(msg)
+                .build());
+    }
+
+    private void onDeleteSet(Long chatId, Integer messageId, User user, CallbackData data) {
+        long setId = data.arg(0);
+        cardSetService.findByIdAndUserId(setId, user.getId()).ifPresent(set -> {
+            outbound.send(EditMessageText.builder()
+                    .chatId(chatId.toString())
+                    .messageId(messageId)
+                    .text("Удалить набор «" + set.getName() + "»? Карточки останутся без набора.")
+                    .replyMarkup(InlineKeyboardMarkup.builder()
+                            .keyboardRow(List.of(
+                                    InlineKeyboardButton.builder().text("Да, удалить").callbackData(CallbackCodec.encode(CallbackAction.DELETE_SET_CONFIRM, setId)).build(),
+                                    InlineKeyboardButton.builder().text("Нет").callbackData(CallbackCodec.encode(CallbackAction.DELETE_SET_CANCEL)).build()))
+                            .build())
+                    .build());
+        });
+    }
+
+    private void onDeleteSetConfirm(Long chatId, Integer messageId, User user, CallbackData data) {
+        long setId = data.arg(0);
+        cardSetService.findByIdAndUserId(setId, user.getId()).ifPresent(set -> {
+            cardSetService.delete(set);
+            invalidatePrefetch(user);
+            outbound.send(EditMessageText.builder()
+                    .chatId(chatId.toString())
+                    .messageId(messageId)
+                    .text("Набор удалён.")
+                    .build());
+        });
+    }
+
+    private void onDeleteSetCancel(Long chatId, Integer messageId, User user, CallbackData data) {
+        handleSets(chatId, user);
+        outbound.send(org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .build());
+    }
+
+    /**
+     * Фильтр по набору из выбора в кнопке: null — все карточки, LEARNING_FILTER_NONE — без набора.
+     */
+    private static Long setFilter(long setChoice) {
+        return setChoice == CallbackCodec.SET_ALL ? LEARNING_FILTER_ALL : Long.valueOf(setChoice);
+    }
+
+    private LearningSession.Direction getLearningDirection(User user) {
+        LearningSession session = learningSession.get(user.getId());
+        return session != null ? session.getDirection() : LearningSession.Direction.EN_RU;
+    }
+
+    private void editToTranslation(Long chatId, Integer messageId, Card card, LearningSession.Direction direction, boolean spaced) {
+        String transcription = (card.getTranscription() != null && !card.getTranscription().isBlank())
+                ? " [" + card.getTranscription() + "]"
+                : "";
+        String text = direction == LearningSession.Direction.EN_RU
+                ? card.getWord() + transcription + " — " + card.getTranslation()
+                : card.getTranslation() + " — " + card.getWord() + transcription;
+        InlineKeyboardMarkup keyboard = spaced
+                ? InlineKeyboardMarkup.builder().keyboardRow(gradeRow(card.getId())).keyboardRow(List.of(endButton())).build()
+                : InlineKeyboardMarkup.builder().keyboardRow(List.of(nextButton(), endButton())).build();
+
+        outbound.send(EditMessageText.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .text(text)
+                .replyMarkup(keyboard)
+                .build());
+    }
+
     private void handleStats(Long chatId, User user) {
         var stats = statsService.getStats(user);
         StringBuilder sb = new StringBuilder();
@@ -1059,48 +1212,83 @@ public class CardTelegramBot extends TelegramLongPollingBot {
             sb.append(String.format("~%.1f просмотров на карточку\n", avg));
         }
         sb.append("\n");
-        sb.append("Серия дней: ").append(stats.streak()).append("\n");
+        sb.append("Серия дней: ").append(stats.streak()).append(" (рекорд: ").append(stats.longestStreak()).append(")\n");
         sb.append("Сегодня: ").append(stats.distinctCardsToday()).append(" карточек\n");
         sb.append("За неделю: ").append(stats.distinctCardsThisWeek()).append(" карточек\n");
         if (!stats.topViewedCards().isEmpty()) {
             sb.append("\nТоп по просмотрам:\n");
             for (var card : stats.topViewedCards()) {
-                sb.append("• ").append(card.getWord()).append(" — ").append(card.getTranslation()).append("\n");
+                sb.append("• ").append(card.word()).append(" — ").append(card.translation()).append("\n");
             }
         }
         sendText(chatId.toString(), sb.toString());
     }
 
+    /** /reminder [час 0–23] [часовой пояс] | off */
+    private void handleReminder(Long chatId, User user, String args) {
+        if (args.isEmpty()) {
+            sendText(chatId.toString(), describeReminder(user) + "\n\n" + REMINDER_USAGE);
+            return;
+        }
+        if (args.equalsIgnoreCase("off") || args.equalsIgnoreCase("выкл")) {
+            userService.disableReminders(user);
+            sendText(chatId.toString(), "Напоминания выключены. Включить снова: /reminder 10");
+            return;
+        }
+        Integer hour = null;
+        ZoneId zone = null;
+        for (String token : args.split("\\s+")) {
+            if (token.matches("\\d{1,2}")) {
+                hour = Integer.parseInt(token);
+                if (hour > 23) {
+                    sendText(chatId.toString(), "Час — число от 0 до 23.\n\n" + REMINDER_USAGE);
+                    return;
+                }
+                continue;
+            }
+            try {
+                zone = ZoneId.of(token);
+            } catch (DateTimeException e) {
+                sendText(chatId.toString(), "Неизвестный часовой пояс: " + token + "\n\n" + REMINDER_USAGE);
+                return;
+            }
+        }
+        sendText(chatId.toString(), describeReminder(userService.updateReminder(user, zone, hour)));
+    }
+
+    private static String describeReminder(User user) {
+        if (user.getNextReminderAt() == null) {
+            return "Напоминания выключены.";
+        }
+        return String.format("⏰ Напоминание каждый день около %02d:00, часовой пояс %s.",
+                user.getReminderHour(), user.getTimeZone());
+    }
+
     private void handleSets(Long chatId, User user) {
-        var sets = cardSetService.findAllByUser(user);
-        long withoutSet = cardService.countByUserWithoutSet(user);
+        var overview = cardSetService.overview(user);
+        var sets = overview.sets();
 
         StringBuilder sb = new StringBuilder("📁 Наборы карточек:\n\n");
-        sb.append("• Без набора: ").append(withoutSet).append(" карт.\n");
+        sb.append("• Без набора: ").append(overview.withoutSet()).append(" карт.\n");
         for (var set : sets) {
-            long count = cardService.countByUser(user, set.getId());
-            sb.append("• ").append(set.getName()).append(": ").append(count).append(" карт.\n");
+            sb.append("• ").append(set.name()).append(": ").append(set.cardCount()).append(" карт.\n");
         }
 
         var keyboard = new java.util.ArrayList<List<InlineKeyboardButton>>();
-        keyboard.add(List.of(InlineKeyboardButton.builder().text("➕ Создать набор").callbackData(CB_ADD_SET).build()));
-        keyboard.add(List.of(InlineKeyboardButton.builder().text("📥 Добавить стандартные наборы").callbackData(CB_ADD_DEFAULTS).build()));
+        keyboard.add(List.of(InlineKeyboardButton.builder().text("➕ Создать набор").callbackData(CallbackCodec.encode(CallbackAction.ADD_SET)).build()));
+        keyboard.add(List.of(InlineKeyboardButton.builder().text("📥 Добавить стандартные наборы").callbackData(CallbackCodec.encode(CallbackAction.ADD_DEFAULTS)).build()));
         for (var set : sets) {
             keyboard.add(List.of(
-                    InlineKeyboardButton.builder().text("📁 " + set.getName()).callbackData("LIST_SET:" + set.getId()).build(),
-                    InlineKeyboardButton.builder().text("🗑 Удалить").callbackData(CB_DEL_SET + set.getId()).build()
+                    InlineKeyboardButton.builder().text("📁 " + set.name()).callbackData(CallbackCodec.encode(CallbackAction.LIST, set.id(), 0)).build(),
+                    InlineKeyboardButton.builder().text("🗑 Удалить").callbackData(CallbackCodec.encode(CallbackAction.DELETE_SET, set.id())).build()
             ));
         }
 
-        try {
-            execute(SendMessage.builder()
-                    .chatId(chatId.toString())
-                    .text(sb.toString())
-                    .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка", e);
-        }
+        outbound.send(SendMessage.builder()
+                .chatId(chatId.toString())
+                .text(sb.toString())
+                .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
+                .build());
     }
 
     private void handleAddSetInput(Long chatId, User user, String text) {
@@ -1119,34 +1307,29 @@ public class CardTelegramBot extends TelegramLongPollingBot {
     }
 
     private void showListSetChoice(Long chatId, User user) {
-        if (cardService.countByUser(user) == 0) {
+        var overview = cardSetService.overview(user);
+        if (overview.totalCards() == 0) {
             sendText(chatId.toString(), "Нет карточек. Добавьте через /add");
             return;
         }
-        var sets = cardSetService.findAllByUser(user);
-        long withoutSet = cardService.countByUserWithoutSet(user);
+        long withoutSet = overview.withoutSet();
 
         var keyboard = new java.util.ArrayList<List<InlineKeyboardButton>>();
-        keyboard.add(List.of(InlineKeyboardButton.builder().text("📚 Все карточки").callbackData(CB_LIST_CHOICE + "ALL").build()));
+        keyboard.add(List.of(InlineKeyboardButton.builder().text("📚 Все карточки").callbackData(CallbackCodec.encode(CallbackAction.LIST_CHOICE, CallbackCodec.SET_ALL)).build()));
         if (withoutSet > 0) {
-            keyboard.add(List.of(InlineKeyboardButton.builder().text("📋 Без набора (" + withoutSet + ")").callbackData(CB_LIST_CHOICE + "NONE").build()));
+            keyboard.add(List.of(InlineKeyboardButton.builder().text("📋 Без набора (" + withoutSet + ")").callbackData(CallbackCodec.encode(CallbackAction.LIST_CHOICE, CallbackCodec.SET_NONE)).build()));
         }
-        for (var set : sets) {
-            long count = cardService.countByUser(user, set.getId());
-            if (count > 0) {
-                keyboard.add(List.of(InlineKeyboardButton.builder().text("📁 " + set.getName() + " (" + count + ")").callbackData(CB_LIST_CHOICE + set.getId()).build()));
+        for (var set : overview.sets()) {
+            if (set.cardCount() > 0) {
+                keyboard.add(List.of(InlineKeyboardButton.builder().text("📁 " + set.name() + " (" + set.cardCount() + ")").callbackData(CallbackCodec.encode(CallbackAction.LIST_CHOICE, set.id())).build()));
             }
         }
 
-        try {
-            execute(SendMessage.builder()
-                    .chatId(chatId.toString())
-                    .text("Выберите набор:")
-                    .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка", e);
-        }
+        outbound.send(SendMessage.builder()
+                .chatId(chatId.toString())
+                .text("Выберите набор:")
+                .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
+                .build());
     }
 
     private void handleList(Long chatId, User user, int page) {
@@ -1181,55 +1364,47 @@ public class CardTelegramBot extends TelegramLongPollingBot {
             sb.append(num).append(". ").append(c.getWord()).append(" — ").append(c.getTranslation()).append(setLabel).append("\n");
             String n = String.valueOf(num);
             keyboard.add(List.of(
-                    InlineKeyboardButton.builder().text("✏️ " + n).callbackData(CB_EDIT + c.getId()).build(),
-                    InlineKeyboardButton.builder().text("📁 " + n).callbackData(CB_MOVE + c.getId()).build(),
-                    InlineKeyboardButton.builder().text("🗑 " + n).callbackData(CB_DELETE + c.getId()).build()
+                    InlineKeyboardButton.builder().text("✏️ " + n).callbackData(CallbackCodec.encode(CallbackAction.EDIT, c.getId())).build(),
+                    InlineKeyboardButton.builder().text("📁 " + n).callbackData(CallbackCodec.encode(CallbackAction.MOVE, c.getId())).build(),
+                    InlineKeyboardButton.builder().text("🗑 " + n).callbackData(CallbackCodec.encode(CallbackAction.DELETE, c.getId())).build()
             ));
             num++;
         }
 
         if (totalPages > 1) {
             var navRow = new java.util.ArrayList<InlineKeyboardButton>();
-            String listPrefix = setId != null ? "LIST_SET:" + setId + ":" : CB_LIST;
+            long setChoice = setId != null ? setId : CallbackCodec.SET_ALL;
             if (page > 0) {
-                navRow.add(InlineKeyboardButton.builder().text("◀ Назад").callbackData(listPrefix + (page - 1)).build());
+                navRow.add(InlineKeyboardButton.builder().text("◀ Назад").callbackData(CallbackCodec.encode(CallbackAction.LIST, setChoice, page - 1)).build());
             }
             if (page < totalPages - 1) {
-                navRow.add(InlineKeyboardButton.builder().text("Вперёд ▶").callbackData(listPrefix + (page + 1)).build());
+                navRow.add(InlineKeyboardButton.builder().text("Вперёд ▶").callbackData(CallbackCodec.encode(CallbackAction.LIST, setChoice, page + 1)).build());
             }
             if (!navRow.isEmpty()) {
                 keyboard.add(navRow);
             }
         }
 
-        try {
-            execute(SendMessage.builder()
-                    .chatId(chatId.toString())
-                    .text(sb.toString())
-                    .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки списка", e);
-        }
+        outbound.send(SendMessage.builder()
+                .chatId(chatId.toString())
+                .text(sb.toString())
+                .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
+                .build());
     }
 
     private void showMoveSetChoice(Long chatId, Integer messageId, User user, Card card) {
         var sets = cardSetService.findAllByUser(user);
         var keyboard = new java.util.ArrayList<List<InlineKeyboardButton>>();
-        keyboard.add(List.of(InlineKeyboardButton.builder().text("📋 Без набора").callbackData(CB_MOVE_TO + card.getId() + ":NONE").build()));
+        keyboard.add(List.of(InlineKeyboardButton.builder().text("📋 Без набора").callbackData(CallbackCodec.encode(CallbackAction.MOVE_TO, card.getId(), CallbackCodec.SET_NONE)).build()));
         for (var set : sets) {
-            keyboard.add(List.of(InlineKeyboardButton.builder().text("📁 " + set.getName()).callbackData(CB_MOVE_TO + card.getId() + ":" + set.getId()).build()));
-        }
-        try {
-            execute(EditMessageText.builder()
-                    .chatId(chatId.toString())
-                    .messageId(messageId)
-                    .text("Переместить «" + card.getWord() + " — " + card.getTranslation() + "» в набор:")
-                    .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка", e);
+            keyboard.add(List.of(InlineKeyboardButton.builder().text("📁 " + set.getName()).callbackData(CallbackCodec.encode(CallbackAction.MOVE_TO, card.getId(), set.getId())).build()));
         }
+        outbound.send(EditMessageText.builder()
+                .chatId(chatId.toString())
+                .messageId(messageId)
+                .text("Переместить «" + card.getWord() + " — " + card.getTranslation() + "» в набор:")
+                .replyMarkup(InlineKeyboardMarkup.builder().keyboard(keyboard).build())
+                .build());
     }
 
     private void handleEditInput(Long chatId, User user, String text, Long cardId) {
@@ -1243,6 +1418,7 @@ public class CardTelegramBot extends TelegramLongPollingBot {
                     return;
                 }
                 cardService.update(card, parsed.word(), parsed.translation(), parsed.transcription());
+                invalidatePrefetch(user);
                 sendText(chatId.toString(), "Карточка обновлена: " + parsed.word() + " — " + parsed.translation());
             } catch (Exception e) {
                 sendText(chatId.toString(), "Ошибка: " + e.getMessage());
@@ -1271,6 +1447,8 @@ public class CardTelegramBot extends TelegramLongPollingBot {
             📁 Наборы — управление наборами карточек.
             Создавайте наборы (например: Животные, Отпуск), добавляйте в них карточки, удаляйте наборы.
 
+            ⏰ /reminder — время ежедневного напоминания по вашему часовому поясу, /reminder off — выключить.
+
             ❓ Помощь — эта справка.
 
             Отмена — /cancel отменяет текущее действие (добавление, редактирование).
@@ -1280,21 +1458,13 @@ public class CardTelegramBot extends TelegramLongPollingBot {
                 .text(msg)
                 .replyMarkup(buildMainMenuKeyboard())
                 .build();
-        try {
-            execute(sendMsg);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки справки", e);
-        }
+        outbound.send(sendMsg);
     }
 
     private void sendText(String chatId, String text) {
-        try {
-            execute(SendMessage.builder()
-                    .chatId(chatId)
-                    .text(text)
-                    .build());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка отправки сообщения", e);
-        }
+        outbound.send(SendMessage.builder()
+                .chatId(chatId)
+                .text(text)
+                .build());
     }
 }
@@ -0,0 +1,258 @@
+package com.cardbot.bot;
+
+import com.cardbot.model.SessionState;
+import com.cardbot.repository.SessionStateRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link SessionStore} в таблице session_state, общей для всех экземпляров бота.
+ * <p>
+ * Перед БД стоит ближний кэш декодированных записей. Первое чтение ключа за update сверяет с БД
+ * только версию (запрос по первичному ключу) и декодирует запись, лишь если её изменил другой экземпляр.
+ * Изменения копятся в рамках update и пишутся в {@link #flush()}: запись, полученная через get,
+ * сохраняется, только если её байты изменились, и только при совпадении версии; при конфликте
+ * изменения этого экземпляра отбрасываются. put и remove перезаписывают запись безусловно.
+ * <p>
+ * Простой считается от последней записи; просроченные записи удаляет {@link #sweepExpired()},
+ * слушатель вызывается на том экземпляре, чьё удаление прошло.
+ */
+@Slf4j
+class DatabaseSessionStore<V> implements SessionStore<V> {
+
+    private static final int SWEEP_BATCH = 500;
+
+    private final String name;
+    private final SessionStateRepository repository;
+    private final SessionCodec<V> codec;
+    private final EvictionListener<V> listener;
+    private final Duration idleTimeout;
+    private final Cache<Long, Loaded<V>> nearCache;
+    private final ThreadLocal<Map<Long, Pending<V>>> pending = ThreadLocal.withInitial(HashMap::new);
+    private final Counter nearHits;
+    private final Counter nearMisses;
+    private final Counter conflicts;
+    private final Counter expired;
+
+    DatabaseSessionStore(String name, Duration idleTimeout, long maximumSize, ToLongFunction<V> estimator,
+                         SessionCodec<V> codec, EvictionListener<V> listener,
+                         SessionStateRepository repository, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.repository = repository;
+        this.codec = codec;
+        this.listener = listener;
+        this.idleTimeout = idleTimeout;
+        this.nearCache = Caffeine.newBuilder()
+                .expireAfterAccess(idleTimeout)
+                .maximumSize(maximumSize)
+                .build();
+        this.nearHits = nearCacheCounter(meterRegistry, "hit");
+        this.nearMisses = nearCacheCounter(meterRegistry, "miss");
+        this.conflicts = Counter.builder("cardbot.sessions.conflicts")
+                .description("Изменения, отброшенные из-за записи другого экземпляра")
+                .tag("store", name)
+                .register(meterRegistry);
+        this.expired = SessionStoreMeters.evicted(meterRegistry, name, "expired");
+        SessionStoreMeters.registerResident(meterRegistry, name, nearCache,
+                loaded -> estimator.applyAsLong(loaded.value()) + loaded.payload().length);
+    }
+
+    private Counter nearCacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("cardbot.sessions.near.cache")
+                .description("Чтения хранилища состояния: hit — запись не пришлось декодировать заново")
+                .tag("store", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public V get(Long userId) {
+        Map<Long, Pending<V>> touched = pending.get();
+        Pending<V> known = touched.get(userId);
+        if (known != null) {
+            return known.value();
+        }
+        Loaded<V> loaded = load(userId);
+        touched.put(userId, loaded != null ? new Pending<>(loaded.value(), loaded, false) : new Pending<>(null, null, false));
+        return loaded != null ? loaded.value() : null;
+    }
+
+    @Override
+    public void put(Long userId, V value) {
+        pending.get().put(userId, new Pending<>(value, null, true));
+    }
+
+    @Override
+    public void remove(Long userId) {
+        pending.get().put(userId, new Pending<>(null, null, true));
+    }
+
+    @Override
+    public long size() {
+        return nearCache.estimatedSize();
+    }
+
+    @Override
+    public void flush() {
+        Map<Long, Pending<V>> touched = pending.get();
+        if (touched.isEmpty()) {
+            return;
+        }
+        try {
+            Instant now = Instant.now();
+            for (Map.Entry<Long, Pending<V>> entry : touched.entrySet()) {
+                write(entry.getKey(), entry.getValue(), now);
+            }
+        } catch (RuntimeException e) {
+            touched.keySet().forEach(nearCache::invalidate);
+            throw e;
+        } finally {
+            touched.clear();
+        }
+    }
+
+    @Override
+    public void discard() {
+        Map<Long, Pending<V>> touched = pending.get();
+        // Объекты из ближнего кэша могли быть изменены на месте
+        touched.keySet().forEach(nearCache::invalidate);
+        touched.clear();
+    }
+
+    /**
+     * Удаляет записи без изменений дольше idleTimeout и вызывает для них слушатель.
+     * @return число удалённых этим экземпляром записей
+     */
+    int sweepExpired() {
+        List<SessionState> idle = repository.findIdleSince(name, Instant.now().minus(idleTimeout),
+                PageRequest.of(0, SWEEP_BATCH));
+        int removed = 0;
+        for (SessionState row : idle) {
+            Long userId = row.getId().getUserId();
+            if (repository.deleteIfVersion(name, userId, row.getVersion()) == 0) {
+                continue; // запись обновили или её уже удалил другой экземпляр
+            }
+            nearCache.invalidate(userId);
+            expired.increment();
+            removed++;
+            V value = decode(userId, row.getPayload());
+            if (value == null) {
+                continue;
+            }
+            try {
+                listener.onEvicted(userId, value, EvictionCause.EXPIRED);
+            } catch (RuntimeException e) {
+                log.warn("Ошибка обработки вытеснения {} пользователя {}", name, userId, e);
+            }
+        }
+        return removed;
+    }
+
+    private Loaded<V> load(Long userId) {
+        Loaded<V> cached = nearCache.getIfPresent(userId);
+        if (cached != null) {
+            Optional<Long> version = repository.findVersion(name, userId);
+            if (version.isEmpty()) {
+                nearCache.invalidate(userId);
+                return null;
+            }
+            if (version.get() == cached.version()) {
+                nearHits.increment();
+                return cached;
+            }
+        }
+        nearMisses.increment();
+        Optional<SessionState> row = repository.findById(new SessionState.Key(name, userId));
+        if (row.isEmpty()) {
+            nearCache.invalidate(userId);
+            return null;
+        }
+        V value = decode(userId, row.get().getPayload());
+        if (value == null) {
+            nearCache.invalidate(userId);
+            return null;
+        }
+        Loaded<V> loaded = new Loaded<>(row.get().getVersion(), row.get().getPayload(), value);
+        nearCache.put(userId, loaded);
+        return loaded;
+    }
+
+    private V decode(Long userId, byte[] payload) {
+        try {
+            return codec.decode(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Повреждённое состояние {} пользователя {}: {}", name, userId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(Long userId, Pending<V> change, Instant now) {
+        if (change.overwrite()) {
+            overwrite(userId, change.value(), now);
+            return;
+        }
+        if (change.base() == null) {
+            return;
+        }
+        byte[] payload = codec.encode(change.value());
+        if (Arrays.equals(payload, change.base().payload())) {
+            return;
+        }
+        long version = change.base().version();
+        if (repository.updateIfVersion(name, userId, version, payload, now) == 1) {
+            nearCache.put(userId, new Loaded<>(version + 1, payload, change.value()));
+        } else {
+            conflicts.increment();
+            nearCache.invalidate(userId);
+            log.warn("Состояние {} пользователя {} изменено другим экземпляром, изменения отброшены", name, userId);
+        }
+    }
+
+    private void overwrite(Long userId, V value, Instant now) {
+        if (value == null) {
+            repository.delete(name, userId);
+            nearCache.invalidate(userId);
+            return;
+        }
+        byte[] payload = codec.encode(value);
+        if (repository.overwrite(name, userId, payload, now) == 0) {
+            try {
+                SessionState saved = repository.save(SessionState.builder()
+                        .id(new SessionState.Key(name, userId))
+                        .payload(payload)
+                        .updatedAt(now)
+                        .build());
+                nearCache.put(userId, new Loaded<>(saved.getVersion(), payload, value));
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Другой экземпляр вставил запись одновременно: put всё равно перезаписывает
+                repository.overwrite(name, userId, payload, now);
+            }
+        }
+        // Версия после безусловной записи неизвестна — следующее чтение загрузит запись заново
+        nearCache.invalidate(userId);
+    }
+
+    /** Запись, как она прочитана из БД: версия, байты и декодированный объект. */
+    private record Loaded<V>(long version, byte[] payload, V value) {}
+
+    /**
+     * Изменение за текущий update. base — прочитанная запись (null — записи не было);
+     * overwrite — put/remove, value == null означает удаление.
+     */
+    private record Pending<V>(V value, Loaded<V> base, boolean overwrite) {}
+}
@@ -1,41 +1,40 @@
 package com.cardbot.bot;
 
-import com.cardbot.model.Card;
+import com.cardbot.model.CardSnapshot;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.List;
+import java.util.Optional;
 
 @Getter
 @Setter
 public class LearningSession {
     public enum Direction { EN_RU, RU_EN }
-    public enum Order { RANDOM, SEQUENTIAL }
+    public enum Order { RANDOM, SEQUENTIAL, SPACED } // порядковый номер хранится в LearningSessionCodec
 
+    private Long chatId; // куда сообщить об истечении сессии
     private Long setIdFilter; // null=all, -1=none, else setId
     private Direction direction;
     private Order order;
-    private List<Card> sequentialCards;
-    private int sequentialIndex;
+    private SessionDeck deck; // колода в порядке показа; null — случайная карточка из БД на каждый шаг
     private Integer goal; // null = no goal
     private int viewedCount; // для цели на сессию
+    // SPACED: следующая карточка очереди, загруженная заранее, и после оценки какой карточки она действительна.
+    // Не сохраняется в LearningSessionCodec: потерянная подсказка просто загружается заново
+    private CardSnapshot prefetched;
+    private Long prefetchedAfter;
 
-    public static LearningSession create(Long setIdFilter, Direction direction, Order order, List<Card> sequentialCards, Integer goal) {
+    public static LearningSession create(Long setIdFilter, Direction direction, Order order, SessionDeck deck, Integer goal) {
         LearningSession s = new LearningSession();
         s.setIdFilter = setIdFilter;
         s.direction = direction;
         s.order = order;
-        s.sequentialCards = sequentialCards;
-        s.sequentialIndex = 0;
+        s.deck = deck;
         s.goal = goal;
         s.viewedCount = 0;
         return s;
     }
 
-    public void incrementIndex() {
-        sequentialIndex++;
-    }
-
     public void incrementViewedCount() {
         viewedCount++;
     }
@@ -44,6 +43,35 @@ public class LearningSession {
         return viewedCount;
     }
 
+    /**
+     * Грубая оценка памяти: объект сессии, колода — массив id и окно снимков карточек, — и загруженная заранее карточка.
+     */
+    public long estimatedBytes() {
+        return 72 + (deck != null ? deck.estimatedBytes() : 0) + (prefetched != null ? prefetched.estimatedBytes() : 0);
+    }
+
+    public void prefetch(Long afterCardId, CardSnapshot next) {
+        prefetchedAfter = afterCardId;
+        prefetched = next;
+    }
+
+    /** Загруженная заранее карточка, если она готовилась после afterCardId; слот освобождается. */
+    public Optional<CardSnapshot> takePrefetched(Long afterCardId) {
+        CardSnapshot next = afterCardId != null && afterCardId.equals(prefetchedAfter) ? prefetched : null;
+        prefetched = null;
+        prefetchedAfter = null;
+        return Optional.ofNullable(next);
+    }
+
+    /** Карточки изменились: загруженное заранее больше не годится. */
+    public void invalidatePrefetch() {
+        prefetched = null;
+        prefetchedAfter = null;
+        if (deck != null) {
+            deck.invalidateWindow();
+        }
+    }
+
     public boolean isGoalReached() {
         return goal != null && viewedCount >= goal;
     }
@@ -0,0 +1,145 @@
+package com.cardbot.bot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LearningSession: параметры сессии и колода ({@link SessionDeck}) — позиция, зерно перемешивания и id
+ * карточек (разности соседних id, для случайного порядка — по возрастанию); окно загруженных снимков
+ * не сохраняется и подгружается при следующем шаге.
+ * <p>
+ * Id колоды за сессию не меняются, поэтому их байты кодируются один раз и кэшируются в колоде (после
+ * decode — те же прочитанные байты): «Следующая» заново кодирует только позицию и счётчики.
+ * <p>
+ * Версия 1 хранила id последовательной сессии с индексом текущей карточки, версия 2 добавила колоду
+ * случайного порядка, версия 3 хранила перемешанные id без зерна; все читаются и превращаются в колоду
+ * версии 4.
+ */
+final class LearningSessionCodec implements SessionCodec<LearningSession> {
+
+    static final LearningSessionCodec INSTANCE = new LearningSessionCodec();
+
+    private static final int VERSION = 4;
+    private static final LearningSession.Direction[] DIRECTIONS = LearningSession.Direction.values();
+    private static final LearningSession.Order[] ORDERS = LearningSession.Order.values();
+
+    private LearningSessionCodec() {}
+
+    @Override
+    public byte[] encode(LearningSession session) {
+        SessionBytes.Writer out = new SessionBytes.Writer()
+                .writeByte(VERSION)
+                .writeNullable(session.getChatId())
+                .writeNullable(session.getSetIdFilter())
+                .writeByte(session.getDirection().ordinal())
+                .writeByte(session.getOrder().ordinal())
+                .writeNullable(session.getGoal() != null ? session.getGoal().longValue() : null)
+                .writeLong(session.getViewedCount());
+        SessionDeck deck = session.getDeck();
+        if (deck == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(1).writeLong(deck.position()).writeBytes(encodedCards(deck));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodedCards(SessionDeck deck) {
+        byte[] cached = deck.encodedCards();
+        if (cached == null) {
+            long[] ids = deck.sourceIds();
+            SessionBytes.Writer out = new SessionBytes.Writer().writeNullable(deck.seed()).writeLong(ids.length);
+            long previous = 0;
+            for (long id : ids) {
+                out.writeLong(id - previous);
+                previous = id;
+            }
+            cached = out.toByteArray();
+            deck.encodedCards(cached);
+        }
+        return cached;
+    }
+
+    @Override
+    public LearningSession decode(byte[] bytes) {
+        SessionBytes.Reader in = new SessionBytes.Reader(bytes);
+        int version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Неизвестная версия LearningSession: " + version);
+        }
+        Long chatId = in.readNullable();
+        Long setIdFilter = in.readNullable();
+        int direction = in.readByte();
+        int order = in.readByte();
+        if (direction >= DIRECTIONS.length || order >= ORDERS.length) {
+            throw new IllegalArgumentException("Неизвестный режим LearningSession");
+        }
+        Long goal = in.readNullable();
+        SessionDeck deck = null;
+        int viewedCount;
+        if (version < 3) {
+            // Индекс указывал на показанную карточку, позиция колоды — на следующую
+            int sequentialIndex = in.readInt();
+            viewedCount = in.readInt();
+            List<Long> ids = readIds(in, bytes.length);
+            if (!ids.isEmpty()) {
+                deck = deckAt(ids, Math.min(Math.max(sequentialIndex + 1, 0), ids.size()));
+            }
+            if (version == 2 && in.readByte() == 1) {
+                deck = readDeck(in, bytes.length);
+            }
+        } else {
+            viewedCount = in.readInt();
+            if (in.readByte() == 1) {
+                deck = version == 3 ? readDeck(in, bytes.length) : readSeededDeck(in, bytes.length);
+            }
+        }
+        in.expectEnd();
+
+        LearningSession session = LearningSession.create(setIdFilter, DIRECTIONS[direction], ORDERS[order], deck,
+                goal != null ? goal.intValue() : null);
+        session.setChatId(chatId);
+        session.setViewedCount(viewedCount);
+        return session;
+    }
+
+    private static SessionDeck readDeck(SessionBytes.Reader in, int maxCount) {
+        int position = in.readInt();
+        List<Long> ids = readIds(in, maxCount);
+        if (position < 0 || position > ids.size()) {
+            throw new IllegalArgumentException("Неверная позиция колоды: " + position);
+        }
+        return deckAt(ids, position);
+    }
+
+    private static SessionDeck readSeededDeck(SessionBytes.Reader in, int maxCount) {
+        int position = in.readInt();
+        int start = in.offset();
+        Long seed = in.readNullable();
+        long[] ids = readIds(in, maxCount).stream().mapToLong(Long::longValue).toArray();
+        if (position < 0 || position > ids.length) {
+            throw new IllegalArgumentException("Неверная позиция колоды: " + position);
+        }
+        SessionDeck deck = seed != null ? SessionDeck.restore(ids, seed, position) : new SessionDeck(ids, position);
+        deck.encodedCards(in.readSince(start));
+        return deck;
+    }
+
+    private static SessionDeck deckAt(List<Long> ids, int position) {
+        return new SessionDeck(ids.stream().mapToLong(Long::longValue).toArray(), position);
+    }
+
+    private static List<Long> readIds(SessionBytes.Reader in, int maxCount) {
+        int count = in.readInt();
+        if (count < 0 || count > maxCount) {
+            throw new IllegalArgumentException("Неверное число карточек: " + count);
+        }
+        List<Long> ids = new ArrayList<>(count);
+        long id = 0;
+        for (int i = 0; i < count; i++) {
+            id += in.readLong();
+            ids.add(id);
+        }
+        return ids;
+    }
+}
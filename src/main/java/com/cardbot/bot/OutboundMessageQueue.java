@@ -0,0 +1,483 @@
+package com.cardbot.bot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.Constants;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.commands.SetMyCommands;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Очередь исходящих запросов к Telegram Bot API.
+ * <p>
+ * Обработчики update только ставят запрос в очередь и не ждут ответа сети.
+ * Отправка идёт через executeAsync с соблюдением лимитов Telegram: общий token bucket
+ * (~30 сообщений/с) и token bucket на каждый чат. Внутри чата запросы уходят строго по порядку,
+ * по одному в полёте. На 429 запрос повторяется через retry_after, на сетевые ошибки и 5xx —
+ * с экспоненциальной задержкой.
+ */
+@Slf4j
+@Component
+public class OutboundMessageQueue {
+
+    private static final long NO_CHAT = 0L;
+    private static final long BASE_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long IDLE_SWEEP_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Sender sender;
+    private final TokenBucket globalBucket;
+    private final double perChatRate;
+    private final int perChatBurst;
+    private final int maxAttempts;
+
+    private final ConcurrentHashMap<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatQueue> ready = new DelayQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Thread pump;
+    private volatile boolean running = true;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter retries;
+    private final Counter throttled;
+    private final Timer waitTimer;
+
+    public OutboundMessageQueue(@Value("${telegram.bot.token}") String botToken,
+                                @Value("${telegram.bot.api-url:https://api.telegram.org/bot}") String apiUrl,
+                                @Value("${telegram.bot.outbound.global-rate:30}") double globalRate,
+                                @Value("${telegram.bot.outbound.per-chat-rate:1}") double perChatRate,
+                                @Value("${telegram.bot.outbound.per-chat-burst:5}") int perChatBurst,
+                                @Value("${telegram.bot.outbound.max-attempts:5}") int maxAttempts,
+                                @Value("${telegram.bot.outbound.http-threads:16}") int httpThreads,
+                                MeterRegistry meterRegistry) {
+        this.sender = new Sender(TelegramOptions.create(apiUrl, httpThreads), botToken, httpThreads);
+        this.globalBucket = new TokenBucket(globalRate, (int) Math.ceil(globalRate), System.nanoTime());
+        this.perChatRate = perChatRate;
+        this.perChatBurst = perChatBurst;
+        this.maxAttempts = maxAttempts;
+
+        this.meterRegistry = meterRegistry;
+        this.retries = Counter.builder("cardbot.telegram.outbound.retries")
+                .description("Повторные попытки отправки")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("cardbot.telegram.outbound.throttled")
+                .description("Ответы 429 Too Many Requests")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("cardbot.telegram.outbound.wait")
+                .description("Время от постановки запроса в очередь до первой попытки отправки")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("cardbot.telegram.outbound.queue.depth", queued, AtomicInteger::get)
+                .description("Запросы в очереди и в полёте")
+                .register(meterRegistry);
+
+        this.pump = new Thread(this::pumpLoop, "telegram-outbound");
+        this.pump.setDaemon(true);
+        this.pump.start();
+    }
+
+    /**
+     * Ставит запрос в очередь. Чат определяется по самому запросу
+     * (SendMessage, EditMessageText, DeleteMessage); служебные запросы
+     * (AnswerCallbackQuery, SetMyCommands) отправляются сразу, минуя лимиты.
+     * <p>
+     * Ошибки отправки логируются здесь; результат можно не ждать.
+     */
+    public <T extends Serializable> CompletableFuture<T> send(BotApiMethod<T> method) {
+        if (method instanceof AnswerCallbackQuery || method instanceof SetMyCommands) {
+            return sendDirect(method);
+        }
+        return enqueue(chatIdOf(method), method);
+    }
+
+    private <T extends Serializable> CompletableFuture<T> sendDirect(BotApiMethod<T> method) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executeAsync(method).whenComplete((response, error) -> {
+            recordLatency(method, startedAt, error == null);
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                recordError(method, cause);
+                log.debug("Ошибка {}: {}", method.getMethod(), cause.getMessage());
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(response);
+            }
+        });
+        return result;
+    }
+
+    private <T extends Serializable> CompletableFuture<T> enqueue(long chatId, BotApiMethod<T> method) {
+        Outgoing<T> outgoing = new Outgoing<>(method, new CompletableFuture<>(), System.nanoTime());
+        queued.incrementAndGet();
+        chats.compute(chatId, (id, chat) -> {
+            ChatQueue target = chat != null ? chat : new ChatQueue(id, new TokenBucket(perChatRate, perChatBurst, System.nanoTime()));
+            synchronized (target) {
+                target.pending.addLast(outgoing);
+                scheduleIfIdle(target, System.nanoTime());
+            }
+            return target;
+        });
+        return outgoing.result;
+    }
+
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    int chatCount() {
+        return chats.size();
+    }
+
+    private void pumpLoop() {
+        long sweptAt = System.nanoTime();
+        while (running || queued.get() > 0) {
+            if (System.nanoTime() - sweptAt > IDLE_SWEEP_NANOS) {
+                releaseIdleChats();
+                sweptAt = System.nanoTime();
+            }
+            ChatQueue chat;
+            try {
+                chat = ready.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (chat == null) {
+                continue;
+            }
+            Outgoing<?> next;
+            synchronized (chat) {
+                chat.scheduled = false;
+                next = chat.pending.peekFirst();
+                if (next != null) {
+                    long wait = chat.bucket.tryAcquire(System.nanoTime());
+                    if (wait > 0) {
+                        schedule(chat, System.nanoTime() + wait);
+                        continue;
+                    }
+                    chat.pending.pollFirst();
+                    chat.inFlight = true;
+                }
+            }
+            if (next == null) {
+                releaseIfIdle(chat);
+                continue;
+            }
+            acquireGlobal();
+            dispatch(chat, next);
+        }
+    }
+
+    private void acquireGlobal() {
+        long wait;
+        while ((wait = globalBucket.tryAcquire(System.nanoTime())) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private <T extends Serializable> void dispatch(ChatQueue chat, Outgoing<T> outgoing) {
+        long startedAt = System.nanoTime();
+        if (outgoing.attempts++ == 0) {
+            waitTimer.record(startedAt - outgoing.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+        }
+        executeAsync(outgoing.method).whenComplete((response, error) -> {
+            recordLatency(outgoing.method, startedAt, error == null);
+            if (error == null) {
+                finish(chat, outgoing, System.nanoTime());
+                outgoing.result.complete(response);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            long retryAt = retryAt(cause, outgoing.attempts);
+            if (retryAt > 0) {
+                retries.increment();
+                synchronized (chat) {
+                    chat.inFlight = false;
+                    chat.pending.addFirst(outgoing);
+                    schedule(chat, retryAt);
+                }
+                return;
+            }
+            recordError(outgoing.method, cause);
+            log.warn("Не удалось выполнить {} в чате {}: {}", outgoing.method.getMethod(), chat.chatId, cause.getMessage());
+            finish(chat, outgoing, System.nanoTime());
+            outgoing.result.completeExceptionally(cause);
+        });
+    }
+
+    /**
+     * Момент следующей попытки или 0, если запрос повторять не нужно.
+     */
+    private long retryAt(Throwable cause, int attempts) {
+        if (attempts >= maxAttempts) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        if (cause instanceof TelegramApiRequestException request && request.getErrorCode() != null) {
+            int code = request.getErrorCode();
+            if (code == 429) {
+                throttled.increment();
+                Integer retryAfter = request.getParameters() != null ? request.getParameters().getRetryAfter() : null;
+                long delay = retryAfter != null ? TimeUnit.SECONDS.toNanos(retryAfter) : backoff(attempts);
+                return now + delay;
+            }
+            // 4xx кроме 429 — ошибка запроса (сообщение не изменилось, бот заблокирован), повтор не поможет
+            return code >= 500 ? now + backoff(attempts) : 0;
+        }
+        return cause instanceof TelegramApiException ? now + backoff(attempts) : 0;
+    }
+
+    private long backoff(int attempts) {
+        return BASE_BACKOFF_NANOS << Math.min(attempts - 1, 6);
+    }
+
+    private void finish(ChatQueue chat, Outgoing<?> outgoing, long now) {
+        queued.decrementAndGet();
+        boolean idle;
+        synchronized (chat) {
+            chat.inFlight = false;
+            scheduleIfIdle(chat, now);
+            idle = chat.isIdle();
+        }
+        if (idle) {
+            // вне блокировки чата: enqueue берёт сначала ячейку карты, потом чат
+            releaseIfIdle(chat);
+        }
+    }
+
+    private void scheduleIfIdle(ChatQueue chat, long at) {
+        if (!chat.scheduled && !chat.inFlight && !chat.pending.isEmpty()) {
+            schedule(chat, at);
+        }
+    }
+
+    private void schedule(ChatQueue chat, long at) {
+        chat.readyAtNanos = at;
+        chat.scheduled = true;
+        ready.add(chat);
+    }
+
+    /**
+     * Удаляет пустую очередь чата, чтобы карта не росла. Только с полным bucket: новый bucket при следующем
+     * сообщении выдаст весь всплеск, и удаление раньше снимало бы лимит чата. Очереди, чей bucket ещё
+     * не восстановился, подбирает {@link #releaseIdleChats()}.
+     */
+    private void releaseIfIdle(ChatQueue chat) {
+        chats.computeIfPresent(chat.chatId, (id, current) -> {
+            synchronized (current) {
+                return current == chat && current.isIdle() && current.bucket.isFull(System.nanoTime()) ? null : current;
+            }
+        });
+    }
+
+    private void releaseIdleChats() {
+        for (ChatQueue chat : chats.values()) {
+            releaseIfIdle(chat);
+        }
+    }
+
+    private void recordLatency(BotApiMethod<?> method, long startedAt, boolean success) {
+        Timer.builder("cardbot.telegram.outbound.latency")
+                .description("Время выполнения запроса к Telegram Bot API")
+                .tag("method", method.getMethod())
+                .tag("outcome", success ? "success" : "error")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Окончательная ошибка запроса (после всех повторов); code — HTTP-код ответа или network.
+     */
+    private void recordError(BotApiMethod<?> method, Throwable cause) {
+        String code = cause instanceof TelegramApiRequestException request && request.getErrorCode() != null
+                ? String.valueOf(request.getErrorCode())
+                : "network";
+        meterRegistry.counter("cardbot.telegram.outbound.errors", "method", method.getMethod(), "code", code)
+                .increment();
+    }
+
+    private <T extends Serializable> CompletableFuture<T> executeAsync(BotApiMethod<T> method) {
+        try {
+            return sender.executeAsync(method);
+        } catch (TelegramApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static long chatIdOf(BotApiMethod<?> method) {
+        String chatId = null;
+        if (method instanceof SendMessage m) {
+            chatId = m.getChatId();
+        } else if (method instanceof EditMessageText m) {
+            chatId = m.getChatId();
+        } else if (method instanceof DeleteMessage m) {
+            chatId = m.getChatId();
+        }
+        if (chatId == null) {
+            return NO_CHAT;
+        }
+        try {
+            return Long.parseLong(chatId);
+        } catch (NumberFormatException e) {
+            return NO_CHAT;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        pump.join(TimeUnit.SECONDS.toMillis(10));
+        if (queued.get() > 0) {
+            log.warn("Не отправлено при остановке: {}", queued.get());
+        }
+        sender.shutdown();
+    }
+
+    private static final class Outgoing<T extends Serializable> {
+        final BotApiMethod<T> method;
+        final CompletableFuture<T> result;
+        final long enqueuedAtNanos;
+        int attempts;
+
+        Outgoing(BotApiMethod<T> method, CompletableFuture<T> result, long enqueuedAtNanos) {
+            this.method = method;
+            this.result = result;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+
+    private static final class ChatQueue implements Delayed {
+        final long chatId;
+        final TokenBucket bucket;
+        final Deque<Outgoing<?>> pending = new ArrayDeque<>();
+        boolean scheduled;
+        boolean inFlight;
+        volatile long readyAtNanos;
+
+        ChatQueue(long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+
+        boolean isIdle() {
+            return pending.isEmpty() && !scheduled && !inFlight;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAtNanos, ((ChatQueue) other).readyAtNanos);
+        }
+    }
+
+    /**
+     * Отправитель со своим HTTP-клиентом. TelegramHttpClientBuilder оставляет пулу Apache HttpClient лимит
+     * по умолчанию — 2 соединения на хост, и все запросы к api.telegram.org шли бы не больше чем в два потока,
+     * сколько бы их ни было у executeAsync. Здесь пул на maxConnections соединений; запрос и разбор ответа —
+     * как в DefaultAbsSender, только сетевые ошибки оборачиваются в TelegramApiException, чтобы их повторял
+     * {@link #retryAt}.
+     */
+    private static final class Sender extends DefaultAbsSender {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final CloseableHttpClient httpClient;
+
+        Sender(DefaultBotOptions options, String botToken, int maxConnections) {
+            super(options, botToken);
+            PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(70, TimeUnit.SECONDS);
+            pool.setMaxTotal(maxConnections);
+            pool.setDefaultMaxPerRoute(maxConnections);
+            RequestConfig requestConfig = options.getRequestConfig() != null
+                    ? options.getRequestConfig()
+                    : RequestConfig.custom()
+                            .setSocketTimeout(Constants.SOCKET_TIMEOUT)
+                            .setConnectTimeout(Constants.SOCKET_TIMEOUT)
+                            .setConnectionRequestTimeout(Constants.SOCKET_TIMEOUT)
+                            .build();
+            this.httpClient = HttpClientBuilder.create()
+                    .setConnectionManager(pool)
+                    .setDefaultRequestConfig(requestConfig)
+                    .build();
+        }
+
+        @Override
+        protected <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> sendApiMethodAsync(Method method) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            exe.execute(() -> {
+                try {
+                    result.complete(method.deserializeResponse(post(method)));
+                } catch (TelegramApiException e) {
+                    result.completeExceptionally(e);
+                } catch (IOException e) {
+                    result.completeExceptionally(new TelegramApiException("Unable to execute " + method.getMethod() + " method", e));
+                }
+            });
+            return result;
+        }
+
+        private String post(BotApiMethod<?> method) throws TelegramApiException, IOException {
+            method.validate();
+            HttpPost post = new HttpPost(getBaseUrl() + method.getMethod());
+            post.addHeader("charset", StandardCharsets.UTF_8.name());
+            post.setEntity(new StringEntity(objectMapper.writeValueAsString(method), ContentType.APPLICATION_JSON));
+            try (CloseableHttpResponse response = httpClient.execute(post)) {
+                return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            }
+        }
+
+        void shutdown() {
+            exe.shutdown();
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                log.debug("Ошибка при закрытии HTTP-клиента: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.cardbot.bot;
+
+import java.util.Arrays;
+
+/**
+ * Запись и чтение чисел в формате zigzag-varint (как в {@link CallbackCodec}) для {@link SessionCodec}.
+ */
+final class SessionBytes {
+
+    private SessionBytes() {}
+
+    static final class Writer {
+        private byte[] buffer = new byte[32];
+        private int pos;
+
+        Writer writeByte(int value) {
+            ensure(1);
+            buffer[pos++] = (byte) value;
+            return this;
+        }
+
+        Writer writeLong(long value) {
+            ensure(10);
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                buffer[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[pos++] = (byte) v;
+            return this;
+        }
+
+        /** null кодируется одним нулевым байтом, значение — единицей и самим числом. */
+        Writer writeNullable(Long value) {
+            if (value == null) {
+                return writeByte(0);
+            }
+            return writeByte(1).writeLong(value);
+        }
+
+        /** Дописывает уже закодированный фрагмент как есть. */
+        Writer writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+            pos += bytes.length;
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, pos);
+        }
+
+        private void ensure(int bytes) {
+            if (pos + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, pos + bytes));
+            }
+        }
+    }
+
+    static final class Reader {
+        private final byte[] bytes;
+        private int pos;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            if (pos >= bytes.length) {
+                throw new IllegalArgumentException("Неожиданный конец данных");
+            }
+            return bytes[pos++] & 0xFF;
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IllegalArgumentException("Слишком длинное число");
+        }
+
+        Long readNullable() {
+            return readByte() == 0 ? null : readLong();
+        }
+
+        int readInt() {
+            long v = readLong();
+            if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Число вне диапазона int: " + v);
+            }
+            return (int) v;
+        }
+
+        /** Число прочитанных байт. */
+        int offset() {
+            return pos;
+        }
+
+        /** Прочитанные байты начиная с from, для кэширования фрагмента. */
+        byte[] readSince(int from) {
+            return Arrays.copyOfRange(bytes, from, pos);
+        }
+
+        void expectEnd() {
+            if (pos != bytes.length) {
+                throw new IllegalArgumentException("Лишние байты: " + (bytes.length - pos));
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.cardbot.bot;
+
+/**
+ * Компактное двоичное представление записи {@link SessionStore} для хранения в БД.
+ * Первый байт — версия формата; decode должен понимать все версии, которые ещё могут лежать в таблице.
+ */
+public interface SessionCodec<V> {
+
+    byte[] encode(V value);
+
+    /** @throws IllegalArgumentException если данные повреждены или версия неизвестна */
+    V decode(byte[] bytes);
+}
@@ -0,0 +1,182 @@
+package com.cardbot.bot;
+
+import com.cardbot.model.CardSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Колода сессии: id карточек в порядке показа — перемешанные один раз (Фишер — Йетс) для случайного
+ * порядка или по возрастанию для последовательного. Карточки идут по порядку без повторов, пока колода
+ * не кончится.
+ * <p>
+ * В памяти держатся только массив id и окно из {@link #WINDOW} снимков {@link CardSnapshot}
+ * (id, слово, перевод, транскрипция). Окно подгружается одним запросом, когда предыдущее пройдено,
+ * так что «Следующая» стоит ноль запросов внутри окна и один — на его границе; {@link #prefetch}
+ * переносит и этот запрос на время, пока пользователь смотрит карточку.
+ * Окно не сохраняется между экземплярами (см. {@link LearningSessionCodec}) и подгружается заново.
+ * <p>
+ * Случайный порядок задаётся зерном: колода — это id по возрастанию, перемешанные {@link Random} с этим
+ * зерном. Алгоритм Random зафиксирован спецификацией, поэтому другой экземпляр восстановит тот же порядок
+ * из отсортированных id и зерна. Сами id колоды не меняются, меняется только позиция.
+ */
+public final class SessionDeck {
+
+    static final int WINDOW = 16;
+
+    private final long[] ids;
+    private final Long seed;
+    private int position;
+    private byte[] encodedCards;
+    private CardSnapshot[] window = new CardSnapshot[0];
+    private int windowStart;
+
+    SessionDeck(long[] ids, int position) {
+        this(ids, null, position);
+    }
+
+    private SessionDeck(long[] ids, Long seed, int position) {
+        this.ids = ids;
+        this.seed = seed;
+        this.position = position;
+    }
+
+    public static SessionDeck inOrder(List<Long> cardIds) {
+        return new SessionDeck(toArray(cardIds), 0);
+    }
+
+    public static SessionDeck shuffled(List<Long> cardIds, Random random) {
+        long[] sorted = toArray(cardIds);
+        Arrays.sort(sorted);
+        return restore(sorted, random.nextLong(), 0);
+    }
+
+    /** Колода случайного порядка по отсортированным id и зерну перемешивания. */
+    static SessionDeck restore(long[] sortedIds, long seed, int position) {
+        long[] ids = sortedIds.clone();
+        Random random = new Random(seed);
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        return new SessionDeck(ids, seed, position);
+    }
+
+    private static long[] toArray(List<Long> cardIds) {
+        long[] ids = new long[cardIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = cardIds.get(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Следующая карточка колоды; пусто, когда колода пройдена. Карточки, удалённые за время сессии,
+     * пропускаются.
+     *
+     * @param loader снимки карточек по id в любом порядке; отсутствующие в ответе считаются удалёнными
+     */
+    public Optional<CardSnapshot> next(Function<List<Long>, List<CardSnapshot>> loader) {
+        while (position < ids.length) {
+            int offset = position - windowStart;
+            if (offset < 0 || offset >= window.length) {
+                loadWindow(loader);
+                offset = 0;
+            }
+            position++;
+            if (window[offset] != null) {
+                return Optional.of(window[offset]);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Загружает окно со следующей карточкой заранее, не сдвигая позицию. */
+    public void prefetch(Function<List<Long>, List<CardSnapshot>> loader) {
+        if (position < ids.length && !isLoaded()) {
+            loadWindow(loader);
+        }
+    }
+
+    /** Следующая карточка уже в окне: {@link #next} обойдётся без запроса. */
+    public boolean isLoaded() {
+        int offset = position - windowStart;
+        return position >= ids.length || (offset >= 0 && offset < window.length);
+    }
+
+    /** Сбрасывает окно, например после изменения карточек; следующий шаг загрузит его заново. */
+    public void invalidateWindow() {
+        window = new CardSnapshot[0];
+    }
+
+    /** Окно начинается с текущей позиции; место удалённой карточки остаётся пустым. */
+    private void loadWindow(Function<List<Long>, List<CardSnapshot>> loader) {
+        int end = Math.min(ids.length, position + WINDOW);
+        List<Long> chunk = new ArrayList<>(end - position);
+        for (int i = position; i < end; i++) {
+            chunk.add(ids[i]);
+        }
+        Map<Long, CardSnapshot> byId = new HashMap<>();
+        for (CardSnapshot card : loader.apply(chunk)) {
+            byId.put(card.id(), card);
+        }
+        window = new CardSnapshot[chunk.size()];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = byId.get(chunk.get(i));
+        }
+        windowStart = position;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    long[] ids() {
+        return ids;
+    }
+
+    /** Зерно перемешивания; null — id идут в порядке {@link #ids()}. */
+    Long seed() {
+        return seed;
+    }
+
+    /** Id, из которых колода восстанавливается: по возрастанию для перемешанной, иначе в порядке показа. */
+    long[] sourceIds() {
+        if (seed == null) {
+            return ids;
+        }
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /** Закодированные id колоды; их кэширует {@link LearningSessionCodec}, пока колода не меняется. */
+    byte[] encodedCards() {
+        return encodedCards;
+    }
+
+    void encodedCards(byte[] encodedCards) {
+        this.encodedCards = encodedCards;
+    }
+
+    /** Оценка памяти: массив id, их закодированная копия и загруженное окно снимков. */
+    long estimatedBytes() {
+        long bytes = 64 + 8L * ids.length + 8L * window.length + (encodedCards != null ? 16 + encodedCards.length : 0);
+        for (CardSnapshot card : window) {
+            bytes += card == null ? 0 : card.estimatedBytes();
+        }
+        return bytes;
+    }
+}
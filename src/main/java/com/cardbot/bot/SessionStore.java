@@ -0,0 +1,40 @@
+package com.cardbot.bot;
+
+/**
+ * Хранилище состояния диалога по id пользователя (UserState, LearningSession).
+ * Записи без обращений дольше заданного времени и сверх лимита числа записей вытесняются;
+ * о вытеснении сообщает слушатель, переданный при создании (см. {@link SessionStores}).
+ * <p>
+ * Объекты из get можно менять на месте: в конце обработки update бот вызывает {@link #flush()}.
+ */
+public interface SessionStore<V> {
+
+    /** Значение или null, если записи нет или она уже вытеснена. */
+    V get(Long userId);
+
+    void put(Long userId, V value);
+
+    /** Удаление по действию пользователя; слушатель вытеснения не вызывается. */
+    void remove(Long userId);
+
+    /** Число записей в памяти этого процесса. */
+    long size();
+
+    /**
+     * Сохраняет изменения, сделанные текущим потоком с прошлого flush, включая изменения полей
+     * полученных через get объектов. Хранилищу в памяти сохранять нечего.
+     */
+    default void flush() {}
+
+    /** Отбрасывает несохранённые изменения текущего потока: обработка update завершилась ошибкой. */
+    default void discard() {}
+
+    /** Причина вытеснения: простой дольше idle-timeout или лимит числа записей. */
+    enum EvictionCause { EXPIRED, SIZE }
+
+    /** Вызывается для записи, вытесненной по простою или по лимиту размера. */
+    @FunctionalInterface
+    interface EvictionListener<V> {
+        void onEvicted(Long userId, V value, EvictionCause cause);
+    }
+}
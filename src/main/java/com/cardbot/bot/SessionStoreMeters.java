@@ -0,0 +1,39 @@
+package com.cardbot.bot;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Метрики хранилищ состояния, общие для всех реализаций {@link SessionStore}.
+ */
+final class SessionStoreMeters {
+
+    private SessionStoreMeters() {}
+
+    /** Число записей и оценка занятой памяти в этом процессе; байты считаются обходом записей при снятии метрики. */
+    static <T> void registerResident(MeterRegistry meterRegistry, String name, Cache<Long, T> cache,
+                                     ToLongFunction<T> estimator) {
+        Gauge.builder("cardbot.sessions.resident", cache, Cache::estimatedSize)
+                .description("Число записей хранилища состояния в памяти процесса")
+                .tag("store", name)
+                .register(meterRegistry);
+        Gauge.builder("cardbot.sessions.estimated.bytes", cache,
+                        c -> c.asMap().values().stream().mapToLong(estimator).sum())
+                .description("Оценка памяти, занятой записями хранилища")
+                .tag("store", name)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    static Counter evicted(MeterRegistry meterRegistry, String name, String cause) {
+        return Counter.builder("cardbot.sessions.evicted")
+                .description("Записи, вытесненные по простою (expired) или по лимиту размера (size)")
+                .tag("store", name)
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,110 @@
+package com.cardbot.bot;
+
+import com.cardbot.repository.SessionStateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToLongFunction;
+
+/**
+ * Создаёт хранилища состояния диалога с общими настройками telegram.bot.sessions.*.
+ * <p>
+ * backend=memory — состояние в памяти процесса ({@link CaffeineSessionStore}), работает один экземпляр бота.
+ * backend=database — состояние в таблице session_state ({@link DatabaseSessionStore}): любой экземпляр
+ * обслуживает любой чат, сессии переживают перезапуск.
+ */
+@Slf4j
+@Component
+public class SessionStores {
+
+    private final Duration idleTimeout;
+    private final long maximumSize;
+    private final boolean database;
+    private final SessionStateRepository repository;
+    private final MeterRegistry meterRegistry;
+    private final List<SessionStore<?>> stores = new CopyOnWriteArrayList<>();
+    private final List<DatabaseSessionStore<?>> databaseStores = new CopyOnWriteArrayList<>();
+
+    public SessionStores(@Value("${telegram.bot.sessions.idle-timeout:30m}") Duration idleTimeout,
+                         @Value("${telegram.bot.sessions.maximum-size:100000}") long maximumSize,
+                         @Value("${telegram.bot.sessions.backend:memory}") String backend,
+                         SessionStateRepository repository,
+                         MeterRegistry meterRegistry) {
+        if (!"memory".equalsIgnoreCase(backend) && !"database".equalsIgnoreCase(backend)) {
+            throw new IllegalArgumentException("telegram.bot.sessions.backend: ожидается memory или database, получено " + backend);
+        }
+        this.idleTimeout = idleTimeout;
+        this.maximumSize = maximumSize;
+        this.database = "database".equalsIgnoreCase(backend);
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        log.info("Хранилище состояния диалога: {}, простой {}", database ? "database" : "memory", idleTimeout);
+    }
+
+    /**
+     * @param name      имя хранилища в тегах метрик и в таблице session_state
+     * @param estimator оценка размера записи в байтах
+     * @param codec     представление записи в БД (для backend=database)
+     * @param listener  вызывается из потока планировщика, а не из полосы чата; менять состояние пользователя
+     *                  нужно в полосе его чата (UpdateDispatcher)
+     */
+    public <V> SessionStore<V> create(String name, ToLongFunction<V> estimator, SessionCodec<V> codec,
+                                      SessionStore.EvictionListener<V> listener) {
+        SessionStore<V> store;
+        if (database) {
+            DatabaseSessionStore<V> databaseStore = new DatabaseSessionStore<>(name, idleTimeout, maximumSize,
+                    estimator, codec, listener, repository, meterRegistry);
+            databaseStores.add(databaseStore);
+            store = databaseStore;
+        } else {
+            store = new CaffeineSessionStore<>(name, idleTimeout, maximumSize, estimator, listener, meterRegistry);
+        }
+        stores.add(store);
+        return store;
+    }
+
+    /**
+     * Завершает обработку update в текущем потоке: сохраняет изменения состояния или, после ошибки, отбрасывает их.
+     */
+    public void complete(boolean success) {
+        for (SessionStore<?> store : stores) {
+            if (!success) {
+                store.discard();
+                continue;
+            }
+            try {
+                store.flush();
+            } catch (RuntimeException e) {
+                log.error("Не удалось сохранить состояние диалога", e);
+            }
+        }
+    }
+
+    /** Удаляет просроченные записи backend=database; в памяти это делает сам кэш. */
+    @Scheduled(fixedDelayString = "${telegram.bot.sessions.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        if (databaseStores.isEmpty()) {
+            return;
+        }
+        try {
+            for (DatabaseSessionStore<?> store : databaseStores) {
+                int removed;
+                do {
+                    removed = store.sweepExpired();
+                } while (removed > 0 && !Thread.currentThread().isInterrupted());
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка очистки просроченного состояния диалога", e);
+        }
+    }
+
+    public Duration idleTimeout() {
+        return idleTimeout;
+    }
+}
@@ -0,0 +1,21 @@
+package com.cardbot.bot;
+
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+
+/**
+ * Настройки HTTP-клиента Telegram Bot API.
+ */
+final class TelegramOptions {
+
+    private TelegramOptions() {}
+
+    /**
+     * @param apiUrl адрес Bot API вида https://api.telegram.org/bot (токен дописывается клиентом)
+     */
+    static DefaultBotOptions create(String apiUrl, int maxThreads) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(apiUrl);
+        options.setMaxThreads(maxThreads);
+        return options;
+    }
+}
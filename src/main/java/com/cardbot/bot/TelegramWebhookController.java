@@ -0,0 +1,56 @@
+package com.cardbot.bot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Приём update через webhook (telegram.bot.mode=webhook).
+ * HTTP-поток только ставит update в очередь UpdateDispatcher и сразу отвечает 200,
+ * поэтому медленный обработчик одного пользователя не задерживает остальных.
+ * <p>
+ * Бот доверяет отправителю из тела update, поэтому каждый запрос проверяется по заголовку
+ * {@value #SECRET_HEADER}: без telegram.bot.webhook.secret приложение в режиме webhook не запускается.
+ */
+@Slf4j
+@RestController
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook")
+public class TelegramWebhookController {
+
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final CardTelegramBot bot;
+    private final byte[] secretToken;
+
+    public TelegramWebhookController(CardTelegramBot bot,
+                                     @Value("${telegram.bot.webhook.secret:}") String secretToken) {
+        if (secretToken.isBlank()) {
+            throw new IllegalStateException("telegram.bot.webhook.secret (BOT_WEBHOOK_SECRET) обязателен в режиме webhook");
+        }
+        this.bot = bot;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping("${telegram.bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(value = SECRET_HEADER, required = false) String secret,
+                                         @RequestBody Update update) {
+        if (secret == null || !MessageDigest.isEqual(secretToken, secret.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!bot.submitUpdate(update)) {
+            log.warn("Очередь update переполнена, update {} будет доставлен повторно", update.getUpdateId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+}
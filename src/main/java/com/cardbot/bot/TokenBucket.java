@@ -0,0 +1,44 @@
+package com.cardbot.bot;
+
+/**
+ * Token bucket: не более {@code ratePerSecond} операций в секунду с допустимым всплеском {@code burst}.
+ */
+public final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Забирает один токен, если он есть.
+     * @return 0 при успехе, иначе сколько наносекунд подождать до появления токена
+     */
+    public synchronized long tryAcquire(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    /**
+     * Всплеск восстановлен полностью: такой bucket не отличается от только что созданного.
+     */
+    public synchronized boolean isFull(long nowNanos) {
+        long elapsed = Math.max(0, nowNanos - lastRefillNanos);
+        return tokens + elapsed * tokensPerNano >= capacity;
+    }
+}
@@ -0,0 +1,148 @@
+package com.cardbot.bot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Распределяет update по «полосам» — однопоточным очередям, выбираемым по chatId.
+ * Все update одного чата попадают в одну полосу и обрабатываются строго по порядку одним потоком,
+ * поэтому состояние пользователя (UserState, LearningSession) не нуждается в синхронизации.
+ * Разные чаты обрабатываются параллельно.
+ */
+@Slf4j
+@Component
+public class UpdateDispatcher {
+
+    private static final long RETRY_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final ThreadPoolExecutor[] stripes;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public UpdateDispatcher(@Value("${telegram.bot.dispatcher.concurrency:0}") int concurrency,
+                            @Value("${telegram.bot.dispatcher.queue-capacity:1000}") int queueCapacity,
+                            MeterRegistry meterRegistry) {
+        int stripeCount = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors() * 2;
+        this.stripes = new ThreadPoolExecutor[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = UpdateExecutors.bounded("update-" + i + "-", 1, queueCapacity);
+        }
+        this.waitTimer = Timer.builder("cardbot.dispatcher.wait")
+                .description("Время ожидания update в очереди полосы")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("cardbot.dispatcher.rejected")
+                .description("Update, не принятые из-за переполнения очереди")
+                .register(meterRegistry);
+        Gauge.builder("cardbot.dispatcher.queue.depth", this, UpdateDispatcher::queueDepth)
+                .description("Суммарная длина очередей всех полос")
+                .register(meterRegistry);
+        Gauge.builder("cardbot.dispatcher.queue.max", this, UpdateDispatcher::maxQueueDepth)
+                .description("Длина самой загруженной очереди")
+                .register(meterRegistry);
+        Gauge.builder("cardbot.dispatcher.active", this, UpdateDispatcher::activeCount)
+                .description("Полосы, обрабатывающие update прямо сейчас")
+                .register(meterRegistry);
+        log.info("Диспетчер update: {} полос, очередь {}", stripeCount, queueCapacity);
+    }
+
+    /**
+     * Ставит задачу в очередь полосы чата, не блокируясь.
+     * @return false, если очередь полосы переполнена
+     */
+    public boolean tryDispatch(long chatId, Runnable task) {
+        try {
+            stripeFor(chatId).execute(timed(task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Ставит задачу в очередь полосы чата, дожидаясь свободного места.
+     * Используется в long polling: поток чтения притормаживает вместо потери update.
+     */
+    public void dispatch(long chatId, Runnable task) {
+        ThreadPoolExecutor stripe = stripeFor(chatId);
+        Runnable timed = timed(task);
+        while (true) {
+            try {
+                stripe.execute(timed);
+                return;
+            } catch (RejectedExecutionException e) {
+                if (stripe.isShutdown()) {
+                    throw e;
+                }
+                LockSupport.parkNanos(RETRY_PARK_NANOS);
+            }
+        }
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    public int queueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            depth += stripe.getQueue().size();
+        }
+        return depth;
+    }
+
+    private int maxQueueDepth() {
+        int max = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            max = Math.max(max, stripe.getQueue().size());
+        }
+        return max;
+    }
+
+    private int activeCount() {
+        int active = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            active += stripe.getActiveCount();
+        }
+        return active;
+    }
+
+    private ThreadPoolExecutor stripeFor(long chatId) {
+        // Перемешиваем биты, чтобы последовательные chatId не скапливались в соседних полосах
+        long h = chatId * 0x9E3779B97F4A7C15L;
+        int idx = (int) ((h ^ (h >>> 32)) & 0x7fffffff) % stripes.length;
+        return stripes[idx];
+    }
+
+    private Runnable timed(Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        return () -> {
+            waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            task.run();
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            if (!stripe.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Не все update обработаны до остановки: {}", stripe.getQueue().size());
+            }
+        }
+    }
+}
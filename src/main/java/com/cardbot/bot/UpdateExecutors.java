@@ -0,0 +1,31 @@
+package com.cardbot.bot;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пулы потоков для обработки входящих update.
+ */
+public final class UpdateExecutors {
+
+    private UpdateExecutors() {}
+
+    /**
+     * Пул с фиксированным числом потоков и ограниченной очередью.
+     * При переполнении очереди бросает RejectedExecutionException — вызывающий решает,
+     * ждать ли места (long polling) или отклонить update (webhook отвечает 503, Telegram повторит доставку).
+     */
+    public static ThreadPoolExecutor bounded(String namePrefix, int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory(namePrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
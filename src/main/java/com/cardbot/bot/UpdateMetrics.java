@@ -0,0 +1,71 @@
+package com.cardbot.bot;
+
+import com.cardbot.metrics.QueryTimeTracker;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики обработки update: время обработчика, время и число SQL-запросов в нём, задержка update.
+ * <p>
+ * Тег handler — команда (/start) или тип callback (SHOW, LEARN_MODE); неизвестные значения
+ * сводятся к unknown, чтобы число серий не зависело от присланных данных.
+ */
+@Component
+@RequiredArgsConstructor
+public class UpdateMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Задержка update: от времени сообщения (update.date, точность — секунда) до начала обработки.
+     * У callback даты нажатия нет, поэтому учитываются только сообщения.
+     */
+    public void recordLag(Update update) {
+        if (!update.hasMessage() || update.getMessage().getDate() == null) {
+            return;
+        }
+        long lagMillis = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(update.getMessage().getDate());
+        Timer.builder("cardbot.update.lag")
+                .description("Время от отправки сообщения пользователем до начала обработки")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(Math.max(0, lagMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public void recordHandled(String type, String handler, boolean success, long nanos, QueryTimeTracker.Usage db) {
+        Timer.builder("cardbot.update.handle")
+                .description("Время обработки update")
+                .tag("type", type)
+                .tag("handler", handler)
+                .tag("outcome", success ? "success" : "error")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Timer.builder("cardbot.update.db.time")
+                .description("Время SQL-запросов при обработке update")
+                .tag("type", type)
+                .tag("handler", handler)
+                .register(meterRegistry)
+                .record(db.nanos(), TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("cardbot.update.db.queries")
+                .description("Число SQL-запросов при обработке update")
+                .tag("type", type)
+                .tag("handler", handler)
+                .register(meterRegistry)
+                .record(db.queries());
+    }
+
+    /**
+     * Следующая карточка в сессии обучения: hit — взята из загруженного заранее (после «Показать»),
+     * miss — пришлось читать из БД при нажатии.
+     */
+    public void recordPrefetch(boolean hit) {
+        meterRegistry.counter("cardbot.learning.prefetch", "result", hit ? "hit" : "miss").increment();
+    }
+}
@@ -14,6 +14,9 @@ public class UserState {
         NONE
     }
 
+    /** Оценка памяти одной записи: объект и Long. */
+    public static final long ESTIMATED_BYTES = 48;
+
     private final Type type;
     private final Long cardId;
 
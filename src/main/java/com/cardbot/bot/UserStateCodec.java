@@ -0,0 +1,38 @@
+package com.cardbot.bot;
+
+/**
+ * UserState: [версия][тип][cardId или пусто]. Обычно 2–5 байт.
+ */
+final class UserStateCodec implements SessionCodec<UserState> {
+
+    static final UserStateCodec INSTANCE = new UserStateCodec();
+
+    private static final int VERSION = 1;
+    private static final UserState.Type[] TYPES = UserState.Type.values();
+
+    private UserStateCodec() {}
+
+    @Override
+    public byte[] encode(UserState state) {
+        return new SessionBytes.Writer()
+                .writeByte(VERSION)
+                .writeByte(state.getType().ordinal())
+                .writeNullable(state.getCardId())
+                .toByteArray();
+    }
+
+    @Override
+    public UserState decode(byte[] bytes) {
+        SessionBytes.Reader in = new SessionBytes.Reader(bytes);
+        if (in.readByte() != VERSION) {
+            throw new IllegalArgumentException("Неизвестная версия UserState");
+        }
+        int type = in.readByte();
+        if (type >= TYPES.length) {
+            throw new IllegalArgumentException("Неизвестный тип UserState: " + type);
+        }
+        Long cardId = in.readNullable();
+        in.expectEnd();
+        return new UserState(TYPES[type], cardId);
+    }
+}
@@ -0,0 +1,46 @@
+package com.cardbot.metrics;
+
+/**
+ * Учёт времени SQL-запросов, выполненных текущим потоком между {@link #start()} и {@link #stop()}.
+ * Запросы фиксирует {@link QueryTimingDataSourceConfig}; вне отслеживаемого участка они не учитываются.
+ */
+public final class QueryTimeTracker {
+
+    private static final ThreadLocal<Usage> CURRENT = new ThreadLocal<>();
+
+    private QueryTimeTracker() {}
+
+    public static void start() {
+        CURRENT.set(new Usage());
+    }
+
+    /**
+     * Завершает учёт и возвращает накопленное время и число запросов.
+     */
+    public static Usage stop() {
+        Usage usage = CURRENT.get();
+        CURRENT.remove();
+        return usage != null ? usage : new Usage();
+    }
+
+    static void record(long nanos) {
+        Usage usage = CURRENT.get();
+        if (usage != null) {
+            usage.nanos += nanos;
+            usage.queries++;
+        }
+    }
+
+    public static final class Usage {
+        private long nanos;
+        private int queries;
+
+        public long nanos() {
+            return nanos;
+        }
+
+        public int queries() {
+            return queries;
+        }
+    }
+}
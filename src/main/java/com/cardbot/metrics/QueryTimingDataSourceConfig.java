@@ -0,0 +1,55 @@
+package com.cardbot.metrics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Оборачивает DataSource в datasource-proxy, чтобы время запросов попадало в {@link QueryTimeTracker}.
+ */
+@Configuration
+public class QueryTimingDataSourceConfig {
+
+    @Bean
+    public static BeanPostProcessor queryTimingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(new TimingListener())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static final class TimingListener implements QueryExecutionListener {
+
+        private static final ThreadLocal<Long> STARTED_AT = new ThreadLocal<>();
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            STARTED_AT.set(System.nanoTime());
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            Long startedAt = STARTED_AT.get();
+            STARTED_AT.remove();
+            if (startedAt != null) {
+                QueryTimeTracker.record(System.nanoTime() - startedAt);
+            }
+        }
+    }
+}
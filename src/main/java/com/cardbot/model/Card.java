@@ -35,6 +35,14 @@ public class Card {
     @Column(name = "transcription", length = 500)
     private String transcription;
 
+    /**
+     * Номер карточки среди карточек пользователя, 1..users.card_count без пропусков (V21). Назначается
+     * при создании, а при удалении другой карточки меняется только запросом
+     * {@link com.cardbot.repository.CardRepository#moveUserOrdinal}; сохранение сущности его не перезаписывает.
+     */
+    @Column(name = "user_ordinal", nullable = false, updatable = false)
+    private Integer userOrdinal;
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
@@ -0,0 +1,49 @@
+package com.cardbot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Состояние карточки в интервальном повторении (SM-2). Строка есть у каждой карточки:
+ * новая карточка стоит в очереди со времени создания, repetitions = 0.
+ */
+@Entity
+@Table(name = "card_reviews")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardReview {
+
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /** Копия cards.set_id для очереди набора по индексу (user_id, set_id, due_at). */
+    @Column(name = "set_id")
+    private Long setId;
+
+    @Column(name = "due_at", nullable = false)
+    private Instant dueAt;
+
+    @Column(name = "interval_days", nullable = false)
+    private int intervalDays;
+
+    @Column(name = "ease", nullable = false)
+    private double ease;
+
+    @Column(name = "repetitions", nullable = false)
+    private int repetitions;
+
+    @Column(name = "lapses", nullable = false)
+    private int lapses;
+
+    @Column(name = "last_reviewed_at")
+    private Instant lastReviewedAt;
+}
@@ -28,6 +28,14 @@ public class CardSet {
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
+    /**
+     * Число карточек в наборе. Меняется только запросом {@link com.cardbot.repository.CardSetRepository#addCardCount},
+     * сохранение сущности его не перезаписывает; в загруженной сущности значение может быть устаревшим.
+     */
+    @Column(name = "card_count", nullable = false, updatable = false)
+    @Builder.Default
+    private int cardCount = 0;
+
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
@@ -0,0 +1,20 @@
+package com.cardbot.model;
+
+/**
+ * Содержимое карточки, нужное для показа в сессии обучения, без сущности и её связей.
+ */
+public record CardSnapshot(Long id, String word, String translation, String transcription) {
+
+    public static CardSnapshot of(Card card) {
+        return new CardSnapshot(card.getId(), card.getWord(), card.getTranslation(), card.getTranscription());
+    }
+
+    /** Грубая оценка памяти: объект и строки (2 байта на символ). */
+    public long estimatedBytes() {
+        return 32 + stringBytes(word) + stringBytes(translation) + stringBytes(transcription);
+    }
+
+    private static long stringBytes(String s) {
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+}
@@ -5,6 +5,10 @@ import lombok.*;
 
 import java.time.Instant;
 
+/**
+ * Сырой просмотр карточки. В PostgreSQL таблица секционирована по месяцам viewed_at (первичный ключ (id, viewed_at)),
+ * старые секции удаляет {@link com.cardbot.service.CardViewRetentionJob}. Пишется пачками {@link com.cardbot.service.CardViewBuffer}.
+ */
 @Entity
 @Table(name = "card_views")
 @Getter
@@ -0,0 +1,43 @@
+package com.cardbot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Просмотры карточки за день (в cardbot.stats.zone). Пополняется {@link com.cardbot.service.CardViewBuffer} вместе с card_views.
+ */
+@Entity
+@Table(name = "card_view_days")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardViewDay {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "views", nullable = false)
+    private int views;
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "user_id")
+        private Long userId;
+
+        @Column(name = "activity_date")
+        private LocalDate activityDate;
+
+        @Column(name = "card_id")
+        private Long cardId;
+    }
+}
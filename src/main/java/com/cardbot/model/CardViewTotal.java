@@ -0,0 +1,28 @@
+package com.cardbot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Просмотры карточки за всё время. Пополняется {@link com.cardbot.service.CardViewBuffer} вместе с card_view_days
+ * и не уменьшается при удалении старых секций card_views.
+ */
+@Entity
+@Table(name = "card_view_totals")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardViewTotal {
+
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "views", nullable = false)
+    private long views;
+}
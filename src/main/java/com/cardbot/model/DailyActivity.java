@@ -0,0 +1,44 @@
+package com.cardbot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Итог дня пользователя (в cardbot.stats.zone): все просмотры и число разных карточек. Пополняется
+ * {@link com.cardbot.service.CardViewBuffer}; удаление карточки дни активности не меняет.
+ */
+@Entity
+@Table(name = "daily_activity")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyActivity {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "views", nullable = false)
+    private int views;
+
+    @Column(name = "distinct_cards", nullable = false)
+    private int distinctCards;
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "user_id")
+        private Long userId;
+
+        @Column(name = "activity_date")
+        private LocalDate activityDate;
+    }
+}
@@ -0,0 +1,36 @@
+package com.cardbot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Аренда пакетного задания; читается и пишется условными UPDATE в {@link com.cardbot.service.JobLeases}.
+ */
+@Entity
+@Table(name = "job_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobLease {
+
+    @Id
+    @Column(name = "job_name", length = 64)
+    private String jobName;
+
+    @Column(name = "owner", length = 128)
+    private String owner;
+
+    @Column(name = "fencing_token", nullable = false)
+    private long fencingToken;
+
+    @Column(name = "acquired_at")
+    private Instant acquiredAt;
+
+    /** В прошлом — аренда свободна. */
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
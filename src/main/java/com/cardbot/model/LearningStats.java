@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.Instant;
+import java.time.LocalDate;
 
 @Entity
 @Table(name = "learning_stats")
@@ -32,6 +33,18 @@ public class LearningStats {
     @Column(name = "last_learned_at")
     private Instant lastLearnedAt;
 
+    /** Серия дней подряд с просмотрами, закончившаяся в lastActiveDay (дни в cardbot.stats.zone). */
+    @Column(name = "current_streak", nullable = false)
+    @Builder.Default
+    private int currentStreak = 0;
+
+    @Column(name = "longest_streak", nullable = false)
+    @Builder.Default
+    private int longestStreak = 0;
+
+    @Column(name = "last_active_day")
+    private LocalDate lastActiveDay;
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
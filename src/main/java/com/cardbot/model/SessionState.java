@@ -0,0 +1,47 @@
+package com.cardbot.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Сохранённое состояние диалога пользователя в одном хранилище (store: userState, learningSession).
+ */
+@Entity
+@Table(name = "session_state")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SessionState {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "payload", nullable = false, length = 1_000_000)
+    private byte[] payload;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "store", length = 32)
+        private String store;
+
+        @Column(name = "user_id")
+        private Long userId;
+    }
+}
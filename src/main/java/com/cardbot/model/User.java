@@ -27,6 +27,28 @@ public class User {
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
+    /** Пояс для напоминаний, идентификатор ZoneId. */
+    @Column(name = "time_zone", nullable = false, length = 64)
+    @Builder.Default
+    private String timeZone = "UTC";
+
+    /** Местный час напоминания, 0–23. */
+    @Column(name = "reminder_hour", nullable = false)
+    @Builder.Default
+    private int reminderHour = 10;
+
+    /** Следующее напоминание, см. {@link com.cardbot.service.ReminderSchedule}; null — напоминания выключены. */
+    @Column(name = "next_reminder_at")
+    private Instant nextReminderAt;
+
+    /**
+     * Число карточек пользователя. Меняется только запросом {@link com.cardbot.repository.UserRepository#addCardCount},
+     * сохранение сущности его не перезаписывает; в загруженной (и кэшированной) сущности значение может быть устаревшим.
+     */
+    @Column(name = "card_count", nullable = false, updatable = false)
+    @Builder.Default
+    private int cardCount = 0;
+
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
@@ -1,12 +1,15 @@
 package com.cardbot.repository;
 
 import com.cardbot.model.Card;
+import com.cardbot.model.CardSnapshot;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,22 +26,41 @@ public interface CardRepository extends JpaRepository<Card, Long> {
 
     long countByUserId(Long userId);
 
-    long countByUserIdAndCardSet_Id(Long userId, Long setId);
+    Optional<Card> findByUserIdAndUserOrdinal(Long userId, Integer userOrdinal);
 
-    long countByUserIdAndCardSetIsNull(Long userId);
+    List<Card> findByUserIdAndCardSet_IdAndUserOrdinalIn(Long userId, Long setId, Collection<Integer> userOrdinals);
 
-    @Query(value = "SELECT * FROM cards WHERE user_id = :userId ORDER BY RANDOM() LIMIT 1", nativeQuery = true)
-    Optional<Card> findRandomByUserId(@Param("userId") Long userId);
+    List<Card> findByUserIdAndCardSetIsNullAndUserOrdinalIn(Long userId, Collection<Integer> userOrdinals);
 
-    @Query(value = "SELECT * FROM cards WHERE user_id = :userId AND set_id = :setId ORDER BY RANDOM() LIMIT 1", nativeQuery = true)
-    Optional<Card> findRandomByUserIdAndCardSetId(@Param("userId") Long userId, @Param("setId") Long setId);
+    @Query("SELECT c.userOrdinal FROM Card c WHERE c.id = :id")
+    Optional<Integer> findUserOrdinal(@Param("id") Long id);
 
-    @Query(value = "SELECT * FROM cards WHERE user_id = :userId AND set_id IS NULL ORDER BY RANDOM() LIMIT 1", nativeQuery = true)
-    Optional<Card> findRandomByUserIdAndCardSetIsNull(@Param("userId") Long userId);
+    /** Переносит карточку пользователя с номера from на освободившийся номер to (см. {@link Card#getUserOrdinal()}). */
+    @Modifying
+    @Query("UPDATE Card c SET c.userOrdinal = :to WHERE c.user.id = :userId AND c.userOrdinal = :from")
+    int moveUserOrdinal(@Param("userId") Long userId, @Param("from") int from, @Param("to") int to);
 
-    Page<Card> findByUserIdOrderByIdAsc(Long userId, Pageable pageable);
+    @Query(value = "SELECT * FROM cards WHERE user_id = :userId ORDER BY id LIMIT 1 OFFSET :offset", nativeQuery = true)
+    Optional<Card> findByUserIdAtOffset(@Param("userId") Long userId, @Param("offset") long offset);
 
-    Page<Card> findByUserIdAndCardSet_IdOrderByIdAsc(Long userId, Long setId, Pageable pageable);
+    @Query(value = "SELECT * FROM cards WHERE user_id = :userId AND set_id = :setId ORDER BY id LIMIT 1 OFFSET :offset", nativeQuery = true)
+    Optional<Card> findByUserIdAndCardSetIdAtOffset(@Param("userId") Long userId, @Param("setId") Long setId, @Param("offset") long offset);
 
-    Page<Card> findByUserIdAndCardSetIsNullOrderByIdAsc(Long userId, Pageable pageable);
+    @Query(value = "SELECT * FROM cards WHERE user_id = :userId AND set_id IS NULL ORDER BY id LIMIT 1 OFFSET :offset", nativeQuery = true)
+    Optional<Card> findByUserIdAndCardSetIsNullAtOffset(@Param("userId") Long userId, @Param("offset") long offset);
+
+    @Query("SELECT c.id FROM Card c WHERE c.user.id = :userId ORDER BY c.id")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT c.id FROM Card c WHERE c.user.id = :userId AND c.cardSet.id = :setId ORDER BY c.id")
+    List<Long> findIdsByUserIdAndCardSetId(@Param("userId") Long userId, @Param("setId") Long setId);
+
+    @Query("SELECT c.id FROM Card c WHERE c.user.id = :userId AND c.cardSet IS NULL ORDER BY c.id")
+    List<Long> findIdsByUserIdAndCardSetIsNull(@Param("userId") Long userId);
+
+    @Query("""
+            SELECT new com.cardbot.model.CardSnapshot(c.id, c.word, c.translation, c.transcription) FROM Card c
+            WHERE c.user.id = :userId AND c.id IN :ids
+            """)
+    List<CardSnapshot> findSnapshotsByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,25 @@
+package com.cardbot.repository;
+
+import com.cardbot.model.CardReview;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface CardReviewRepository extends JpaRepository<CardReview, Long> {
+
+    /** Две первые записи очереди пользователя: одно чтение по индексу (user_id, due_at). */
+    List<CardReview> findFirst2ByUserIdOrderByDueAtAsc(Long userId);
+
+    List<CardReview> findFirst2ByUserIdAndSetIdOrderByDueAtAsc(Long userId, Long setId);
+
+    List<CardReview> findFirst2ByUserIdAndSetIdIsNullOrderByDueAtAsc(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CardReview r SET r.setId = :setId WHERE r.cardId = :cardId")
+    int updateSetId(@Param("cardId") Long cardId, @Param("setId") Long setId);
+}
@@ -0,0 +1,4 @@
+package com.cardbot.repository;
+
+/** Набор пользователя с числом карточек в нём (card_sets.card_count). */
+public record CardSetCount(Long id, String name, long cardCount) {}
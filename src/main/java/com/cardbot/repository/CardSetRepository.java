@@ -2,6 +2,9 @@ package com.cardbot.repository;
 
 import com.cardbot.model.CardSet;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -15,4 +18,23 @@ public interface CardSetRepository extends JpaRepository<CardSet, Long> {
     Optional<CardSet> findByUserIdAndNameIgnoreCase(Long userId, String name);
 
     boolean existsByUserIdAndNameIgnoreCase(Long userId, String name);
+
+    /** Все наборы пользователя с числом карточек — один запрос по card_sets, без COUNT по cards. */
+    @Query("""
+            SELECT new com.cardbot.repository.CardSetCount(s.id, s.name, s.cardCount) FROM CardSet s
+            WHERE s.user.id = :userId ORDER BY s.name
+            """)
+    List<CardSetCount> findCountsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT s.cardCount FROM CardSet s WHERE s.id = :setId AND s.user.id = :userId")
+    Optional<Integer> findCardCount(@Param("setId") Long setId, @Param("userId") Long userId);
+
+    /** Сколько карточек пользователя лежит в наборах; остальные — без набора. */
+    @Query("SELECT COALESCE(SUM(s.cardCount), 0) FROM CardSet s WHERE s.user.id = :userId")
+    long sumCardCountByUserId(@Param("userId") Long userId);
+
+    /** Сдвигает card_sets.card_count на delta в транзакции, которая добавляет, удаляет или переносит карточку. */
+    @Modifying
+    @Query("UPDATE CardSet s SET s.cardCount = s.cardCount + :delta WHERE s.id = :setId")
+    int addCardCount(@Param("setId") Long setId, @Param("delta") int delta);
 }
@@ -0,0 +1,17 @@
+package com.cardbot.repository;
+
+import com.cardbot.model.CardViewDay;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+
+public interface CardViewDayRepository extends JpaRepository<CardViewDay, CardViewDay.Key> {
+
+    @Query("""
+            SELECT COUNT(DISTINCT d.id.cardId) FROM CardViewDay d
+            WHERE d.id.userId = :userId AND d.id.activityDate >= :since
+            """)
+    long countDistinctCardsSince(@Param("userId") Long userId, @Param("since") LocalDate since);
+}
@@ -0,0 +1,25 @@
+package com.cardbot.repository;
+
+import com.cardbot.model.CardSnapshot;
+import com.cardbot.model.CardViewTotal;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface CardViewTotalRepository extends JpaRepository<CardViewTotal, Long> {
+
+    /**
+     * Самые просматриваемые карточки за всё время — первые строки индекса (user_id, views DESC, card_id)
+     * вместе со словом и переводом.
+     */
+    @Query("""
+            SELECT new com.cardbot.model.CardSnapshot(c.id, c.word, c.translation, c.transcription)
+            FROM CardViewTotal t JOIN Card c ON c.id = t.cardId
+            WHERE t.userId = :userId
+            ORDER BY t.views DESC, t.cardId
+            """)
+    List<CardSnapshot> findTopViewed(@Param("userId") Long userId, Pageable pageable);
+}
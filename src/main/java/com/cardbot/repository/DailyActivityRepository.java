@@ -0,0 +1,18 @@
+package com.cardbot.repository;
+
+import com.cardbot.model.DailyActivity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface DailyActivityRepository extends JpaRepository<DailyActivity, DailyActivity.Key> {
+
+    @Query("""
+            SELECT a.distinctCards FROM DailyActivity a
+            WHERE a.id.userId = :userId AND a.id.activityDate = :date
+            """)
+    Optional<Integer> findDistinctCards(@Param("userId") Long userId, @Param("date") LocalDate date);
+}
@@ -2,10 +2,50 @@ package com.cardbot.repository;
 
 import com.cardbot.model.LearningStats;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Optional;
 
 public interface LearningStatsRepository extends JpaRepository<LearningStats, Long> {
 
     Optional<LearningStats> findByUser_Id(Long userId);
+
+    /**
+     * Отмечает отправленные напоминания одним UPDATE без чтения строк.
+     * @return сколько строк обновлено; меньше числа пользователей — у кого-то статистики ещё нет
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE LearningStats s SET s.lastReminderAt = :now, s.updatedAt = :now WHERE s.user.id IN :userIds")
+    int markReminded(@Param("userIds") Collection<Long> userIds, @Param("now") Instant now);
+
+    /**
+     * Прибавляет просмотры за день и продлевает серию без чтения строки; 0 — статистики пользователя ещё нет.
+     * Серия растёт, если прошлый активный день — вчера, остаётся, если сегодня, иначе начинается заново;
+     * запоздавшие просмотры за прошлые дни серию не меняют. Все выражения SET видят строку до обновления.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE LearningStats s SET s.cardsViewedTotal = s.cardsViewedTotal + :views,
+                s.lastLearnedAt = CASE WHEN s.lastLearnedAt > :lastLearnedAt THEN s.lastLearnedAt ELSE :lastLearnedAt END,
+                s.updatedAt = :now,
+                s.currentStreak = CASE
+                    WHEN s.lastActiveDay >= :day THEN s.currentStreak
+                    WHEN s.lastActiveDay = :previousDay THEN s.currentStreak + 1
+                    ELSE 1 END,
+                s.longestStreak = CASE
+                    WHEN s.lastActiveDay = :previousDay AND s.currentStreak + 1 > s.longestStreak THEN s.currentStreak + 1
+                    WHEN s.longestStreak < 1 THEN 1
+                    ELSE s.longestStreak END,
+                s.lastActiveDay = CASE
+                    WHEN s.lastActiveDay >= :day THEN s.lastActiveDay
+                    ELSE :day END
+            WHERE s.user.id = :userId
+            """)
+    int addViews(@Param("userId") Long userId, @Param("views") long views, @Param("lastLearnedAt") Instant lastLearnedAt,
+                 @Param("day") LocalDate day, @Param("previousDay") LocalDate previousDay, @Param("now") Instant now);
 }
@@ -0,0 +1,19 @@
+package com.cardbot.repository;
+
+import java.time.Instant;
+
+/**
+ * Пользователь, чьё напоминание подошло: куда отправлять, как посчитать следующее
+ * и нужно ли оно сегодня (есть карточки, не учился и не получал напоминание за местный день).
+ */
+public record ReminderTarget(
+        Long userId,
+        Long telegramId,
+        String timeZone,
+        int reminderHour,
+        Instant nextReminderAt,
+        boolean hasCards,
+        Instant lastLearnedAt,
+        Instant lastReminderAt
+) {
+}
@@ -0,0 +1,61 @@
+package com.cardbot.repository;
+
+import com.cardbot.model.SessionState;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface SessionStateRepository extends JpaRepository<SessionState, SessionState.Key> {
+
+    @Query("""
+            SELECT s.version FROM SessionState s
+            WHERE s.id.store = :store AND s.id.userId = :userId
+            """)
+    Optional<Long> findVersion(@Param("store") String store, @Param("userId") Long userId);
+
+    /** Запись, только если с момента чтения её никто не менял; 0 — конфликт. */
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE SessionState s SET s.payload = :payload, s.version = s.version + 1, s.updatedAt = :now
+            WHERE s.id.store = :store AND s.id.userId = :userId AND s.version = :version
+            """)
+    int updateIfVersion(@Param("store") String store, @Param("userId") Long userId, @Param("version") long version,
+                        @Param("payload") byte[] payload, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE SessionState s SET s.payload = :payload, s.version = s.version + 1, s.updatedAt = :now
+            WHERE s.id.store = :store AND s.id.userId = :userId
+            """)
+    int overwrite(@Param("store") String store, @Param("userId") Long userId,
+                  @Param("payload") byte[] payload, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SessionState s WHERE s.id.store = :store AND s.id.userId = :userId")
+    int delete(@Param("store") String store, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            DELETE FROM SessionState s
+            WHERE s.id.store = :store AND s.id.userId = :userId AND s.version = :version
+            """)
+    int deleteIfVersion(@Param("store") String store, @Param("userId") Long userId, @Param("version") long version);
+
+    @Query("""
+            SELECT s FROM SessionState s
+            WHERE s.id.store = :store AND s.updatedAt < :cutoff
+            ORDER BY s.updatedAt
+            """)
+    List<SessionState> findIdleSince(@Param("store") String store, @Param("cutoff") Instant cutoff, Pageable pageable);
+}
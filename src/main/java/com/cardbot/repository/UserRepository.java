@@ -1,11 +1,42 @@
 package com.cardbot.repository;
 
 import com.cardbot.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByTelegramId(Long telegramId);
+
+    @Query("SELECT u.cardCount FROM User u WHERE u.id = :userId")
+    Optional<Integer> findCardCount(@Param("userId") Long userId);
+
+    /** Сдвигает users.card_count на delta в транзакции, которая добавляет или удаляет карточку. */
+    @Modifying
+    @Query("UPDATE User u SET u.cardCount = u.cardCount + :delta WHERE u.id = :userId")
+    int addCardCount(@Param("userId") Long userId, @Param("delta") int delta);
+
+    /**
+     * Минутная корзина напоминаний: пользователи с next_reminder_at не позже now, по возрастанию времени.
+     * Читается по частичному индексу idx_users_next_reminder_at (V18), поэтому стоимость пропорциональна
+     * размеру корзины, а не числу пользователей. Обработанные строки переносятся на следующий день
+     * и из выборки уходят, так что следующая порция — тот же запрос.
+     */
+    @Query("""
+            SELECT new com.cardbot.repository.ReminderTarget(u.id, u.telegramId, u.timeZone, u.reminderHour,
+                u.nextReminderAt,
+                CASE WHEN EXISTS (SELECT 1 FROM Card c WHERE c.user.id = u.id) THEN true ELSE false END,
+                s.lastLearnedAt, s.lastReminderAt)
+            FROM User u LEFT JOIN LearningStats s ON s.user.id = u.id
+            WHERE u.nextReminderAt <= :now
+            ORDER BY u.nextReminderAt, u.id
+            """)
+    List<ReminderTarget> findDueReminders(@Param("now") Instant now, Limit limit);
 }
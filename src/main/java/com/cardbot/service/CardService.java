@@ -2,23 +2,48 @@ package com.cardbot.service;
 
 import com.cardbot.model.Card;
 import com.cardbot.model.CardSet;
+import com.cardbot.model.CardSnapshot;
 import com.cardbot.model.User;
 import com.cardbot.repository.CardRepository;
+import com.cardbot.repository.CardSetRepository;
+import com.cardbot.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.LongFunction;
 
+/**
+ * Карточки пользователя. Счётчики users.card_count и card_sets.card_count меняются в той же транзакции,
+ * что и сама карточка: при создании, удалении и переносе в другой набор.
+ * <p>
+ * Номера карточек пользователя (cards.user_ordinal) плотные, 1..users.card_count. Создание и удаление
+ * сначала сдвигают users.card_count — UPDATE блокирует строку пользователя, и номера его карточек
+ * до конца транзакции никто другой не меняет.
+ */
 @Service
 @RequiredArgsConstructor
 public class CardService {
 
     private static final String SEPARATOR = "\\s*[-—]\\s*";
+    /** Сколько карточек выборки в среднем должно найтись среди проверенных номеров. */
+    private static final int EXPECTED_HITS = 8;
+    private static final int MAX_PROBES = 256;
 
     private final CardRepository cardRepository;
+    private final CardSetRepository cardSetRepository;
+    private final UserRepository userRepository;
+    private final SpacedRepetitionService spacedRepetitionService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Парсит строку формата "слово — перевод" (разделитель: - или —).
@@ -46,14 +71,22 @@ public class CardService {
 
     @Transactional
     public Card create(User user, CardSet cardSet, String word, String translation, String transcription) {
+        userRepository.addCardCount(user.getId(), 1);
         Card card = Card.builder()
                 .user(user)
                 .cardSet(cardSet)
                 .word(word)
                 .translation(translation)
                 .transcription(transcription)
+                .userOrdinal(userRepository.findCardCount(user.getId()).orElseThrow())
                 .build();
-        return cardRepository.save(card);
+        Card saved = cardRepository.save(card);
+        if (cardSet != null) {
+            cardSetRepository.addCardCount(cardSet.getId(), 1);
+        }
+        spacedRepetitionService.track(saved);
+        eventPublisher.publishEvent(new UserStatsChangedEvent(user.getId()));
+        return saved;
     }
 
     /**
@@ -140,6 +173,14 @@ public class CardService {
                 .filter(card -> card.getUser().getId().equals(userId));
     }
 
+    /**
+     * Содержимое карточек пользователя по id, без загрузки сущностей; чужие и отсутствующие id пропускаются,
+     * порядок не гарантирован.
+     */
+    public List<CardSnapshot> findSnapshots(Long userId, List<Long> ids) {
+        return cardRepository.findSnapshotsByUserIdAndIdIn(userId, ids);
+    }
+
     public List<Card> findAllByUser(User user) {
         return findAllByUser(user, (Long) null);
     }
@@ -155,45 +196,91 @@ public class CardService {
         return cardRepository.findByUserIdAndCardSetIsNull(user.getId(), Pageable.unpaged()).getContent();
     }
 
+    /** По счётчику users.card_count, без COUNT по cards. */
     public long countByUser(User user) {
-        return cardRepository.countByUserId(user.getId());
-    }
-
-    public long countByUser(User user, Long setId) {
-        if (setId == null) {
-            return cardRepository.countByUserId(user.getId());
-        }
-        return cardRepository.countByUserIdAndCardSet_Id(user.getId(), setId);
-    }
-
-    public long countByUserWithoutSet(User user) {
-        return cardRepository.countByUserIdAndCardSetIsNull(user.getId());
+        return userRepository.findCardCount(user.getId()).orElse(0);
     }
 
     public Optional<Card> getRandomCard(User user) {
         return getRandomCard(user, null);
     }
 
+    /**
+     * Случайная карточка по случайному номеру: один поиск по индексу (user_id, user_ordinal), сколько бы
+     * ни было карточек и как бы ни были разрежены их id.
+     */
     public Optional<Card> getRandomCard(User user, Long setId) {
+        Long userId = user.getId();
+        int total = userRepository.findCardCount(userId).orElse(0);
         if (setId == null) {
-            return cardRepository.findRandomByUserId(user.getId());
+            if (total == 0) {
+                return Optional.empty();
+            }
+            Optional<Card> card = cardRepository.findByUserIdAndUserOrdinal(userId, ThreadLocalRandom.current().nextInt(total) + 1);
+            // номер не нашёлся только при разошедшемся счётчике
+            return card.isPresent() ? card : atRandomOffset(cardRepository.countByUserId(userId),
+                    offset -> cardRepository.findByUserIdAtOffset(userId, offset));
         }
-        return cardRepository.findRandomByUserIdAndCardSetId(user.getId(), setId);
+        int inSet = cardSetRepository.findCardCount(setId, userId).orElse(0);
+        return pickRandom(total, inSet,
+                ordinals -> cardRepository.findByUserIdAndCardSet_IdAndUserOrdinalIn(userId, setId, ordinals),
+                offset -> cardRepository.findByUserIdAndCardSetIdAtOffset(userId, setId, offset));
     }
 
     public Optional<Card> getRandomCardWithoutSet(User user) {
-        return cardRepository.findRandomByUserIdAndCardSetIsNull(user.getId());
+        Long userId = user.getId();
+        int total = userRepository.findCardCount(userId).orElse(0);
+        long withoutSet = total - cardSetRepository.sumCardCountByUserId(userId);
+        return pickRandom(total, withoutSet,
+                ordinals -> cardRepository.findByUserIdAndCardSetIsNullAndUserOrdinalIn(userId, ordinals),
+                offset -> cardRepository.findByUserIdAndCardSetIsNullAtOffset(userId, offset));
+    }
+
+    /**
+     * Равномерный выбор случайной карточки части колоды (набора или карточек без набора) из selected
+     * карточек среди total карточек пользователя.
+     * <p>
+     * Проверяются случайные номера 1..total, столько, чтобы в среднем нашлось {@link #EXPECTED_HITS}
+     * карточек выборки, одним запросом по индексу; из найденных выбирается случайная. Каждая карточка
+     * выборки попадает в кандидаты с одинаковой вероятностью, поэтому выбор равномерный. Если выборка
+     * меньше {@link #EXPECTED_HITS}/{@link #MAX_PROBES} колоды (~3%) или ничего не нашлось, карточка берётся
+     * по случайному смещению внутри выборки — со сканированием индекса, но только по её карточкам.
+     */
+    private Optional<Card> pickRandom(int total, long selected, Function<Set<Integer>, List<Card>> probe,
+                                      LongFunction<Optional<Card>> atOffset) {
+        if (total <= 0 || selected <= 0) {
+            return Optional.empty();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long probes = Math.min(total, (EXPECTED_HITS * (long) total + selected - 1) / selected);
+        if (probes <= MAX_PROBES) {
+            Set<Integer> ordinals = new HashSet<>();
+            while (ordinals.size() < probes) {
+                ordinals.add(random.nextInt(total) + 1);
+            }
+            List<Card> found = probe.apply(ordinals);
+            if (!found.isEmpty()) {
+                return Optional.of(found.get(random.nextInt(found.size())));
+            }
+        }
+        return atRandomOffset(selected, atOffset);
     }
 
-    public List<Card> findAllByUserOrdered(Long userId, Long setId) {
-        Pageable unpaged = Pageable.unpaged();
+    private static Optional<Card> atRandomOffset(long count, LongFunction<Optional<Card>> atOffset) {
+        return count > 0 ? atOffset.apply(ThreadLocalRandom.current().nextLong(count)) : Optional.empty();
+    }
+
+    /**
+     * Только id карточек (по индексу, без загрузки содержимого); setId: null — все, -1 — без набора.
+     */
+    public List<Long> findIdsByUser(Long userId, Long setId) {
         if (setId == null) {
-            return cardRepository.findByUserIdOrderByIdAsc(userId, unpaged).getContent();
+            return cardRepository.findIdsByUserId(userId);
         }
         if (-1L == setId) {
-            return cardRepository.findByUserIdAndCardSetIsNullOrderByIdAsc(userId, unpaged).getContent();
+            return cardRepository.findIdsByUserIdAndCardSetIsNull(userId);
         }
-        return cardRepository.findByUserIdAndCardSet_IdOrderByIdAsc(userId, setId, unpaged).getContent();
+        return cardRepository.findIdsByUserIdAndCardSetId(userId, setId);
     }
 
     @Transactional
@@ -201,17 +288,51 @@ public class CardService {
         card.setWord(word);
         card.setTranslation(translation);
         card.setTranscription(transcription);
-        return cardRepository.save(card);
+        Card saved = cardRepository.save(card);
+        eventPublisher.publishEvent(new UserStatsChangedEvent(card.getUser().getId()));
+        return saved;
     }
 
+    /**
+     * Удаляет карточку; последняя по номеру карточка пользователя занимает её номер, чтобы номера
+     * оставались без пропусков.
+     */
     @Transactional
     public void delete(Card card) {
+        Long userId = card.getUser().getId();
+        userRepository.addCardCount(userId, -1);
+        Optional<Integer> ordinal = cardRepository.findUserOrdinal(card.getId());
+        if (ordinal.isEmpty()) {
+            userRepository.addCardCount(userId, 1); // карточку уже удалили
+            return;
+        }
+        int last = userRepository.findCardCount(userId).orElseThrow() + 1;
+        spacedRepetitionService.forget(card.getId());
         cardRepository.delete(card);
+        cardRepository.flush();
+        if (ordinal.get() != last) {
+            cardRepository.moveUserOrdinal(userId, last, ordinal.get());
+        }
+        if (card.getCardSet() != null) {
+            cardSetRepository.addCardCount(card.getCardSet().getId(), -1);
+        }
+        eventPublisher.publishEvent(new UserStatsChangedEvent(card.getUser().getId()));
     }
 
     @Transactional
     public Card moveToSet(Card card, CardSet cardSet) {
+        Long fromSetId = card.getCardSet() != null ? card.getCardSet().getId() : null;
+        Long toSetId = cardSet != null ? cardSet.getId() : null;
+        if (!Objects.equals(fromSetId, toSetId)) {
+            if (fromSetId != null) {
+                cardSetRepository.addCardCount(fromSetId, -1);
+            }
+            if (toSetId != null) {
+                cardSetRepository.addCardCount(toSetId, 1);
+            }
+        }
         card.setCardSet(cardSet);
+        spacedRepetitionService.moveToSet(card.getId(), cardSet != null ? cardSet.getId() : null);
         return cardRepository.save(card);
     }
 
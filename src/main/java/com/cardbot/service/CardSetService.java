@@ -2,7 +2,9 @@ package com.cardbot.service;
 
 import com.cardbot.model.CardSet;
 import com.cardbot.model.User;
+import com.cardbot.repository.CardSetCount;
 import com.cardbot.repository.CardSetRepository;
+import com.cardbot.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,11 +17,23 @@ import java.util.Optional;
 public class CardSetService {
 
     private final CardSetRepository cardSetRepository;
+    private final UserRepository userRepository;
 
     public List<CardSet> findAllByUser(User user) {
         return cardSetRepository.findByUserIdOrderByName(user.getId());
     }
 
+    /**
+     * Наборы с числом карточек для меню /learn, /list и /sets: два запроса по счётчикам card_count
+     * при любом числе наборов. Без набора — всё, что не разложено по наборам.
+     */
+    public SetsOverview overview(User user) {
+        List<CardSetCount> sets = cardSetRepository.findCountsByUserId(user.getId());
+        long total = userRepository.findCardCount(user.getId()).orElse(0);
+        long inSets = sets.stream().mapToLong(CardSetCount::cardCount).sum();
+        return new SetsOverview(total, Math.max(0, total - inSets), sets);
+    }
+
     public Optional<CardSet> findByIdAndUserId(Long id, Long userId) {
         return cardSetRepository.findByIdAndUserId(id, userId);
     }
@@ -60,8 +74,11 @@ public class CardSetService {
         return cardSetRepository.save(set);
     }
 
+    /** Карточки набора остаются у пользователя без набора (ON DELETE SET NULL), users.card_count не меняется. */
     @Transactional
     public void delete(CardSet cardSet) {
         cardSetRepository.delete(cardSet);
     }
+
+    public record SetsOverview(long totalCards, long withoutSet, List<CardSetCount> sets) {}
 }
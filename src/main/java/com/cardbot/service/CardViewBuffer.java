@@ -0,0 +1,398 @@
+package com.cardbot.service;
+
+import com.cardbot.model.LearningStats;
+import com.cardbot.repository.LearningStatsRepository;
+import com.cardbot.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отложенная запись просмотров карточек: card_views и счётчики learning_stats.
+ * <p>
+ * Обработчик update только добавляет событие в неблокирующую очередь. Отдельный поток раз в flush-interval
+ * или по накоплении batch-size событий забирает очередь целиком и пишет её одной транзакцией:
+ * многострочный INSERT в card_views (по {@link #ROWS_PER_INSERT} строк) и по одному UPDATE learning_stats
+ * на пользователя и день с суммой просмотров и продлением серии, затем пополняет дневные сводки card_view_days
+ * и daily_activity и итоги карточек card_view_totals. Дни считаются в cardbot.stats.zone.
+ * Вместо трёх запросов на каждый клик — доля одного.
+ * <p>
+ * durability: buffered — события последних flush-interval теряются при падении процесса (при штатной
+ * остановке очередь дописывается); sync — запись сразу в потоке вызова, как раньше (тесты, отладка).
+ * Просмотры карточек, удалённых до записи, отбрасываются.
+ * <p>
+ * Пачка, которую не удалось записать, остаётся в буфере и пишется первой при следующей попытке; попытки
+ * повторяются с экспоненциальной задержкой от flush-interval до {@link #MAX_BACKOFF}. Пока БД недоступна,
+ * буфер копит не больше max-pending событий — сверх этого новые и самые старые события отбрасываются
+ * (cardbot.views.dropped). После начала остановки просмотры пишутся сразу в потоке вызова.
+ */
+@Slf4j
+@Component
+public class CardViewBuffer {
+
+    public enum Durability { BUFFERED, SYNC }
+
+    static final int ROWS_PER_INSERT = 500;
+    static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final Durability durability;
+    private final int batchSize;
+    private final int maxPending;
+    private final ZoneId zone;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LearningStatsRepository learningStatsRepository;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentLinkedQueue<View> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final long flushIntervalNanos;
+    private volatile boolean stopping;
+
+    // состояние потока записи, под блокировкой flush()
+    private List<View> failed = List.of();
+    private int failures;
+    private long retryAtNanos;
+
+    private final Timer flushTimer;
+    private final Counter dropped;
+
+    public CardViewBuffer(@Value("${cardbot.views.durability:buffered}") Durability durability,
+                          @Value("${cardbot.views.flush-interval:500ms}") Duration flushInterval,
+                          @Value("${cardbot.views.batch-size:500}") int batchSize,
+                          @Value("${cardbot.views.max-pending:100000}") int maxPending,
+                          @Value("${cardbot.stats.zone:UTC}") ZoneId zone,
+                          JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          LearningStatsRepository learningStatsRepository,
+                          UserRepository userRepository,
+                          ApplicationEventPublisher eventPublisher,
+                          MeterRegistry meterRegistry) {
+        this.durability = durability;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.zone = zone;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.learningStatsRepository = learningStatsRepository;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.flushIntervalNanos = flushInterval.toNanos();
+
+        this.flushTimer = Timer.builder("cardbot.views.flush")
+                .description("Запись накопленных просмотров в БД")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.dropped = Counter.builder("cardbot.views.dropped")
+                .description("Просмотры, не записанные из-за переполнения буфера или ошибки БД при остановке")
+                .register(meterRegistry);
+        Gauge.builder("cardbot.views.pending", pending, AtomicInteger::get)
+                .description("Просмотры в очереди на запись")
+                .register(meterRegistry);
+
+        if (durability == Durability.BUFFERED) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "card-views-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMs = flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+        log.info("Просмотры карточек: {}, batch {}, интервал {}", durability, batchSize, flushInterval);
+    }
+
+    public void record(Long userId, Long cardId, Instant viewedAt) {
+        View view = new View(userId, cardId, viewedAt);
+        if (durability == Durability.SYNC) {
+            write(List.of(view));
+            return;
+        }
+        if (stopping) {
+            writeNow(view);
+            return;
+        }
+        if (pending.get() >= maxPending) {
+            dropped.increment();
+            return;
+        }
+        queue.add(view);
+        if (pending.incrementAndGet() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // остановка началась после проверки stopping — дописываем очередь сами
+                flushQuietly();
+            }
+        }
+    }
+
+    /**
+     * Записывает всё накопленное к этому моменту; вызывается потоком записи и при остановке.
+     * После ошибки ничего не делает до истечения задержки, кроме записи при остановке.
+     */
+    synchronized void flush() {
+        flushRequested.set(false);
+        if (failures > 0 && !stopping && System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+        List<View> batch = new ArrayList<>(failed.size() + Math.min(pending.get(), maxPending));
+        batch.addAll(failed);
+        failed = List.of();
+        View view;
+        while ((view = queue.poll()) != null) {
+            batch.add(view);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flushTimer.record(() -> {
+                try {
+                    write(batch);
+                } catch (DataIntegrityViolationException e) {
+                    // статистику пользователя одновременно создал другой экземпляр — повторяем как обновление
+                    write(batch);
+                }
+            });
+        } catch (RuntimeException e) {
+            keepFailed(batch);
+            throw e;
+        }
+        pending.addAndGet(-batch.size());
+        failures = 0;
+    }
+
+    /** Оставляет пачку до следующей попытки; события сверх max-pending, самые старые, отбрасываются. */
+    private void keepFailed(List<View> batch) {
+        int excess = batch.size() - maxPending;
+        if (excess > 0) {
+            dropped.increment(excess);
+            pending.addAndGet(-excess);
+            failed = new ArrayList<>(batch.subList(excess, batch.size()));
+        } else {
+            failed = batch;
+        }
+        failures++;
+        long backoff = Math.min(MAX_BACKOFF.toNanos(), flushIntervalNanos << Math.min(failures, 10));
+        retryAtNanos = System.nanoTime() + backoff;
+    }
+
+    private void writeNow(View view) {
+        try {
+            write(List.of(view));
+        } catch (RuntimeException e) {
+            dropped.increment();
+            log.warn("Не удалось записать просмотр карточки при остановке: {}", e.getMessage());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать просмотры карточек", e);
+        }
+    }
+
+    private void write(List<View> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < batch.size(); from += ROWS_PER_INSERT) {
+                insertViews(batch.subList(from, Math.min(batch.size(), from + ROWS_PER_INSERT)));
+            }
+            updateStats(batch);
+            updateRollups(batch);
+            batch.stream().map(View::userId).distinct()
+                    .forEach(userId -> eventPublisher.publishEvent(new UserStatsChangedEvent(userId)));
+        });
+    }
+
+    /** Один INSERT на пачку; JOIN с cards отбрасывает карточки, удалённые, пока событие ждало записи. */
+    private void insertViews(List<View> views) {
+        String values = String.join(", ", Collections.nCopies(views.size(),
+                "(CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS TIMESTAMP WITH TIME ZONE))"));
+        Object[] args = new Object[views.size() * 3];
+        int i = 0;
+        for (View view : views) {
+            args[i++] = view.userId();
+            args[i++] = view.cardId();
+            args[i++] = OffsetDateTime.ofInstant(view.viewedAt(), ZoneOffset.UTC);
+        }
+        jdbcTemplate.update("INSERT INTO card_views (user_id, card_id, viewed_at) "
+                + "SELECT v.user_id, v.card_id, v.viewed_at FROM (VALUES " + values + ") AS v(user_id, card_id, viewed_at) "
+                + "JOIN cards c ON c.id = v.card_id", args);
+    }
+
+    /** По одному UPDATE на пользователя и день, дни по возрастанию — чтобы серия продлевалась по порядку. */
+    private void updateStats(List<View> batch) {
+        Map<UserDay, long[]> byUserDay = new HashMap<>(); // [просмотры, последний просмотр в мс]
+        for (View view : batch) {
+            long[] acc = byUserDay.computeIfAbsent(new UserDay(view.userId(), day(view)), k -> new long[2]);
+            acc[0]++;
+            acc[1] = Math.max(acc[1], view.viewedAt().toEpochMilli());
+        }
+        List<UserDay> days = new ArrayList<>(byUserDay.keySet());
+        days.sort(Comparator.comparing(UserDay::date));
+        Instant now = Instant.now();
+        for (UserDay d : days) {
+            long[] acc = byUserDay.get(d);
+            Instant lastLearnedAt = Instant.ofEpochMilli(acc[1]);
+            if (learningStatsRepository.addViews(d.userId(), acc[0], lastLearnedAt, d.date(), d.date().minusDays(1), now) == 0) {
+                learningStatsRepository.save(LearningStats.builder()
+                        .user(userRepository.getReferenceById(d.userId()))
+                        .cardsViewedTotal(acc[0])
+                        .lastLearnedAt(lastLearnedAt)
+                        .currentStreak(1)
+                        .longestStreak(1)
+                        .lastActiveDay(d.date())
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * Пополняет card_view_days и daily_activity: UPDATE по ключу, для новых ключей — INSERT. Новая строка
+     * card_view_days означает ещё одну разную карточку за день; строка не вставляется, если карточку уже удалили.
+     */
+    private void updateRollups(List<View> batch) {
+        Map<CardDay, Integer> byCardDay = new HashMap<>();
+        for (View view : batch) {
+            byCardDay.merge(new CardDay(view.userId(), day(view), view.cardId()),
+                    1, Integer::sum);
+        }
+        List<CardDay> keys = new ArrayList<>(byCardDay.keySet());
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE card_view_days SET views = views + ? WHERE user_id = ? AND activity_date = ? AND card_id = ?",
+                keys.stream().map(k -> new Object[]{byCardDay.get(k), k.userId(), k.date(), k.cardId()}).toList());
+        List<CardDay> missing = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (updated[i] == 0) {
+                missing.add(keys.get(i));
+            }
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(
+                "INSERT INTO card_view_days (user_id, activity_date, card_id, views) SELECT ?, ?, id, ? FROM cards WHERE id = ?",
+                missing.stream().map(k -> new Object[]{k.userId(), k.date(), byCardDay.get(k), k.cardId()}).toList());
+
+        Map<UserDay, int[]> byUserDay = new HashMap<>(); // [просмотры, новые разные карточки]
+        for (int i = 0; i < keys.size(); i++) {
+            CardDay key = keys.get(i);
+            int[] acc = byUserDay.computeIfAbsent(new UserDay(key.userId(), key.date()), k -> new int[2]);
+            acc[0] += byCardDay.get(key);
+        }
+        for (int i = 0; i < missing.size(); i++) {
+            CardDay key = missing.get(i);
+            int[] acc = byUserDay.get(new UserDay(key.userId(), key.date()));
+            if (inserted[i] == 0) {
+                acc[0] -= byCardDay.get(key); // карточка удалена до записи
+            } else {
+                acc[1]++;
+            }
+        }
+        byUserDay.values().removeIf(acc -> acc[0] == 0);
+        updateTotals(byCardDay, missing, inserted);
+        List<UserDay> days = new ArrayList<>(byUserDay.keySet());
+        int[] updatedDays = jdbcTemplate.batchUpdate(
+                "UPDATE daily_activity SET views = views + ?, distinct_cards = distinct_cards + ? WHERE user_id = ? AND activity_date = ?",
+                days.stream().map(d -> new Object[]{byUserDay.get(d)[0], byUserDay.get(d)[1], d.userId(), d.date()}).toList());
+        List<Object[]> newDays = new ArrayList<>();
+        for (int i = 0; i < days.size(); i++) {
+            if (updatedDays[i] == 0) {
+                UserDay d = days.get(i);
+                newDays.add(new Object[]{d.userId(), d.date(), byUserDay.get(d)[0], byUserDay.get(d)[1]});
+            }
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO daily_activity (user_id, activity_date, views, distinct_cards) VALUES (?, ?, ?, ?)", newDays);
+    }
+
+    /** Пополняет card_view_totals теми же просмотрами, что легли в card_view_days. */
+    private void updateTotals(Map<CardDay, Integer> byCardDay, List<CardDay> missing, int[] inserted) {
+        Map<Long, Integer> byCard = new HashMap<>();
+        byCardDay.forEach((key, views) -> byCard.merge(key.cardId(), views, Integer::sum));
+        for (int i = 0; i < missing.size(); i++) {
+            if (inserted[i] == 0) {
+                byCard.merge(missing.get(i).cardId(), -byCardDay.get(missing.get(i)), Integer::sum);
+            }
+        }
+        byCard.values().removeIf(views -> views == 0);
+        List<Long> cards = new ArrayList<>(byCard.keySet());
+        int[] updated = jdbcTemplate.batchUpdate("UPDATE card_view_totals SET views = views + ? WHERE card_id = ?",
+                cards.stream().map(id -> new Object[]{byCard.get(id), id}).toList());
+        List<Object[]> newCards = new ArrayList<>();
+        for (int i = 0; i < cards.size(); i++) {
+            if (updated[i] == 0) {
+                newCards.add(new Object[]{byCard.get(cards.get(i)), cards.get(i)});
+            }
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO card_view_totals (card_id, user_id, views) SELECT id, user_id, ? FROM cards WHERE id = ?", newCards);
+    }
+
+    private LocalDate day(View view) {
+        return view.viewedAt().atZone(zone).toLocalDate();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        stopping = true;
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushQuietly();
+        synchronized (this) {
+            if (!failed.isEmpty()) {
+                log.warn("Не записано при остановке просмотров карточек: {}", failed.size());
+                dropped.increment(failed.size());
+                pending.addAndGet(-failed.size());
+                failed = List.of();
+            }
+        }
+    }
+
+    private record View(Long userId, Long cardId, Instant viewedAt) {
+    }
+
+    private record CardDay(Long userId, LocalDate date, Long cardId) {
+    }
+
+    private record UserDay(Long userId, LocalDate date) {
+    }
+}
@@ -0,0 +1,198 @@
+package com.cardbot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Обслуживает месячные секции card_views (V14): заранее создаёт секции на months-ahead месяцев вперёд
+ * и удаляет секции старше retention-months.
+ * <p>
+ * Статистика читает дневные сводки card_view_days и daily_activity, которые пополняются в той же транзакции,
+ * что и card_views, поэтому удаление сырых просмотров её не меняет. Перед удалением секция всё же сводится
+ * в эти таблицы с ON CONFLICT DO NOTHING: дни, записанные без сводок (например, старой версией во время
+ * выкладки), не теряются, а уже учтённые не считаются дважды. Итоги card_view_totals пополняются только
+ * просмотрами вставленных при этом строк card_view_days.
+ * <p>
+ * Работает только на PostgreSQL с секционированной card_views; на других базах (H2 в тестах) ничего не делает.
+ * Все операции идемпотентны; при нескольких экземплярах обслуживание всё же выполняет один — тот, кто взял
+ * аренду {@value #JOB} ({@link JobLeases}), чтобы DDL над card_views не шёл параллельно.
+ */
+@Slf4j
+@Component
+public class CardViewRetentionJob {
+
+    static final String JOB = "card-view-retention";
+
+    private static final String PARENT = "card_views";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'card_views_y'yyyy'm'MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeases jobLeases;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final ZoneId zone;
+    private volatile Boolean partitioned;
+
+    public CardViewRetentionJob(@Value("${cardbot.views.partitions.months-ahead:2}") int monthsAhead,
+                                @Value("${cardbot.views.partitions.retention-months:12}") int retentionMonths,
+                                @Value("${cardbot.stats.zone:UTC}") ZoneId zone,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                JobLeases jobLeases) {
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.zone = zone;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobLeases = jobLeases;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${cardbot.views.partitions.cron:0 30 3 * * ?}")
+    public void maintain() {
+        try {
+            if (isPartitioned()) {
+                jobLeases.runExclusive(JOB, this::maintainPartitions);
+            }
+        } catch (DataAccessException e) {
+            log.error("Не удалось обслужить секции card_views", e);
+        }
+    }
+
+    private void maintainPartitions(JobLeases.Lease lease) {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+        YearMonth horizon = horizon(current, retentionMonths);
+        int dropped = 0;
+        for (YearMonth month : partitions()) {
+            if (isExpired(month, horizon) && compact(month, lease)) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            log.info("Удалено секций card_views старше {}: {}", horizon, dropped);
+        }
+    }
+
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+            partitioned = "PostgreSQL".equals(product) && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid WHERE c.relname = ?)",
+                    Boolean.class, PARENT));
+            if (!partitioned) {
+                log.info("card_views не секционирована, обслуживание секций отключено");
+            }
+        }
+        return partitioned;
+    }
+
+    private void createPartition(YearMonth month) {
+        try {
+            jdbcTemplate.execute(createPartitionSql(month));
+        } catch (DataAccessException e) {
+            // например, строки этого месяца уже попали в секцию DEFAULT
+            log.warn("Не удалось создать секцию card_views за {}: {}", month, e.getMessage());
+        }
+    }
+
+    /** Месяцы существующих секций; DEFAULT и секции с чужими именами не трогаются. */
+    private List<YearMonth> partitions() {
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE p.relname = ?
+                """, String.class, PARENT)) {
+            partitionMonth(name).ifPresent(months::add);
+        }
+        return months;
+    }
+
+    /** Сводит секцию в дневные сводки и удаляет её одной транзакцией. */
+    private boolean compact(YearMonth month, JobLeases.Lease lease) {
+        String partition = month.format(PARTITION_NAME);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lease.fence();
+                jdbcTemplate.update(compactCardDaysSql(partition), zone.getId());
+                jdbcTemplate.update(compactDailyActivitySql(partition), zone.getId());
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            });
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("Не удалось удалить секцию {}: {}", partition, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Секции старше горизонта удаляются: хранятся retention-months полных месяцев до текущего и сам текущий. */
+    static YearMonth horizon(YearMonth current, int retentionMonths) {
+        return current.minusMonths(retentionMonths);
+    }
+
+    static boolean isExpired(YearMonth month, YearMonth horizon) {
+        return month.isBefore(horizon);
+    }
+
+    /** Месяц секции по имени card_views_yYYYYmMM; у DEFAULT и чужих секций месяца нет. */
+    static Optional<YearMonth> partitionMonth(String name) {
+        try {
+            return Optional.of(YearMonth.parse(name, PARTITION_NAME));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Секция за месяц с границами в UTC, как в V14. */
+    static String createPartitionSql(YearMonth month) {
+        return "CREATE TABLE IF NOT EXISTS " + month.format(PARTITION_NAME) + " PARTITION OF " + PARENT
+                + " FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00+00') TO ('" + month.plusMonths(1).atDay(1) + " 00:00:00+00')";
+    }
+
+    /**
+     * Дни карточек из секции, которых ещё нет в card_view_days; просмотры именно этих строк добавляются
+     * к card_view_totals. Параметр — зона дней.
+     */
+    static String compactCardDaysSql(String partition) {
+        return "WITH added AS (INSERT INTO card_view_days (user_id, activity_date, card_id, views) "
+                + "SELECT user_id, CAST(viewed_at AT TIME ZONE ? AS DATE), card_id, COUNT(*) FROM " + partition
+                + " GROUP BY 1, 2, 3 ON CONFLICT DO NOTHING RETURNING card_id, user_id, views) "
+                + "INSERT INTO card_view_totals (card_id, user_id, views) "
+                + "SELECT card_id, user_id, SUM(views) FROM added GROUP BY 1, 2 "
+                + "ON CONFLICT (card_id) DO UPDATE SET views = card_view_totals.views + EXCLUDED.views";
+    }
+
+    /** Дни пользователей из секции, которых ещё нет в daily_activity. Параметр — зона дней. */
+    static String compactDailyActivitySql(String partition) {
+        return "INSERT INTO daily_activity (user_id, activity_date, views, distinct_cards) "
+                + "SELECT user_id, CAST(viewed_at AT TIME ZONE ? AS DATE), COUNT(*), COUNT(DISTINCT card_id) FROM " + partition
+                + " GROUP BY 1, 2 ON CONFLICT DO NOTHING";
+    }
+}
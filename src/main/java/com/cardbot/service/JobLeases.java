@@ -0,0 +1,189 @@
+package com.cardbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Пакетные задания при нескольких экземплярах бота: задание выполняет только тот экземпляр, который взял
+ * аренду его имени в job_leases (V19). Аренда выдаётся на lease-ttl и снимается по окончании задания;
+ * экземпляр, упавший посреди задания, держит её не дольше ttl. Пока аренда занята, тот же экземпляр
+ * её тоже не получит, поэтому запуски одного задания не накладываются и внутри процесса.
+ * <p>
+ * Каждая выдача увеличивает fencing_token. Задание, которое пишет результат порциями, вызывает
+ * {@link Lease#fence()} в транзакции каждой порции: вызов продлевает аренду, а если её уже взял другой
+ * экземпляр (пауза дольше ttl), бросает {@link LeaseLostException} — транзакция порции
+ * откатывается вместо того, чтобы записать результат второй раз. Поэтому ttl должен быть больше самой
+ * долгой порции.
+ * <p>
+ * Выдача, продление и истечение аренды считаются по часам БД (CURRENT_TIMESTAMP), общим для всех экземпляров:
+ * расхождение часов между ними на аренду не влияет.
+ * <p>
+ * Метрики: cardbot.jobs.lease{job,result=acquired|busy|lost}, cardbot.jobs.lease.held{job} — время удержания.
+ */
+@Slf4j
+@Component
+public class JobLeases {
+
+    /** CURRENT_TIMESTAMP + ttl в миллисекундах; INTERVAL '1' MILLISECOND PostgreSQL понимает иначе. */
+    private static final String EXPIRES_AT = "CURRENT_TIMESTAMP + CAST(? AS BIGINT) * INTERVAL '0.001' SECOND";
+
+    private static final String INSERT_MISSING = """
+            INSERT INTO job_leases (job_name, fencing_token, expires_at)
+            SELECT ?, 0, CURRENT_TIMESTAMP WHERE NOT EXISTS (SELECT 1 FROM job_leases WHERE job_name = ?)
+            """;
+
+    private static final String ACQUIRE = """
+            UPDATE job_leases SET owner = ?, fencing_token = fencing_token + 1, acquired_at = CURRENT_TIMESTAMP,
+                expires_at = %s
+            WHERE job_name = ? AND expires_at <= CURRENT_TIMESTAMP
+            """.formatted(EXPIRES_AT);
+
+    private static final String RENEW =
+            "UPDATE job_leases SET expires_at = " + EXPIRES_AT + " WHERE job_name = ? AND fencing_token = ? AND owner = ?";
+
+    private static final String RELEASE =
+            "UPDATE job_leases SET expires_at = CURRENT_TIMESTAMP WHERE job_name = ? AND fencing_token = ? AND owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+    private final String owner;
+
+    @Autowired
+    public JobLeases(JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager,
+                     MeterRegistry meterRegistry,
+                     @Value("${cardbot.jobs.lease-ttl:5m}") Duration ttl) {
+        this(jdbcTemplate, transactionManager, meterRegistry, ttl,
+                ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    JobLeases(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+              Duration ttl, String owner) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.owner = owner;
+    }
+
+    /**
+     * Выполняет задание, если удалось взять аренду; иначе сразу возвращает false.
+     * Аренда снимается после задания, в том числе при исключении.
+     */
+    public boolean runExclusive(String job, Consumer<Lease> task) {
+        Optional<Lease> acquired = tryAcquire(job);
+        if (acquired.isEmpty()) {
+            counter(job, "busy").increment();
+            log.debug("Задание {} выполняет другой экземпляр", job);
+            return false;
+        }
+        Lease lease = acquired.get();
+        counter(job, "acquired").increment();
+        long startedAt = System.nanoTime();
+        try {
+            task.accept(lease);
+        } catch (LeaseLostException e) {
+            log.warn("Задание {} прервано: {}", job, e.getMessage());
+        } finally {
+            release(lease);
+            Timer.builder("cardbot.jobs.lease.held")
+                    .description("Время удержания аренды задания")
+                    .tag("job", job)
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(System.nanoTime() - startedAt));
+        }
+        return true;
+    }
+
+    /**
+     * Берёт свободную или просроченную аренду со следующим fencing-токеном. Работает в своих транзакциях,
+     * чтобы выдача была видна другим экземплярам независимо от транзакции вызывающего.
+     */
+    Optional<Lease> tryAcquire(String job) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_MISSING, job, job));
+        } catch (DataIntegrityViolationException e) {
+            // строку одновременно вставил другой экземпляр
+        }
+        return transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(ACQUIRE, owner, ttl.toMillis(), job) == 0) {
+                return Optional.<Lease>empty();
+            }
+            Long token = jdbcTemplate.queryForObject(
+                    "SELECT fencing_token FROM job_leases WHERE job_name = ?", Long.class, job);
+            return Optional.of(new Lease(job, token));
+        });
+    }
+
+    /** Освобождает аренду, если её не перехватили; токен остаётся, следующая выдача его увеличит. */
+    void release(Lease lease) {
+        jdbcTemplate.update(RELEASE, lease.job(), lease.token(), owner);
+    }
+
+    private Counter counter(String job, String result) {
+        return Counter.builder("cardbot.jobs.lease")
+                .description("Попытки взять аренду задания по результату")
+                .tag("job", job)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /** Выданная аренда задания. */
+    public final class Lease {
+
+        private final String job;
+        private final long token;
+
+        private Lease(String job, long token) {
+            this.job = job;
+            this.token = token;
+        }
+
+        public String job() {
+            return job;
+        }
+
+        public long token() {
+            return token;
+        }
+
+        /**
+         * Проверяет в текущей транзакции, что аренда всё ещё своя, и продлевает её на ttl.
+         *
+         * @throws LeaseLostException аренду взял другой экземпляр — транзакцию нужно откатить
+         */
+        public void fence() {
+            if (jdbcTemplate.update(RENEW, ttl.toMillis(), job, token, owner) == 0) {
+                counter(job, "lost").increment();
+                throw new LeaseLostException(job, token);
+            }
+        }
+    }
+
+    /** Аренду задания перехватил другой экземпляр; результат порции записывать нельзя. */
+    public static class LeaseLostException extends IllegalStateException {
+
+        public LeaseLostException(String job, long token) {
+            super("аренда задания " + job + " с токеном " + token + " потеряна");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.cardbot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Время напоминаний по местным часам пользователя. Напоминание приходит в выбранный час плюс постоянный
+ * для пользователя сдвиг в пределах spread-minutes (по id): пользователи одного пояса с одним часом
+ * расходятся по нескольким минутным корзинам, а не приходят в одну.
+ * Если местного времени нет (переход на летнее время), ZonedDateTime сдвигает его вперёд.
+ */
+@Component
+public class ReminderSchedule {
+
+    public static final ZoneId DEFAULT_ZONE = ZoneOffset.UTC;
+
+    private final int spreadMinutes;
+
+    public ReminderSchedule(@Value("${cardbot.reminders.spread-minutes:15}") int spreadMinutes) {
+        this.spreadMinutes = spreadMinutes;
+    }
+
+    /** Ближайшее после after время напоминания пользователя. */
+    public Instant next(long userId, ZoneId zone, int hour, Instant after) {
+        int offset = spreadMinutes > 0 ? (int) Math.floorMod(userId, (long) spreadMinutes) : 0;
+        LocalDate day = after.atZone(zone).toLocalDate();
+        Instant candidate = at(day, hour, offset, zone);
+        if (!candidate.isAfter(after)) {
+            candidate = at(day.plusDays(1), hour, offset, zone);
+        }
+        return candidate;
+    }
+
+    /** Пояс из users.time_zone; неизвестный — UTC. */
+    public static ZoneId zoneOf(String timeZone) {
+        try {
+            return ZoneId.of(timeZone);
+        } catch (DateTimeException | NullPointerException e) {
+            return DEFAULT_ZONE;
+        }
+    }
+
+    private static Instant at(LocalDate day, int hour, int offsetMinutes, ZoneId zone) {
+        return day.atTime(hour, 0).plusMinutes(offsetMinutes).atZone(zone).toInstant();
+    }
+}
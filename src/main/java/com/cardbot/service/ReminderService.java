@@ -1,107 +1,266 @@
 package com.cardbot.service;
 
-import com.cardbot.bot.CardTelegramBot;
-import com.cardbot.model.LearningStats;
-import com.cardbot.model.User;
+import com.cardbot.bot.CallbackAction;
+import com.cardbot.bot.CallbackCodec;
+import com.cardbot.bot.OutboundMessageQueue;
+import com.cardbot.bot.TokenBucket;
 import com.cardbot.repository.LearningStatsRepository;
+import com.cardbot.repository.ReminderTarget;
 import com.cardbot.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.sql.Statement;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Напоминания по местному времени пользователя ({@link ReminderSchedule}). Раз в минуту выбирается корзина
+ * пользователей, чьё next_reminder_at уже наступило ({@link UserRepository#findDueReminders}), — нагрузка
+ * распределена по суткам, а тик стоит столько, сколько пользователей в корзине.
+ * <p>
+ * Корзина обрабатывается порциями по chunk-size:
+ * <ol>
+ *     <li>отправка тем, у кого есть карточки и кто за свой местный день не учился и не получал напоминание:
+ *     сообщения порции ставятся в {@link OutboundMessageQueue} сразу и летят параллельно, темп задаёт
+ *     cardbot.reminders.rate — ниже общего лимита Telegram, чтобы ответы пользователям не стояли за рассылкой;</li>
+ *     <li>ожидание ответов Telegram по всей порции;</li>
+ *     <li>короткая транзакция: lastReminderAt доставленным одним UPDATE (и пачкой INSERT для тех, у кого
+ *     статистики ещё нет) и перенос next_reminder_at всей порции на следующий день пачкой UPDATE.</li>
+ * </ol>
+ * Перенесённые пользователи уходят из корзины, поэтому после перезапуска тик продолжает с необработанных.
+ * Если процесс упал между отправкой и фиксацией порции, её получатели получат напоминание повторно —
+ * не больше одной порции.
+ * <p>
+ * При нескольких экземплярах тик выполняет тот, кто взял аренду {@value #JOB} ({@link JobLeases}); транзакция
+ * порции проверяет fencing-токен, поэтому экземпляр, потерявший аренду, порцию не зафиксирует.
+ * Метрики: cardbot.reminders{result=sent|failed|skipped}, cardbot.reminders.tick.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ReminderService {
 
+    static final String JOB = "reminders";
+
+    private static final String INSERT_MISSING_STATS = """
+            INSERT INTO learning_stats (user_id, cards_viewed_total, current_streak, longest_streak,
+                last_reminder_at, created_at, updated_at)
+            SELECT ?, 0, 0, 0, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM learning_stats WHERE user_id = ?)
+            """;
+
+    /** Строку не трогаем, если расписание успели изменить (/reminder) после выборки корзины. */
+    private static final String ADVANCE_NEXT_REMINDER =
+            "UPDATE users SET next_reminder_at = ? WHERE id = ? AND next_reminder_at = ?";
+
     private final UserRepository userRepository;
-    private final CardService cardService;
     private final LearningStatsRepository learningStatsRepository;
-    private final CardTelegramBot bot;
+    private final ReminderSchedule schedule;
+    private final JobLeases jobLeases;
+    private final OutboundMessageQueue outbound;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final TokenBucket rate;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter skippedCounter;
+    private final Timer tickTimer;
+
+    public ReminderService(UserRepository userRepository,
+                           LearningStatsRepository learningStatsRepository,
+                           ReminderSchedule schedule,
+                           JobLeases jobLeases,
+                           OutboundMessageQueue outbound,
+                           JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${cardbot.reminders.chunk-size:1000}") int chunkSize,
+                           @Value("${cardbot.reminders.rate:20}") double ratePerSecond) {
+        this.userRepository = userRepository;
+        this.learningStatsRepository = learningStatsRepository;
+        this.schedule = schedule;
+        this.jobLeases = jobLeases;
+        this.outbound = outbound;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.rate = new TokenBucket(ratePerSecond, (int) Math.ceil(ratePerSecond), System.nanoTime());
+
+        this.sentCounter = counter(meterRegistry, "sent");
+        this.failedCounter = counter(meterRegistry, "failed");
+        this.skippedCounter = counter(meterRegistry, "skipped");
+        this.tickTimer = Timer.builder("cardbot.reminders.tick")
+                .description("Обработка минутной корзины напоминаний")
+                .register(meterRegistry);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("cardbot.reminders")
+                .description("Подошедшие напоминания по результату")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
     /**
-     * Напоминание раз в день в 10:00 по UTC.
-     * Отправляется пользователям с карточками, которые не учились сегодня.
+     * Тик раз в минуту: все напоминания, время которых наступило. Пропущенные тики (в том числе пока
+     * предыдущий тик ещё шёл) догоняются следующим.
      */
-    @Scheduled(cron = "0 0 10 * * ?")
-    @Transactional
-    public void sendDailyReminders() {
-        Instant startOfToday = Instant.now().atZone(ZoneOffset.UTC)
-                .toLocalDate()
-                .atStartOfDay(ZoneOffset.UTC)
-                .toInstant();
-
-        List<User> users = userRepository.findAll();
+    @Scheduled(cron = "${cardbot.reminders.cron:0 * * * * ?}")
+    public void sendDueReminders() {
+        jobLeases.runExclusive(JOB, lease -> tickTimer.record(() -> tick(Instant.now(), lease)));
+    }
+
+    private void tick(Instant now, JobLeases.Lease lease) {
+        long startedAt = System.nanoTime();
+        int due = 0;
         int sent = 0;
 
-        for (User user : users) {
-            if (cardService.countByUser(user) == 0) {
-                continue;
+        List<ReminderTarget> chunk;
+        do {
+            chunk = userRepository.findDueReminders(now, Limit.of(chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            List<ReminderTarget> recipients = chunk.stream().filter(target -> needsReminder(target, now)).toList();
+            skippedCounter.increment(chunk.size() - recipients.size());
+            List<Long> delivered = deliver(recipients);
+            int advanced = commitChunk(chunk, delivered, now, lease);
+            due += chunk.size();
+            sent += delivered.size();
+            if (advanced == 0) {
+                // ни одну строку не удалось перенести — следующий запрос вернул бы ту же порцию
+                log.warn("Не удалось перенести напоминания порции из {} пользователей", chunk.size());
+                break;
             }
+        } while (chunk.size() == chunkSize);
 
-            var statsOpt = learningStatsRepository.findByUser_Id(user.getId());
-            boolean learnedToday = statsOpt
-                    .map(s -> s.getLastLearnedAt() != null && !s.getLastLearnedAt().isBefore(startOfToday))
-                    .orElse(false);
-            boolean remindedToday = statsOpt
-                    .map(s -> s.getLastReminderAt() != null && !s.getLastReminderAt().isBefore(startOfToday))
-                    .orElse(false);
+        if (due > 0) {
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+            log.info("Напоминания: в корзине {}, отправлено {}, за {} с ({} в секунду)",
+                    due, sent, String.format("%.1f", seconds), String.format("%.1f", seconds > 0 ? sent / seconds : 0));
+        }
+    }
 
-            if (learnedToday || remindedToday) {
-                continue;
-            }
+    /** Есть карточки, и с начала местного дня пользователь не учился и не получал напоминание. */
+    static boolean needsReminder(ReminderTarget target, Instant now) {
+        if (!target.hasCards()) {
+            return false;
+        }
+        ZoneId zone = ReminderSchedule.zoneOf(target.timeZone());
+        Instant startOfDay = now.atZone(zone).toLocalDate().atStartOfDay(zone).toInstant();
+        return isBefore(target.lastLearnedAt(), startOfDay) && isBefore(target.lastReminderAt(), startOfDay);
+    }
 
-            if (sendReminder(user)) {
-                statsOpt.ifPresent(stats -> {
-                    stats.setLastReminderAt(Instant.now());
-                    learningStatsRepository.save(stats);
-                });
-                if (statsOpt.isEmpty()) {
-                    var stats = LearningStats.builder()
-                            .user(user)
-                            .cardsViewedTotal(0L)
-                            .lastReminderAt(Instant.now())
-                            .build();
-                    learningStatsRepository.save(stats);
-                }
-                sent++;
+    private static boolean isBefore(Instant instant, Instant bound) {
+        return instant == null || instant.isBefore(bound);
+    }
+
+    /** Отправляет порцию в темпе cardbot.reminders.rate и ждёт ответов; возвращает id доставленных. */
+    private List<Long> deliver(List<ReminderTarget> chunk) {
+        List<CompletableFuture<Long>> pending = new ArrayList<>(chunk.size());
+        for (ReminderTarget target : chunk) {
+            acquire();
+            pending.add(sendReminder(target.telegramId()).thenApply(ok -> ok ? target.userId() : null));
+        }
+        List<Long> delivered = new ArrayList<>(chunk.size());
+        for (CompletableFuture<Long> future : pending) {
+            Long userId = future.join();
+            if (userId != null) {
+                delivered.add(userId);
             }
         }
+        sentCounter.increment(delivered.size());
+        failedCounter.increment(chunk.size() - delivered.size());
+        return delivered;
+    }
+
+    private void acquire() {
+        long waitNanos;
+        while ((waitNanos = rate.tryAcquire(System.nanoTime())) > 0) {
+            LockSupport.parkNanos(waitNanos);
+        }
+    }
 
-        log.info("Отправлено напоминаний: {}", sent);
+    /**
+     * Фиксирует порцию: отметка доставленным и перенос напоминания всей порции в одной транзакции,
+     * если аренда задания всё ещё своя. Строку статистики мог одновременно создать {@link CardViewBuffer} — тогда порция фиксируется
+     * повторно, уже через UPDATE.
+     *
+     * @return сколько пользователей перенесено на следующее напоминание
+     * @throws JobLeases.LeaseLostException аренду взял другой экземпляр, порция не зафиксирована
+     */
+    int commitChunk(List<ReminderTarget> chunk, List<Long> delivered, Instant now, JobLeases.Lease lease) {
+        try {
+            return transactionTemplate.execute(status -> writeChunk(chunk, delivered, now, lease));
+        } catch (DataIntegrityViolationException e) {
+            return transactionTemplate.execute(status -> writeChunk(chunk, delivered, now, lease));
+        }
     }
 
-    private boolean sendReminder(User user) {
-        String chatId = user.getTelegramId().toString();
+    private int writeChunk(List<ReminderTarget> chunk, List<Long> delivered, Instant now, JobLeases.Lease lease) {
+        lease.fence();
+        if (!delivered.isEmpty() && learningStatsRepository.markReminded(delivered, now) < delivered.size()) {
+            OffsetDateTime timestamp = utc(now);
+            jdbcTemplate.batchUpdate(INSERT_MISSING_STATS, delivered.stream()
+                    .map(userId -> new Object[]{userId, timestamp, timestamp, timestamp, userId})
+                    .toList());
+        }
+        int[] advanced = jdbcTemplate.batchUpdate(ADVANCE_NEXT_REMINDER, chunk.stream()
+                .map(target -> new Object[]{
+                        utc(schedule.next(target.userId(), ReminderSchedule.zoneOf(target.timeZone()), target.reminderHour(), now)),
+                        target.userId(),
+                        utc(target.nextReminderAt())})
+                .toList());
+        return Arrays.stream(advanced).map(rows -> rows == Statement.SUCCESS_NO_INFO ? 1 : rows).sum();
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private CompletableFuture<Boolean> sendReminder(Long telegramId) {
+        String chatId = telegramId.toString();
         String text = "⏰ Время повторить слова! Нажмите кнопку ниже, чтобы начать.";
 
         var button = InlineKeyboardButton.builder()
                 .text("Учить")
-                .callbackData("REMIND_LEARN")
+                .callbackData(CallbackCodec.encode(CallbackAction.REMIND_LEARN))
                 .build();
 
-        try {
-            bot.execute(SendMessage.builder()
-                    .chatId(chatId)
-                    .text(text)
-                    .replyMarkup(InlineKeyboardMarkup.builder()
-                            .keyboardRow(List.of(button))
-                            .build())
-                    .build());
-            return true;
-        } catch (TelegramApiException e) {
-            log.warn("Не удалось отправить напоминание пользователю {}: {}", user.getTelegramId(), e.getMessage());
-            return false;
-        }
+        return outbound.send(SendMessage.builder()
+                        .chatId(chatId)
+                        .text(text)
+                        .replyMarkup(InlineKeyboardMarkup.builder()
+                                .keyboardRow(List.of(button))
+                                .build())
+                        .build())
+                .handle((message, e) -> {
+                    if (e != null) {
+                        log.warn("Не удалось отправить напоминание пользователю {}: {}", telegramId, e.getMessage());
+                        return false;
+                    }
+                    return true;
+                });
     }
 }
@@ -0,0 +1,18 @@
+package com.cardbot.service;
+
+/**
+ * Оценка ответа в интервальном повторении; quality — оценка SM-2 от 0 до 5.
+ * Порядковый номер записывается в callback data кнопок: новые значения — только в конец.
+ */
+public enum ReviewGrade {
+    AGAIN(1),
+    HARD(3),
+    GOOD(4),
+    EASY(5);
+
+    final int quality;
+
+    ReviewGrade(int quality) {
+        this.quality = quality;
+    }
+}
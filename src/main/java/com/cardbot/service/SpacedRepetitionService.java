@@ -0,0 +1,127 @@
+package com.cardbot.service;
+
+import com.cardbot.model.Card;
+import com.cardbot.model.CardReview;
+import com.cardbot.repository.CardRepository;
+import com.cardbot.repository.CardReviewRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Интервальное повторение по SM-2: очередь карточек по due_at и пересчёт интервала после оценки.
+ * <p>
+ * Следующая карточка — голова очереди, самая просроченная: одно чтение по индексу (user_id, due_at)
+ * или (user_id, set_id, due_at) и одно по первичному ключу карточки, независимо от размера колоды.
+ */
+@Service
+@RequiredArgsConstructor
+public class SpacedRepetitionService {
+
+    static final double INITIAL_EASE = 2.5;
+    static final double MIN_EASE = 1.3;
+    /** Через сколько вернуть карточку, которую не вспомнили. */
+    static final Duration RELEARN_DELAY = Duration.ofMinutes(10);
+
+    private final CardReviewRepository cardReviewRepository;
+    private final CardRepository cardRepository;
+
+    /** Ставит новую карточку в очередь: к повторению сразу, в порядке создания. */
+    @Transactional
+    public void track(Card card) {
+        cardReviewRepository.save(CardReview.builder()
+                .cardId(card.getId())
+                .userId(card.getUser().getId())
+                .setId(card.getCardSet() != null ? card.getCardSet().getId() : null)
+                .dueAt(card.getCreatedAt())
+                .ease(INITIAL_EASE)
+                .build());
+    }
+
+    @Transactional
+    public void moveToSet(Long cardId, Long setId) {
+        cardReviewRepository.updateSetId(cardId, setId);
+    }
+
+    @Transactional
+    public void forget(Long cardId) {
+        cardReviewRepository.deleteById(cardId);
+    }
+
+    /**
+     * Самая просроченная карточка; пусто, если карточек нет или ни одна ещё не подошла.
+     *
+     * @param setId null — все карточки, -1 — без набора
+     */
+    public Optional<Card> nextDue(Long userId, Long setId) {
+        return nextDueAfter(userId, setId, null);
+    }
+
+    /**
+     * Карточка, которая окажется головой очереди после оценки текущей: самая просроченная, кроме currentCardId.
+     * Любая оценка переносит текущую карточку в будущее, поэтому достаточно двух первых записей очереди.
+     */
+    public Optional<Card> nextDueAfter(Long userId, Long setId, Long currentCardId) {
+        List<CardReview> head;
+        if (setId == null) {
+            head = cardReviewRepository.findFirst2ByUserIdOrderByDueAtAsc(userId);
+        } else if (-1L == setId) {
+            head = cardReviewRepository.findFirst2ByUserIdAndSetIdIsNullOrderByDueAtAsc(userId);
+        } else {
+            head = cardReviewRepository.findFirst2ByUserIdAndSetIdOrderByDueAtAsc(userId, setId);
+        }
+        Instant now = Instant.now();
+        return head.stream()
+                .filter(review -> !Objects.equals(review.getCardId(), currentCardId))
+                .findFirst()
+                .filter(review -> !review.getDueAt().isAfter(now))
+                .flatMap(review -> cardRepository.findById(review.getCardId()));
+    }
+
+    /** Записывает оценку и переносит карточку в очереди; пусто, если карточки нет или она чужая. */
+    @Transactional
+    public Optional<CardReview> grade(Long userId, Long cardId, ReviewGrade grade) {
+        return cardReviewRepository.findById(cardId)
+                .filter(review -> review.getUserId().equals(userId))
+                .map(review -> {
+                    schedule(review, grade, Instant.now());
+                    return review;
+                });
+    }
+
+    /**
+     * SM-2: при оценке ниже 3 повторения начинаются заново и карточка возвращается через {@link #RELEARN_DELAY};
+     * иначе интервал 1 день, 6 дней, затем предыдущий интервал × ease. Ease меняется на каждой оценке
+     * и не опускается ниже {@link #MIN_EASE}.
+     */
+    static void schedule(CardReview review, ReviewGrade grade, Instant now) {
+        int q = grade.quality;
+        review.setEase(Math.max(MIN_EASE, review.getEase() + 0.1 - (5 - q) * (0.08 + (5 - q) * 0.02)));
+        review.setLastReviewedAt(now);
+        if (q < 3) {
+            review.setRepetitions(0);
+            review.setLapses(review.getLapses() + 1);
+            review.setIntervalDays(0);
+            review.setDueAt(now.plus(RELEARN_DELAY));
+            return;
+        }
+        int repetitions = review.getRepetitions() + 1;
+        int interval;
+        if (repetitions == 1) {
+            interval = 1;
+        } else if (repetitions == 2) {
+            interval = 6;
+        } else {
+            interval = (int) Math.round(Math.max(1, review.getIntervalDays()) * review.getEase());
+        }
+        review.setRepetitions(repetitions);
+        review.setIntervalDays(interval);
+        review.setDueAt(now.plus(Duration.ofDays(interval)));
+    }
+}
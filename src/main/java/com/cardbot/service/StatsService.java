@@ -1,108 +1,139 @@
 package com.cardbot.service;
 
-import com.cardbot.model.Card;
+import com.cardbot.model.CardSnapshot;
+import com.cardbot.model.LearningStats;
 import com.cardbot.model.User;
-import com.cardbot.repository.CardViewRepository;
+import com.cardbot.repository.CardViewDayRepository;
+import com.cardbot.repository.CardViewTotalRepository;
+import com.cardbot.repository.DailyActivityRepository;
 import com.cardbot.repository.LearningStatsRepository;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.time.Instant;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.ZoneOffset;
-import java.time.temporal.ChronoUnit;
-import java.util.Comparator;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
-
+import java.util.Optional;
+
+/**
+ * Статистика для /stats. Серия дней хранится в learning_stats и продлевается при записи просмотров
+ * ({@link CardViewBuffer}); счётчики за сегодня и неделю (7 календарных дней, включая сегодня) читаются
+ * из дневных сводок daily_activity и card_view_days, самые просматриваемые карточки — из итогов card_view_totals.
+ * Дни считаются в cardbot.stats.zone.
+ * Сводки переживают удаление старых секций card_views, см. {@link CardViewRetentionJob}.
+ * <p>
+ * Перед запросами стоит кэш снимков по пользователю. Снимок сбрасывается после коммита изменений,
+ * от которых зависит статистика ({@link UserStatsChangedEvent}), и не используется в следующий день:
+ * «сегодня», «за неделю» и серия считаются от текущей даты.
+ * <p>
+ * События изменений публикуются только в своём процессе, поэтому кэш не видит просмотров и правок карточек,
+ * записанных другим экземпляром. При telegram.bot.sessions.backend=database, когда экземпляров несколько,
+ * кэш отключён и каждый /stats читает сводки заново.
+ * Метрики: cache.gets{cache=userStats,result=hit|miss}, cache.size, cache.evictions.
+ */
 @Service
-@RequiredArgsConstructor
 public class StatsService {
 
-    private static final int STREAK_LOOKBACK_DAYS = 365;
     private static final int TOP_CARDS_LIMIT = 5;
+    private static final int WEEK_DAYS = 7;
 
     private final CardService cardService;
     private final LearningStatsRepository learningStatsRepository;
-    private final CardViewRepository cardViewRepository;
+    private final DailyActivityRepository dailyActivityRepository;
+    private final CardViewDayRepository cardViewDayRepository;
+    private final CardViewTotalRepository cardViewTotalRepository;
+    private final ZoneId zone;
+    private final Cache<Long, UserStats> snapshots;
+    private final boolean cacheEnabled;
+
+    public StatsService(CardService cardService,
+                        LearningStatsRepository learningStatsRepository,
+                        DailyActivityRepository dailyActivityRepository,
+                        CardViewDayRepository cardViewDayRepository,
+                        CardViewTotalRepository cardViewTotalRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${cardbot.stats.zone:UTC}") ZoneId zone,
+                        @Value("${cardbot.stats.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${cardbot.stats.cache.expire-after-write:10m}") Duration expireAfterWrite,
+                        @Value("${telegram.bot.sessions.backend:memory}") String sessionsBackend) {
+        this.cardService = cardService;
+        this.learningStatsRepository = learningStatsRepository;
+        this.dailyActivityRepository = dailyActivityRepository;
+        this.cardViewDayRepository = cardViewDayRepository;
+        this.cardViewTotalRepository = cardViewTotalRepository;
+        this.zone = zone;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "userStats");
+        this.cacheEnabled = !"database".equalsIgnoreCase(sessionsBackend);
+    }
 
     public UserStats getStats(User user) {
-        long totalCards = cardService.countByUser(user);
-        long cardsViewed = learningStatsRepository.findByUser_Id(user.getId())
-                .map(s -> s.getCardsViewedTotal())
-                .orElse(0L);
-
-        Instant weekAgo = Instant.now().minus(7, ChronoUnit.DAYS);
-        Instant dayStart = Instant.now().truncatedTo(ChronoUnit.DAYS);
-        Instant streakSince = Instant.now().minus(STREAK_LOOKBACK_DAYS, ChronoUnit.DAYS);
-
-        List<Instant> viewedAtList = cardViewRepository.findViewedAtByUserIdAndViewedAtSince(user.getId(), streakSince);
-        Set<LocalDate> distinctDates = viewedAtList.stream()
-                .map(i -> i.atZone(ZoneOffset.UTC).toLocalDate())
-                .collect(Collectors.toSet());
-
-        long distinctCardsToday = cardViewRepository.findCardIdsByUserIdAndViewedAtSince(user.getId(), dayStart)
-                .stream()
-                .distinct()
-                .count();
-        long distinctCardsThisWeek = cardViewRepository.findCardIdsByUserIdAndViewedAtSince(user.getId(), weekAgo)
-                .stream()
-                .distinct()
-                .count();
+        LocalDate today = LocalDate.now(zone);
+        if (!cacheEnabled) {
+            return load(user, today);
+        }
+        UserStats cached = snapshots.getIfPresent(user.getId());
+        if (cached != null && cached.day().equals(today)) {
+            return cached;
+        }
+        UserStats stats = load(user, today);
+        snapshots.put(user.getId(), stats);
+        return stats;
+    }
 
-        int streak = computeStreak(distinctDates);
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatsChanged(UserStatsChangedEvent event) {
+        snapshots.invalidate(event.userId());
+    }
 
-        List<Card> topViewed = cardViewRepository.findCardViewCountsByUserId(user.getId(), PageRequest.of(0, TOP_CARDS_LIMIT))
-                .stream()
-                .map(row -> (Long) row[0])
-                .flatMap(cardId -> cardService.findById(cardId).stream())
-                .toList();
+    private UserStats load(User user, LocalDate today) {
+        long totalCards = cardService.countByUser(user);
+        Optional<LearningStats> learningStats = learningStatsRepository.findByUser_Id(user.getId());
+        long cardsViewed = learningStats.map(LearningStats::getCardsViewedTotal).orElse(0L);
+        int streak = learningStats.map(s -> currentStreak(s, today)).orElse(0);
+        int longestStreak = learningStats.map(LearningStats::getLongestStreak).orElse(0);
+        long distinctCardsToday = dailyActivityRepository.findDistinctCards(user.getId(), today).orElse(0);
+        long distinctCardsThisWeek = cardViewDayRepository.countDistinctCardsSince(user.getId(), today.minusDays(WEEK_DAYS - 1));
+        List<CardSnapshot> topViewed = cardViewTotalRepository.findTopViewed(user.getId(), PageRequest.of(0, TOP_CARDS_LIMIT));
 
         return new UserStats(
+                today,
                 totalCards,
                 cardsViewed,
                 streak,
+                longestStreak,
                 distinctCardsToday,
                 distinctCardsThisWeek,
                 topViewed
         );
     }
 
-    private int computeStreak(Set<LocalDate> distinctDates) {
-        if (distinctDates.isEmpty()) {
-            return 0;
-        }
-        List<LocalDate> sorted = distinctDates.stream()
-                .sorted(Comparator.reverseOrder())
-                .toList();
-        LocalDate today = LocalDate.now(ZoneOffset.UTC);
-        LocalDate mostRecent = sorted.get(0);
-
-        if (mostRecent.isBefore(today.minusDays(1))) {
-            return 0;
-        }
-
-        int count = 0;
-        LocalDate expected = mostRecent;
-        for (LocalDate d : sorted) {
-            if (d.equals(expected)) {
-                count++;
-                expected = expected.minusDays(1);
-            } else if (d.isBefore(expected)) {
-                break;
-            }
-        }
-        return count;
+    /** Сохранённая серия ещё идёт, если последний активный день — сегодня или вчера. */
+    static int currentStreak(LearningStats stats, LocalDate today) {
+        LocalDate lastActiveDay = stats.getLastActiveDay();
+        return lastActiveDay != null && !lastActiveDay.isBefore(today.minusDays(1)) ? stats.getCurrentStreak() : 0;
     }
 
+    /** @param day дата, на которую посчитан снимок */
     public record UserStats(
+            LocalDate day,
             long totalCards,
             long cardsViewedTotal,
             int streak,
+            int longestStreak,
             long distinctCardsToday,
             long distinctCardsThisWeek,
-            List<Card> topViewedCards
+            List<CardSnapshot> topViewedCards
     ) {}
 }
@@ -2,19 +2,76 @@ package com.cardbot.service;
 
 import com.cardbot.model.User;
 import com.cardbot.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Пользователи бота.
+ * <p>
+ * getOrCreate вызывается на каждый update, поэтому перед БД стоит кэш telegramId → User
+ * (ограничен по размеру, запись вытесняется после простоя). В кэше лежит отсоединённая сущность —
+ * та же, что раньше возвращалась после завершения транзакции. Новый пользователь попадает в кэш
+ * только после коммита: при откате в кэше не остаётся записи, которой нет в БД. Изменённый пользователь
+ * (расписание напоминаний) так же заменяет запись в кэше после коммита.
+ * <p>
+ * Кэш локален для процесса и не видит изменений, сделанных другим экземпляром (расписание напоминаний,
+ * число карточек). Поэтому при telegram.bot.sessions.backend=database, когда экземпляров несколько,
+ * он отключён: каждый update читает пользователя из БД одним запросом по индексу.
+ * Метрики: cache.gets{cache=users,result=hit|miss}, cache.size, cache.evictions.
+ */
 @Service
-@RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
     private final DefaultTopicsService defaultTopicsService;
+    private final ReminderSchedule reminderSchedule;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<Long, User> users;
+    private final boolean cacheEnabled;
+
+    public UserService(UserRepository userRepository,
+                       DefaultTopicsService defaultTopicsService,
+                       ReminderSchedule reminderSchedule,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${cardbot.users.cache.maximum-size:10000}") long maximumSize,
+                       @Value("${cardbot.users.cache.expire-after-access:30m}") Duration expireAfterAccess,
+                       @Value("${telegram.bot.sessions.backend:memory}") String sessionsBackend) {
+        this.userRepository = userRepository;
+        this.defaultTopicsService = defaultTopicsService;
+        this.reminderSchedule = reminderSchedule;
+        this.transactionTemplate = transactionTemplate;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+        this.cacheEnabled = !"database".equalsIgnoreCase(sessionsBackend);
+    }
 
-    @Transactional
     public User getOrCreate(Long telegramId, String username) {
+        User cached = cacheEnabled ? users.getIfPresent(telegramId) : null;
+        if (cached != null) {
+            return cached;
+        }
+        User user = transactionTemplate.execute(status -> findOrCreate(telegramId, username));
+        cacheAfterCommit(user);
+        return user;
+    }
+
+    private User findOrCreate(Long telegramId, String username) {
         return userRepository.findByTelegramId(telegramId)
                 .orElseGet(() -> {
                     User user = User.builder()
@@ -22,8 +79,58 @@ public class UserService {
                             .username(username)
                             .build();
                     user = userRepository.save(user);
+                    user.setNextReminderAt(reminderSchedule.next(user.getId(),
+                            ReminderSchedule.zoneOf(user.getTimeZone()), user.getReminderHour(), Instant.now()));
                     defaultTopicsService.createDefaultSetsForUser(user);
                     return user;
                 });
     }
+
+    /**
+     * Включает напоминания в hour по местному времени zone; null — оставить прежнее значение.
+     * Следующее напоминание — ближайшее такое время.
+     */
+    public User updateReminder(User user, ZoneId zone, Integer hour) {
+        User updated = transactionTemplate.execute(status -> {
+            User fresh = userRepository.findById(user.getId()).orElseThrow();
+            if (zone != null) {
+                fresh.setTimeZone(zone.getId());
+            }
+            if (hour != null) {
+                fresh.setReminderHour(hour);
+            }
+            fresh.setNextReminderAt(reminderSchedule.next(fresh.getId(),
+                    ReminderSchedule.zoneOf(fresh.getTimeZone()), fresh.getReminderHour(), Instant.now()));
+            return fresh;
+        });
+        cacheAfterCommit(updated);
+        return updated;
+    }
+
+    public User disableReminders(User user) {
+        User updated = transactionTemplate.execute(status -> {
+            User fresh = userRepository.findById(user.getId()).orElseThrow();
+            fresh.setNextReminderAt(null);
+            return fresh;
+        });
+        cacheAfterCommit(updated);
+        return updated;
+    }
+
+    /** Если вызов пришёл внутри внешней транзакции, кэшируем только после её коммита. */
+    private void cacheAfterCommit(User user) {
+        if (!cacheEnabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            users.put(user.getTelegramId(), user);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                users.put(user.getTelegramId(), user);
+            }
+        });
+    }
 }
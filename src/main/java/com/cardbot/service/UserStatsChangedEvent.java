@@ -0,0 +1,8 @@
+package com.cardbot.service;
+
+/**
+ * Данные статистики пользователя изменились: записаны просмотры, карточка создана, изменена или удалена.
+ * Сбрасывает снимок в кэше {@link StatsService}.
+ */
+public record UserStatsChangedEvent(Long userId) {
+}
@@ -0,0 +1,12 @@
+-- Состояние диалога (UserState, LearningSession) для нескольких экземпляров бота.
+-- payload — компактное двоичное представление (см. SessionCodec), version — для оптимистичной записи.
+CREATE TABLE session_state (
+    store       VARCHAR(32) NOT NULL,
+    user_id     BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    payload     BYTEA NOT NULL,
+    version     BIGINT NOT NULL,
+    updated_at  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (store, user_id)
+);
+
+CREATE INDEX idx_session_state_store_updated ON session_state(store, updated_at);
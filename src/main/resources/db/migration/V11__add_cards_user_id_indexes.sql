@@ -0,0 +1,6 @@
+-- Выбор случайной карточки: MIN/MAX(id) и проверка id по индексу вместо ORDER BY RANDOM().
+-- (user_id, id) заменяет idx_cards_user_id; NULL в set_id тоже индексируется, поэтому
+-- второй индекс покрывает и «без набора».
+CREATE INDEX idx_cards_user_id_id ON cards(user_id, id);
+CREATE INDEX idx_cards_user_set_id ON cards(user_id, set_id, id);
+DROP INDEX idx_cards_user_id;
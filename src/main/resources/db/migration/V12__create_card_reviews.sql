@@ -0,0 +1,20 @@
+-- Интервальное повторение (SM-2): состояние каждой карточки и очередь по due_at.
+-- set_id повторяет cards.set_id, чтобы очередь набора тоже читалась по индексу.
+CREATE TABLE card_reviews (
+    card_id           BIGINT PRIMARY KEY REFERENCES cards(id) ON DELETE CASCADE,
+    user_id           BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    set_id            BIGINT REFERENCES card_sets(id) ON DELETE SET NULL,
+    due_at            TIMESTAMP WITH TIME ZONE NOT NULL,
+    interval_days     INT NOT NULL DEFAULT 0,
+    ease              DOUBLE PRECISION NOT NULL DEFAULT 2.5,
+    repetitions       INT NOT NULL DEFAULT 0,
+    lapses            INT NOT NULL DEFAULT 0,
+    last_reviewed_at  TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX idx_card_reviews_user_due ON card_reviews(user_id, due_at);
+CREATE INDEX idx_card_reviews_user_set_due ON card_reviews(user_id, set_id, due_at);
+
+-- Существующие карточки — новые для повторения, в очереди по времени создания
+INSERT INTO card_reviews (card_id, user_id, set_id, due_at)
+SELECT id, user_id, set_id, created_at FROM cards;
@@ -0,0 +1,32 @@
+-- Сводки просмотров по дням (UTC) для /stats вместо чтения card_views за год.
+-- card_view_days — просмотры карточки за день; daily_activity — итог дня пользователя:
+-- все просмотры и число разных карточек. Обе пополняются при записи просмотров.
+CREATE TABLE card_view_days (
+    user_id        BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    activity_date  DATE NOT NULL,
+    card_id        BIGINT NOT NULL REFERENCES cards(id) ON DELETE CASCADE,
+    views          INT NOT NULL,
+    PRIMARY KEY (user_id, activity_date, card_id)
+);
+
+CREATE INDEX idx_card_view_days_card_id ON card_view_days(card_id);
+
+-- Без ссылки на cards: удаление карточки не стирает прошлые дни активности
+CREATE TABLE daily_activity (
+    user_id         BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    activity_date   DATE NOT NULL,
+    views           INT NOT NULL,
+    distinct_cards  INT NOT NULL,
+    PRIMARY KEY (user_id, activity_date)
+);
+
+-- Накопленные просмотры
+INSERT INTO card_view_days (user_id, activity_date, card_id, views)
+SELECT user_id, CAST(viewed_at AT TIME ZONE 'UTC' AS DATE), card_id, COUNT(*)
+FROM card_views
+GROUP BY user_id, CAST(viewed_at AT TIME ZONE 'UTC' AS DATE), card_id;
+
+INSERT INTO daily_activity (user_id, activity_date, views, distinct_cards)
+SELECT user_id, activity_date, SUM(views), COUNT(*)
+FROM card_view_days
+GROUP BY user_id, activity_date;
@@ -0,0 +1,42 @@
+-- card_views секционируется по месяцам viewed_at: старые месяцы удаляются целиком (DROP TABLE вместо DELETE
+-- и вакуума), а статистика за них остаётся в card_view_days и daily_activity (V13).
+-- Секции на будущие месяцы создаёт и старые удаляет CardViewRetentionJob; DEFAULT принимает строки вне секций.
+ALTER TABLE card_views RENAME TO card_views_unpartitioned;
+ALTER TABLE card_views_unpartitioned RENAME CONSTRAINT card_views_pkey TO card_views_unpartitioned_pkey;
+
+CREATE TABLE card_views (
+    id          BIGINT NOT NULL DEFAULT nextval('card_views_id_seq'),
+    user_id     BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    card_id     BIGINT NOT NULL REFERENCES cards(id) ON DELETE CASCADE,
+    viewed_at   TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, viewed_at)
+) PARTITION BY RANGE (viewed_at);
+
+CREATE TABLE card_views_default PARTITION OF card_views DEFAULT;
+
+-- Секции от месяца самого старого просмотра до следующего за текущим, границы месяцев в UTC
+DO $$
+DECLARE
+    month_start DATE := date_trunc('month', COALESCE(
+            (SELECT min(viewed_at) FROM card_views_unpartitioned), CURRENT_TIMESTAMP) AT TIME ZONE 'UTC');
+    last_month DATE := date_trunc('month', CURRENT_TIMESTAMP AT TIME ZONE 'UTC') + INTERVAL '1 month';
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format(
+                'CREATE TABLE %I PARTITION OF card_views FOR VALUES FROM (%L) TO (%L)',
+                'card_views_' || to_char(month_start, '"y"YYYY"m"MM'),
+                month_start::timestamp AT TIME ZONE 'UTC',
+                (month_start + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO card_views (id, user_id, card_id, viewed_at)
+SELECT id, user_id, card_id, viewed_at FROM card_views_unpartitioned;
+
+ALTER SEQUENCE card_views_id_seq OWNED BY card_views.id;
+DROP TABLE card_views_unpartitioned;
+
+-- (user_id, viewed_at) заменяет прежние индексы по user_id и viewed_at; card_id нужен каскадному удалению карточек
+CREATE INDEX idx_card_views_user_viewed ON card_views(user_id, viewed_at);
+CREATE INDEX idx_card_views_card_id ON card_views(card_id);
@@ -0,0 +1,27 @@
+-- Серия дней хранится в learning_stats и обновляется при записи просмотров, а не пересчитывается по истории.
+-- current_streak — серия, закончившаяся в last_active_day; longest_streak — самая длинная за всё время.
+ALTER TABLE learning_stats ADD COLUMN current_streak INT NOT NULL DEFAULT 0;
+ALTER TABLE learning_stats ADD COLUMN longest_streak INT NOT NULL DEFAULT 0;
+ALTER TABLE learning_stats ADD COLUMN last_active_day DATE;
+
+-- Заполнение по daily_activity: в отличие от card_views, она хранит и дни удалённых секций (V14).
+-- Дни в ней посчитаны по UTC; при другом cardbot.stats.zone серии выравниваются с первыми новыми просмотрами.
+WITH days AS (
+    SELECT user_id, activity_date,
+           activity_date - CAST(ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY activity_date) AS INT) AS run
+    FROM daily_activity
+), runs AS (
+    SELECT user_id, MAX(activity_date) AS last_day, COUNT(*) AS length
+    FROM days
+    GROUP BY user_id, run
+), totals AS (
+    SELECT user_id, MAX(length) AS longest, MAX(last_day) AS last_day
+    FROM runs
+    GROUP BY user_id
+)
+UPDATE learning_stats s
+SET longest_streak  = t.longest,
+    last_active_day = t.last_day,
+    current_streak  = (SELECT r.length FROM runs r WHERE r.user_id = t.user_id AND r.last_day = t.last_day)
+FROM totals t
+WHERE s.user_id = t.user_id;
@@ -0,0 +1,5 @@
+-- Выборка получателей напоминания (UserRepository.findReminderTargets): NOT EXISTS по статистике
+-- проверяется только по индексу, без чтения строк learning_stats. Заменяет idx_learning_stats_user_id,
+-- который дублировал индекс ограничения UNIQUE(user_id). Наличие карточек проверяет idx_cards_user_id_id (V11).
+CREATE INDEX idx_learning_stats_user_activity ON learning_stats(user_id) INCLUDE (last_learned_at, last_reminder_at);
+DROP INDEX idx_learning_stats_user_id;
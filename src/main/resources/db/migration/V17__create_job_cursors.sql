@@ -0,0 +1,11 @@
+-- Позиция пакетных заданий, чтобы после перезапуска продолжить с места остановки.
+-- position — последний обработанный ключ (для напоминаний — users.id), run_day — день прогона,
+-- finished_at пуст, пока прогон не дошёл до конца.
+CREATE TABLE job_cursors (
+    job_name     VARCHAR(64) PRIMARY KEY,
+    run_day      DATE NOT NULL,
+    position     BIGINT NOT NULL,
+    started_at   TIMESTAMP WITH TIME ZONE NOT NULL,
+    updated_at   TIMESTAMP WITH TIME ZONE NOT NULL,
+    finished_at  TIMESTAMP WITH TIME ZONE
+);
@@ -0,0 +1,16 @@
+-- Напоминания по местному времени: пояс, час и момент следующего напоминания.
+-- Каждую минуту ReminderService выбирает по индексу пользователей с next_reminder_at <= now()
+-- и переносит их на следующий день; NULL — напоминания выключены.
+ALTER TABLE users ADD COLUMN time_zone VARCHAR(64) NOT NULL DEFAULT 'UTC';
+ALTER TABLE users ADD COLUMN reminder_hour INTEGER NOT NULL DEFAULT 10;
+ALTER TABLE users ADD COLUMN next_reminder_at TIMESTAMP WITH TIME ZONE;
+
+-- Ближайшие 10:00 UTC со сдвигом id % 15 минут, как в ReminderSchedule со spread-minutes по умолчанию
+UPDATE users SET next_reminder_at = date_trunc('day', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+    + INTERVAL '10 hours' + (id % 15) * INTERVAL '1 minute';
+UPDATE users SET next_reminder_at = next_reminder_at + INTERVAL '1 day' WHERE next_reminder_at <= now();
+
+CREATE INDEX idx_users_next_reminder_at ON users(next_reminder_at) WHERE next_reminder_at IS NOT NULL;
+
+-- Позиция ежедневного прогона больше не нужна: прогресс хранится в next_reminder_at каждого пользователя
+DROP TABLE job_cursors;
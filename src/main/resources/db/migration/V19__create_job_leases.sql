@@ -0,0 +1,10 @@
+-- Аренда пакетных заданий между экземплярами бота (JobLeases): задание выполняет тот, кто взял аренду.
+-- fencing_token растёт при каждой выдаче; запись результатов проверяет, что токен не сменился.
+-- owner — экземпляр, взявший аренду последним; после освобождения строка остаётся с expires_at в прошлом.
+CREATE TABLE job_leases (
+    job_name       VARCHAR(64) PRIMARY KEY,
+    owner          VARCHAR(128),
+    fencing_token  BIGINT NOT NULL,
+    acquired_at    TIMESTAMP WITH TIME ZONE,
+    expires_at     TIMESTAMP WITH TIME ZONE NOT NULL
+);
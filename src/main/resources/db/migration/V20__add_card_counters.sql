@@ -0,0 +1,13 @@
+-- Число карточек в наборе и у пользователя: меню /learn, /list и /sets читают их одним запросом
+-- вместо COUNT по каждому набору. Поддерживаются CardService в транзакции создания, удаления
+-- и переноса карточки. При удалении набора карточки остаются у пользователя (set_id = NULL).
+ALTER TABLE card_sets ADD COLUMN card_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN card_count INTEGER NOT NULL DEFAULT 0;
+
+UPDATE card_sets s SET card_count = c.cnt
+FROM (SELECT set_id, COUNT(*) AS cnt FROM cards WHERE set_id IS NOT NULL GROUP BY set_id) c
+WHERE c.set_id = s.id;
+
+UPDATE users u SET card_count = c.cnt
+FROM (SELECT user_id, COUNT(*) AS cnt FROM cards GROUP BY user_id) c
+WHERE c.user_id = u.id;
@@ -0,0 +1,15 @@
+-- Номер карточки среди карточек пользователя, 1..users.card_count без пропусков. Случайная карточка
+-- выбирается по случайному номеру одним поиском по индексу, как бы ни были разрежены id пользователя
+-- (шаблонные наборы при регистрации, потом карточки по одной вперемешку с чужими). CardService назначает
+-- номер при создании под блокировкой строки users, при удалении на освободившийся номер переносит последний.
+ALTER TABLE cards ADD COLUMN user_ordinal INTEGER;
+
+UPDATE cards c SET user_ordinal = o.rn
+FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY id) AS rn FROM cards) o
+WHERE o.id = c.id;
+
+-- номера и счётчик должны сходиться: последний номер равен users.card_count
+UPDATE users u SET card_count = (SELECT COUNT(*) FROM cards c WHERE c.user_id = u.id);
+
+ALTER TABLE cards ALTER COLUMN user_ordinal SET NOT NULL;
+CREATE UNIQUE INDEX idx_cards_user_ordinal ON cards(user_id, user_ordinal);
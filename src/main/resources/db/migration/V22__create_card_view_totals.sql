@@ -0,0 +1,15 @@
+-- Просмотры карточки за всё время: «самые просматриваемые» в /stats читаются по индексу вместо SUM
+-- по всем дням card_view_days. Пополняется CardViewBuffer вместе с card_view_days и сводкой секций
+-- в CardViewRetentionJob — ровно на те просмотры, что легли в card_view_days.
+CREATE TABLE card_view_totals (
+    card_id  BIGINT PRIMARY KEY REFERENCES cards(id) ON DELETE CASCADE,
+    user_id  BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    views    BIGINT NOT NULL
+);
+
+CREATE INDEX idx_card_view_totals_user_views ON card_view_totals(user_id, views DESC, card_id);
+
+INSERT INTO card_view_totals (card_id, user_id, views)
+SELECT card_id, user_id, SUM(views)
+FROM card_view_days
+GROUP BY card_id, user_id;
@@ -0,0 +1,75 @@
+package com.cardbot.bot;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaffeineSessionStoreTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<Long> evicted = new ArrayList<>();
+    private final List<SessionStore.EvictionCause> causes = new ArrayList<>();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private CaffeineSessionStore<String> store(long maximumSize) {
+        return new CaffeineSessionStore<>("test", Duration.ofMinutes(30), maximumSize, s -> 10L * s.length(),
+                (userId, value, cause) -> {
+                    evicted.add(userId);
+                    causes.add(cause);
+                }, registry,
+                nanos::get, Scheduler.disabledScheduler(), Runnable::run);
+    }
+
+    @Test
+    void expiresIdleEntriesAndNotifiesListener() {
+        CaffeineSessionStore<String> store = store(100);
+        store.put(1L, "a");
+        store.put(2L, "b");
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(20));
+        assertThat(store.get(2L)).isEqualTo("b");
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(20));
+        store.cleanUp();
+
+        assertThat(store.get(1L)).isNull();
+        assertThat(store.get(2L)).isEqualTo("b");
+        assertThat(evicted).containsExactly(1L);
+        assertThat(causes).containsExactly(SessionStore.EvictionCause.EXPIRED);
+        assertThat(registry.counter("cardbot.sessions.evicted", "store", "test", "cause", "expired").count()).isEqualTo(1);
+    }
+
+    @Test
+    void explicitRemoveDoesNotNotify() {
+        CaffeineSessionStore<String> store = store(100);
+        store.put(1L, "a");
+        store.remove(1L);
+        store.cleanUp();
+
+        assertThat(store.get(1L)).isNull();
+        assertThat(evicted).isEmpty();
+    }
+
+    @Test
+    void boundsEntryCount() {
+        CaffeineSessionStore<String> store = store(10);
+        for (long i = 0; i < 50; i++) {
+            store.put(i, "value");
+        }
+        store.cleanUp();
+
+        assertThat(store.size()).isLessThanOrEqualTo(10);
+        assertThat(evicted).hasSize(40);
+        assertThat(causes).containsOnly(SessionStore.EvictionCause.SIZE);
+        assertThat(registry.get("cardbot.sessions.resident").gauge().value()).isEqualTo(store.size());
+        assertThat(registry.get("cardbot.sessions.estimated.bytes").gauge().value()).isEqualTo(50.0 * store.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.cardbot.bot;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CallbackCodecTest {
+
+    @Test
+    void roundTripsEveryAction() {
+        for (CallbackAction action : CallbackAction.values()) {
+            long[] args = new long[action.args.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = action.args[i].max;
+            }
+            String encoded = CallbackCodec.encode(action, args);
+
+            assertThat(encoded.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(64);
+            assertThat(CallbackCodec.decode(encoded)).contains(new CallbackData(action, args));
+        }
+    }
+
+    @Test
+    void encodesNegativeSetChoice() {
+        String encoded = CallbackCodec.encode(CallbackAction.MOVE_TO, 42, CallbackCodec.SET_NONE);
+
+        assertThat(CallbackCodec.decode(encoded))
+                .contains(new CallbackData(CallbackAction.MOVE_TO, new long[]{42, CallbackCodec.SET_NONE}));
+    }
+
+    @Test
+    void decodesLegacyStrings() {
+        assertThat(CallbackCodec.decode("SHOW:17")).contains(new CallbackData(CallbackAction.SHOW, new long[]{17}));
+        assertThat(CallbackCodec.decode("NEXT")).contains(new CallbackData(CallbackAction.NEXT, new long[0]));
+        assertThat(CallbackCodec.decode("REMIND_LEARN")).contains(new CallbackData(CallbackAction.REMIND_LEARN, new long[0]));
+        assertThat(CallbackCodec.decode("LEARN_MODE:NONE:RU_EN:RANDOM:"))
+                .contains(new CallbackData(CallbackAction.LEARN_MODE, new long[]{CallbackCodec.SET_NONE, 1, 0, 0}));
+        assertThat(CallbackCodec.decode("LEARN_INPUT:5:EN_RU:20"))
+                .contains(new CallbackData(CallbackAction.LEARN_INPUT, new long[]{5, 0, 20}));
+        assertThat(CallbackCodec.decode("LIST:3")).contains(new CallbackData(CallbackAction.LIST, new long[]{CallbackCodec.SET_ALL, 3}));
+        assertThat(CallbackCodec.decode("LIST_SET:7:2")).contains(new CallbackData(CallbackAction.LIST, new long[]{7, 2}));
+        assertThat(CallbackCodec.decode("MOVETO:9:NONE"))
+                .contains(new CallbackData(CallbackAction.MOVE_TO, new long[]{9, CallbackCodec.SET_NONE}));
+        assertThat(CallbackCodec.decode("DELSETYES:4")).contains(new CallbackData(CallbackAction.DELETE_SET_CONFIRM, new long[]{4}));
+    }
+
+    @Test
+    void rejectsMalformedData() {
+        Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+
+        assertThat(CallbackCodec.decode(null)).isEmpty();
+        assertThat(CallbackCodec.decode("")).isEmpty();
+        assertThat(CallbackCodec.decode("!!!")).isEmpty();
+        assertThat(CallbackCodec.decode("SHOW:abc")).isEmpty();
+        assertThat(CallbackCodec.decode("SHOW:-5")).isEmpty();
+        assertThat(CallbackCodec.decode("LEARN_MODE:ALL:XX:RANDOM:")).isEmpty();
+        // неизвестная версия
+        assertThat(CallbackCodec.decode(base64.encodeToString(new byte[]{2, 2}))).isEmpty();
+        // неизвестное действие
+        assertThat(CallbackCodec.decode(base64.encodeToString(new byte[]{1, 99}))).isEmpty();
+        // оборванный varint и лишние байты
+        assertThat(CallbackCodec.decode(base64.encodeToString(new byte[]{1, 1, (byte) 0x80}))).isEmpty();
+        assertThat(CallbackCodec.decode(base64.encodeToString(new byte[]{1, 2, 0}))).isEmpty();
+        // id должен быть положительным
+        assertThat(CallbackCodec.decode(CallbackCodec.encode(CallbackAction.SHOW, 0))).isEmpty();
+    }
+
+    @Test
+    void encodeChecksArgumentCount() {
+        assertThatThrownBy(() -> CallbackCodec.encode(CallbackAction.SHOW))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
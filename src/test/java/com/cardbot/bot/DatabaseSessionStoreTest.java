@@ -0,0 +1,107 @@
+package com.cardbot.bot;
+
+import com.cardbot.repository.SessionStateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DatabaseSessionStoreTest {
+
+    @Autowired
+    private SessionStateRepository repository;
+
+    private final List<Long> evicted = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    /** Отдельный экземпляр хранилища — как на другом экземпляре бота, со своим ближним кэшем. */
+    private DatabaseSessionStore<LearningSession> node(Duration idleTimeout) {
+        return new DatabaseSessionStore<>("learningSession", idleTimeout, 100, LearningSession::estimatedBytes,
+                LearningSessionCodec.INSTANCE, (userId, session, cause) -> evicted.add(userId),
+                repository, new SimpleMeterRegistry());
+    }
+
+    private static LearningSession session(int goal) {
+        return LearningSession.create(null, LearningSession.Direction.EN_RU, LearningSession.Order.RANDOM,
+                null, goal);
+    }
+
+    @Test
+    void changesOnOneNodeAreVisibleOnAnother() {
+        DatabaseSessionStore<LearningSession> first = node(Duration.ofMinutes(30));
+        DatabaseSessionStore<LearningSession> second = node(Duration.ofMinutes(30));
+
+        first.put(1L, session(10));
+        first.flush();
+        LearningSession onSecond = second.get(1L);
+        onSecond.incrementViewedCount();
+        second.flush();
+
+        assertThat(first.get(1L).getViewedCount()).isEqualTo(1);
+        first.flush();
+        first.remove(1L);
+        first.flush();
+        assertThat(second.get(1L)).isNull();
+    }
+
+    @Test
+    void concurrentChangeFromAnotherNodeIsRejected() {
+        DatabaseSessionStore<LearningSession> first = node(Duration.ofMinutes(30));
+        DatabaseSessionStore<LearningSession> second = node(Duration.ofMinutes(30));
+        first.put(1L, session(10));
+        first.flush();
+
+        LearningSession a = first.get(1L);
+        LearningSession b = second.get(1L);
+        a.incrementViewedCount();
+        b.incrementViewedCount();
+        b.incrementViewedCount();
+        second.flush();
+        first.flush();
+
+        assertThat(first.get(1L).getViewedCount()).isEqualTo(2);
+        first.flush();
+    }
+
+    @Test
+    void discardDropsInPlaceChanges() {
+        DatabaseSessionStore<LearningSession> store = node(Duration.ofMinutes(30));
+        store.put(1L, session(10));
+        store.flush();
+
+        store.get(1L).incrementViewedCount();
+        store.discard();
+
+        assertThat(store.get(1L).getViewedCount()).isZero();
+        store.flush();
+    }
+
+    @Test
+    void sweepRemovesIdleSessionsOnce() {
+        DatabaseSessionStore<LearningSession> first = node(Duration.ZERO);
+        DatabaseSessionStore<LearningSession> second = node(Duration.ZERO);
+        first.put(1L, session(10));
+        first.put(2L, session(5));
+        first.flush();
+
+        int removed = first.sweepExpired() + second.sweepExpired();
+
+        assertThat(removed).isEqualTo(2);
+        assertThat(evicted).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(repository.count()).isZero();
+    }
+}
@@ -1,23 +1,21 @@
 package com.cardbot.bot;
 
-import com.cardbot.model.Card;
+import com.cardbot.model.CardSnapshot;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
-
 import static org.assertj.core.api.Assertions.assertThat;
 
 class LearningSessionTest {
 
     @Test
     void isGoalReached_shouldReturnFalse_whenNoGoal() {
-        var session = LearningSession.create(null, LearningSession.Direction.EN_RU, LearningSession.Order.RANDOM, List.of(), null);
+        var session = LearningSession.create(null, LearningSession.Direction.EN_RU, LearningSession.Order.RANDOM, null, null);
         assertThat(session.isGoalReached()).isFalse();
     }
 
     @Test
     void isGoalReached_shouldReturnFalse_whenViewedCountLessThanGoal() {
-        var session = LearningSession.create(null, LearningSession.Direction.EN_RU, LearningSession.Order.RANDOM, List.of(), 10);
+        var session = LearningSession.create(null, LearningSession.Direction.EN_RU, LearningSession.Order.RANDOM, null, 10);
         session.incrementViewedCount();
         session.incrementViewedCount();
         assertThat(session.isGoalReached()).isFalse();
@@ -25,10 +23,27 @@ class LearningSessionTest {
 
     @Test
     void isGoalReached_shouldReturnTrue_whenViewedCountEqualsGoal() {
-        var session = LearningSession.create(null, LearningSession.Direction.EN_RU, LearningSession.Order.RANDOM, List.of(), 10);
+        var session = LearningSession.create(null, LearningSession.Direction.EN_RU, LearningSession.Order.RANDOM, null, 10);
         for (int i = 0; i < 10; i++) {
             session.incrementViewedCount();
         }
         assertThat(session.isGoalReached()).isTrue();
     }
+
+    @Test
+    void takePrefetched_shouldServeCardOnlyAfterTheCardItWasPreparedFor() {
+        var session = LearningSession.create(null, LearningSession.Direction.EN_RU, LearningSession.Order.SPACED, null, null);
+        var next = new CardSnapshot(2L, "dog", "собака", null);
+
+        session.prefetch(1L, next);
+        assertThat(session.takePrefetched(3L)).isEmpty();
+        assertThat(session.takePrefetched(1L)).isEmpty();
+
+        session.prefetch(1L, next);
+        assertThat(session.takePrefetched(1L)).contains(next);
+
+        session.prefetch(1L, next);
+        session.invalidatePrefetch();
+        assertThat(session.takePrefetched(1L)).isEmpty();
+    }
 }
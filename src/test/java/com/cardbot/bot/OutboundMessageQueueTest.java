@@ -0,0 +1,74 @@
+package com.cardbot.bot;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundMessageQueueTest {
+
+    private static final byte[] SENT = """
+            {"ok":true,"result":{"message_id":1,"date":0,"chat":{"id":42,"type":"private"}}}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private OutboundMessageQueue queue;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, SENT.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(SENT);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void send_shouldReleaseChatQueueAfterCompletion() throws Exception {
+        // всплеск восстанавливается за микросекунду — к ответу сервера bucket уже полон
+        queue = queue(1_000_000, 1);
+
+        Message sent = queue.send(new SendMessage("42", "привет")).get(5, TimeUnit.SECONDS);
+
+        assertThat(sent.getMessageId()).isEqualTo(1);
+        assertThat(queue.chatCount()).isZero();
+    }
+
+    @Test
+    void send_shouldKeepChatQueueUntilBucketRefills() throws Exception {
+        queue = queue(0.01, 1);
+
+        queue.send(new SendMessage("42", "привет")).get(5, TimeUnit.SECONDS);
+
+        assertThat(queue.chatCount()).isEqualTo(1);
+    }
+
+    private OutboundMessageQueue queue(double perChatRate, int perChatBurst) {
+        String apiUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+        return new OutboundMessageQueue("token", apiUrl, 1000, perChatRate, perChatBurst, 1, 2, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,144 @@
+package com.cardbot.bot;
+
+import com.cardbot.model.CardSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionCodecTest {
+
+    @Test
+    void userState_roundTrip() {
+        for (UserState state : List.of(UserState.addingCard(), UserState.editing(42L), UserState.typeLearnInput(7_000_000_000L))) {
+            UserState decoded = UserStateCodec.INSTANCE.decode(UserStateCodec.INSTANCE.encode(state));
+
+            assertThat(decoded.getType()).isEqualTo(state.getType());
+            assertThat(decoded.getCardId()).isEqualTo(state.getCardId());
+        }
+    }
+
+    @Test
+    void learningSession_roundTripKeepsParametersAndDeck() {
+        LearningSession session = LearningSession.create(-1L, LearningSession.Direction.RU_EN,
+                LearningSession.Order.SEQUENTIAL, new SessionDeck(new long[]{1005, 17, 1_000_000}, 2), 20);
+        session.setChatId(-100123L);
+        session.incrementViewedCount();
+
+        byte[] bytes = LearningSessionCodec.INSTANCE.encode(session);
+        LearningSession decoded = LearningSessionCodec.INSTANCE.decode(bytes);
+
+        assertThat(bytes.length).isLessThan(24);
+        assertThat(decoded.getChatId()).isEqualTo(-100123L);
+        assertThat(decoded.getSetIdFilter()).isEqualTo(-1L);
+        assertThat(decoded.getDirection()).isEqualTo(LearningSession.Direction.RU_EN);
+        assertThat(decoded.getOrder()).isEqualTo(LearningSession.Order.SEQUENTIAL);
+        assertThat(decoded.getGoal()).isEqualTo(20);
+        assertThat(decoded.getViewedCount()).isEqualTo(1);
+        assertThat(decoded.getDeck().ids()).containsExactly(1005, 17, 1_000_000);
+        assertThat(decoded.getDeck().position()).isEqualTo(2);
+        assertThat(decoded.getDeck().next(SessionCodecTest::snapshots)).map(CardSnapshot::id).contains(1_000_000L);
+    }
+
+    @Test
+    void learningSession_decodesVersion1SequentialCardsAsDeck() {
+        byte[] v1 = new SessionBytes.Writer()
+                .writeByte(1)
+                .writeNullable(7L)
+                .writeNullable(null)
+                .writeByte(0)
+                .writeByte(LearningSession.Order.SEQUENTIAL.ordinal())
+                .writeNullable(null)
+                .writeLong(1)
+                .writeLong(3)
+                .writeLong(3).writeLong(5).writeLong(1).writeLong(1)
+                .toByteArray();
+
+        LearningSession decoded = LearningSessionCodec.INSTANCE.decode(v1);
+
+        assertThat(decoded.getChatId()).isEqualTo(7L);
+        assertThat(decoded.getViewedCount()).isEqualTo(3);
+        assertThat(decoded.getDeck().ids()).containsExactly(5, 6, 7);
+        assertThat(decoded.getDeck().next(SessionCodecTest::snapshots)).map(CardSnapshot::id).contains(7L);
+    }
+
+    @Test
+    void learningSession_decodesVersion2RandomDeck() {
+        byte[] v2 = new SessionBytes.Writer()
+                .writeByte(2)
+                .writeNullable(null)
+                .writeNullable(null)
+                .writeByte(0)
+                .writeByte(LearningSession.Order.RANDOM.ordinal())
+                .writeNullable(null)
+                .writeLong(0)
+                .writeLong(0)
+                .writeLong(0)
+                .writeByte(1).writeLong(1).writeLong(3).writeLong(30).writeLong(-20).writeLong(10)
+                .toByteArray();
+
+        LearningSession decoded = LearningSessionCodec.INSTANCE.decode(v2);
+
+        assertThat(decoded.getDeck().ids()).containsExactly(30, 10, 20);
+        assertThat(decoded.getDeck().position()).isEqualTo(1);
+    }
+
+    @Test
+    void learningSession_storesRandomDeckAsSeedAndSortedIds() {
+        List<Long> ids = LongStream.rangeClosed(1, 1000).boxed().toList();
+        SessionDeck deck = SessionDeck.shuffled(ids, new Random(7));
+        LearningSession session = LearningSession.create(null, LearningSession.Direction.EN_RU,
+                LearningSession.Order.RANDOM, deck, null);
+        deck.next(SessionCodecTest::snapshots);
+
+        byte[] bytes = LearningSessionCodec.INSTANCE.encode(session);
+        LearningSession decoded = LearningSessionCodec.INSTANCE.decode(bytes);
+
+        // разности отсортированных id — по байту на карточку
+        assertThat(bytes.length).isLessThan(1100);
+        assertThat(decoded.getDeck().ids()).containsExactly(deck.ids());
+        assertThat(decoded.getDeck().position()).isEqualTo(1);
+        assertThat(decoded.getDeck().encodedCards()).isEqualTo(deck.encodedCards());
+
+        decoded.getDeck().next(SessionCodecTest::snapshots);
+        byte[] afterNext = LearningSessionCodec.INSTANCE.encode(decoded);
+        assertThat(LearningSessionCodec.INSTANCE.decode(afterNext).getDeck().position()).isEqualTo(2);
+    }
+
+    @Test
+    void learningSession_decodesVersion3ShuffledIds() {
+        byte[] v3 = new SessionBytes.Writer()
+                .writeByte(3)
+                .writeNullable(null)
+                .writeNullable(null)
+                .writeByte(0)
+                .writeByte(LearningSession.Order.RANDOM.ordinal())
+                .writeNullable(null)
+                .writeLong(0)
+                .writeByte(1).writeLong(2).writeLong(3).writeLong(30).writeLong(-20).writeLong(10)
+                .toByteArray();
+
+        LearningSession decoded = LearningSessionCodec.INSTANCE.decode(v3);
+
+        assertThat(decoded.getDeck().ids()).containsExactly(30, 10, 20);
+        assertThat(decoded.getDeck().position()).isEqualTo(2);
+    }
+
+    @Test
+    void learningSession_rejectsTruncatedData() {
+        LearningSession session = LearningSession.create(null, LearningSession.Direction.EN_RU,
+                LearningSession.Order.RANDOM, new SessionDeck(new long[]{1, 2}, 0), null);
+        byte[] bytes = LearningSessionCodec.INSTANCE.encode(session);
+        byte[] truncated = java.util.Arrays.copyOf(bytes, bytes.length - 1);
+
+        assertThatThrownBy(() -> LearningSessionCodec.INSTANCE.decode(truncated)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<CardSnapshot> snapshots(List<Long> ids) {
+        return ids.stream().map(id -> new CardSnapshot(id, "w" + id, "t" + id, null)).toList();
+    }
+}
@@ -0,0 +1,92 @@
+package com.cardbot.bot;
+
+import com.cardbot.model.CardSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionDeckTest {
+
+    private final List<List<Long>> loads = new ArrayList<>();
+    private final Set<Long> deleted = new HashSet<>();
+    private final Function<List<Long>, List<CardSnapshot>> loader = ids -> {
+        loads.add(ids);
+        return ids.stream().filter(id -> !deleted.contains(id)).map(id -> new CardSnapshot(id, "w" + id, "t" + id, null)).toList();
+    };
+
+    @Test
+    void next_shouldVisitEveryCardOnceInShuffledOrder() {
+        List<Long> ids = LongStream.rangeClosed(1, 40).boxed().toList();
+        SessionDeck deck = SessionDeck.shuffled(ids, new Random(42));
+
+        List<Long> visited = new ArrayList<>();
+        Optional<CardSnapshot> card;
+        while ((card = deck.next(loader)).isPresent()) {
+            visited.add(card.get().id());
+        }
+
+        assertThat(visited).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(visited).isNotEqualTo(ids);
+        assertThat(loads).hasSize((40 + SessionDeck.WINDOW - 1) / SessionDeck.WINDOW);
+        assertThat(deck.next(loader)).isEmpty();
+    }
+
+    @Test
+    void next_shouldSkipCardsDeletedDuringSession() {
+        SessionDeck deck = new SessionDeck(new long[]{5, 6, 7}, 0);
+        deleted.add(6L);
+
+        assertThat(deck.next(loader)).map(CardSnapshot::id).contains(5L);
+        assertThat(deck.next(loader)).map(CardSnapshot::id).contains(7L);
+        assertThat(deck.next(loader)).isEmpty();
+    }
+
+    @Test
+    void next_shouldResumeFromPositionWithFreshWindow() {
+        SessionDeck deck = new SessionDeck(new long[]{1, 2, 3, 4}, 2);
+
+        assertThat(deck.next(loader)).map(CardSnapshot::id).contains(3L);
+        assertThat(loads).containsExactly(List.of(3L, 4L));
+    }
+
+    @Test
+    void inOrder_shouldKeepIdOrderAndHoldOnlyOneWindow() {
+        List<Long> ids = LongStream.rangeClosed(1, 1000).boxed().toList();
+        SessionDeck deck = SessionDeck.inOrder(ids);
+
+        List<Long> visited = new ArrayList<>();
+        for (int i = 0; i < SessionDeck.WINDOW + 1; i++) {
+            visited.add(deck.next(loader).orElseThrow().id());
+        }
+
+        assertThat(visited).isEqualTo(ids.subList(0, SessionDeck.WINDOW + 1));
+        assertThat(loads).containsExactly(ids.subList(0, SessionDeck.WINDOW),
+                ids.subList(SessionDeck.WINDOW, 2 * SessionDeck.WINDOW));
+        assertThat(deck.estimatedBytes()).isLessThan(8L * ids.size() + 200L * SessionDeck.WINDOW);
+    }
+
+    @Test
+    void prefetch_shouldLoadNextWindowWithoutMovingPosition() {
+        SessionDeck deck = new SessionDeck(new long[]{1, 2, 3}, 0);
+
+        deck.prefetch(loader);
+        assertThat(deck.isLoaded()).isTrue();
+        assertThat(deck.position()).isZero();
+        assertThat(deck.next(loader)).map(CardSnapshot::id).contains(1L);
+        assertThat(loads).hasSize(1);
+
+        deck.invalidateWindow();
+        assertThat(deck.isLoaded()).isFalse();
+        assertThat(deck.next(loader)).map(CardSnapshot::id).contains(2L);
+        assertThat(loads).hasSize(2);
+    }
+}
@@ -0,0 +1,54 @@
+package com.cardbot.bot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "telegram.bot.mode=webhook",
+        "telegram.bot.webhook.secret=test-secret"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TelegramWebhookControllerTest {
+
+    private static final String UPDATE = "{\"update_id\": 1}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void onUpdate_shouldRejectRequestWithoutSecret() throws Exception {
+        mockMvc.perform(post("/telegram/webhook").contentType(MediaType.APPLICATION_JSON).content(UPDATE))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void onUpdate_shouldRejectRequestWithWrongSecret() throws Exception {
+        mockMvc.perform(post("/telegram/webhook").contentType(MediaType.APPLICATION_JSON).content(UPDATE)
+                        .header("X-Telegram-Bot-Api-Secret-Token", "guess"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void onUpdate_shouldAcceptRequestWithSecret() throws Exception {
+        mockMvc.perform(post("/telegram/webhook").contentType(MediaType.APPLICATION_JSON).content(UPDATE)
+                        .header("X-Telegram-Bot-Api-Secret-Token", "test-secret"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void constructor_shouldRequireSecret() {
+        assertThatThrownBy(() -> new TelegramWebhookController(null, " "))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("telegram.bot.webhook.secret");
+    }
+}
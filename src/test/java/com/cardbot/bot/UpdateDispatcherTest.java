@@ -0,0 +1,86 @@
+package com.cardbot.bot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpdateDispatcherTest {
+
+    private UpdateDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void dispatch_shouldKeepOrderWithinChat() throws InterruptedException {
+        dispatcher = new UpdateDispatcher(4, 1000, new SimpleMeterRegistry());
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(500);
+
+        for (int i = 0; i < 500; i++) {
+            int n = i;
+            dispatcher.dispatch(42L, () -> {
+                processed.add(n);
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(processed).isSorted().hasSize(500);
+    }
+
+    @Test
+    void dispatch_shouldRunDifferentChatsInParallel() throws InterruptedException {
+        dispatcher = new UpdateDispatcher(8, 100, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Хотя бы два из восьми чатов попадают в разные полосы и должны выполняться одновременно
+        for (long chatId = 1; chatId <= 8; chatId++) {
+            dispatcher.dispatch(chatId, () -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+        }
+
+        boolean parallel = started.await(5, TimeUnit.SECONDS);
+        release.countDown();
+        assertThat(parallel).isTrue();
+    }
+
+    @Test
+    void tryDispatch_shouldReject_whenStripeQueueIsFull() throws InterruptedException {
+        dispatcher = new UpdateDispatcher(1, 1, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+
+        assertThat(dispatcher.tryDispatch(1L, () -> {
+            running.countDown();
+            awaitQuietly(release);
+        })).isTrue();
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatcher.tryDispatch(1L, () -> {})).isTrue();
+        assertThat(dispatcher.tryDispatch(1L, () -> {})).isFalse();
+        assertThat(dispatcher.queueDepth()).isEqualTo(1);
+
+        release.countDown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.cardbot.metrics;
+
+import com.cardbot.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class QueryTimeTrackerTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void countsQueriesOfCurrentThread() {
+        QueryTimeTracker.start();
+        userRepository.findByTelegramId(-1L);
+        userRepository.count();
+        QueryTimeTracker.Usage usage = QueryTimeTracker.stop();
+
+        assertThat(usage.queries()).isEqualTo(2);
+        assertThat(usage.nanos()).isPositive();
+    }
+
+    @Test
+    void ignoresQueriesOutsideTrackedSection() {
+        userRepository.count();
+        QueryTimeTracker.Usage usage = QueryTimeTracker.stop();
+
+        assertThat(usage.queries()).isZero();
+    }
+}
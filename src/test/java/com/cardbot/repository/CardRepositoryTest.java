@@ -10,6 +10,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.Instant;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -24,6 +25,7 @@ class CardRepositoryTest {
     private UserRepository userRepository;
 
     private User user;
+    private int ordinal;
 
     @BeforeEach
     void setUp() {
@@ -57,20 +59,45 @@ class CardRepositoryTest {
     }
 
     @Test
-    void findRandomByUserId_shouldReturnRandomCard_whenCardsExist() {
+    void findByUserIdAndUserOrdinal_shouldFindOwnCardOnly() {
         cardRepository.save(createCard("apple", "яблоко"));
-        cardRepository.save(createCard("book", "книга"));
+        Card book = cardRepository.save(createCard("book", "книга"));
+        User other = userRepository.save(User.builder().telegramId(222L).createdAt(Instant.now()).build());
+        Card foreign = createCard("cat", "кошка");
+        foreign.setUser(other);
+        foreign.setUserOrdinal(3);
+        cardRepository.save(foreign);
+
+        assertThat(cardRepository.findByUserIdAndUserOrdinal(user.getId(), 2)).map(Card::getId).contains(book.getId());
+        assertThat(cardRepository.findByUserIdAndUserOrdinal(user.getId(), 3)).isEmpty();
+    }
+
+    @Test
+    void findByUserIdAndCardSetIsNullAndUserOrdinalIn_shouldSkipMissingOrdinals() {
+        Card apple = cardRepository.save(createCard("apple", "яблоко"));
+
+        var found = cardRepository.findByUserIdAndCardSetIsNullAndUserOrdinalIn(user.getId(), List.of(1, 5));
+
+        assertThat(found).extracting(Card::getId).containsExactly(apple.getId());
+    }
+
+    @Test
+    void moveUserOrdinal_shouldRenumberOnlyThatCard() {
+        cardRepository.save(createCard("apple", "яблоко"));
+        Card last = cardRepository.save(createCard("book", "книга"));
 
-        var random = cardRepository.findRandomByUserId(user.getId());
+        assertThat(cardRepository.moveUserOrdinal(user.getId(), 2, 7)).isEqualTo(1);
 
-        assertThat(random).isPresent();
-        assertThat(random.get().getUser().getId()).isEqualTo(user.getId());
+        assertThat(cardRepository.findUserOrdinal(last.getId())).contains(7);
     }
 
     @Test
-    void findRandomByUserId_shouldReturnEmpty_whenNoCards() {
-        var random = cardRepository.findRandomByUserId(user.getId());
-        assertThat(random).isEmpty();
+    void findByUserIdAtOffset_shouldReturnCardsInIdOrder() {
+        cardRepository.save(createCard("apple", "яблоко"));
+        Card second = cardRepository.save(createCard("book", "книга"));
+
+        assertThat(cardRepository.findByUserIdAtOffset(user.getId(), 1)).map(Card::getId).contains(second.getId());
+        assertThat(cardRepository.findByUserIdAtOffset(user.getId(), 2)).isEmpty();
     }
 
     private Card createCard(String word, String translation) {
@@ -78,6 +105,7 @@ class CardRepositoryTest {
                 .user(user)
                 .word(word)
                 .translation(translation)
+                .userOrdinal(++ordinal)
                 .createdAt(Instant.now())
                 .updatedAt(Instant.now())
                 .build();
@@ -1,9 +1,12 @@
 package com.cardbot.repository;
 
+import com.cardbot.model.Card;
+import com.cardbot.model.LearningStats;
 import com.cardbot.model.User;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.Instant;
@@ -17,6 +20,12 @@ class UserRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private LearningStatsRepository learningStatsRepository;
+
     @Test
     void findByTelegramId_shouldReturnUser_whenExists() {
         User user = User.builder()
@@ -38,4 +47,33 @@ class UserRepositoryTest {
         var found = userRepository.findByTelegramId(999999L);
         assertThat(found).isEmpty();
     }
+
+    @Test
+    void findDueReminders_shouldReturnOnlyDueBucketInTimeOrder() {
+        Instant now = Instant.parse("2026-03-01T10:00:00Z");
+        User late = userWithCard(1L, now.minusSeconds(600));
+        userRepository.save(User.builder().telegramId(2L).nextReminderAt(now.minusSeconds(60)).createdAt(Instant.now()).build());
+        userWithCard(3L, now.plusSeconds(60));
+        userWithCard(4L, null);
+        User learned = userWithCard(5L, now);
+        learningStatsRepository.save(LearningStats.builder().user(learned).lastLearnedAt(now.minusSeconds(5)).build());
+
+        var due = userRepository.findDueReminders(now, Limit.of(10));
+
+        assertThat(due).extracting(ReminderTarget::telegramId).containsExactly(1L, 2L, 5L);
+        assertThat(due).extracting(ReminderTarget::hasCards).containsExactly(true, false, true);
+        assertThat(due.get(0).userId()).isEqualTo(late.getId());
+        assertThat(due.get(2).lastLearnedAt()).isEqualTo(now.minusSeconds(5));
+        assertThat(userRepository.findDueReminders(now, Limit.of(1))).hasSize(1);
+    }
+
+    private User userWithCard(long telegramId, Instant nextReminderAt) {
+        User user = userRepository.save(User.builder()
+                .telegramId(telegramId)
+                .nextReminderAt(nextReminderAt)
+                .createdAt(Instant.now())
+                .build());
+        cardRepository.save(Card.builder().user(user).word("word").translation("слово").userOrdinal(1).build());
+        return user;
+    }
 }
@@ -1,7 +1,9 @@
 package com.cardbot.service;
 
 import com.cardbot.model.Card;
+import com.cardbot.model.CardSet;
 import com.cardbot.model.User;
+import com.cardbot.repository.CardRepository;
 import com.cardbot.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,8 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -23,9 +27,15 @@ class CardServiceTest {
     @Autowired
     private CardService cardService;
 
+    @Autowired
+    private CardSetService cardSetService;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CardRepository cardRepository;
+
     private User user;
 
     @BeforeEach
@@ -133,4 +143,84 @@ class CardServiceTest {
 
         assertThat(cardService.findById(id)).isEmpty();
     }
+
+    @Test
+    void counters_shouldFollowCreateMoveAndDelete() {
+        CardSet verbs = cardSetService.create(user, "Verbs");
+        CardSet nouns = cardSetService.create(user, "Nouns");
+        Card run = cardService.create(user, verbs, "run", "бежать", null);
+        cardService.create(user, verbs, "go", "идти", null);
+        Card apple = cardService.create(user, "apple", "яблоко", null);
+
+        cardService.moveToSet(run, nouns);
+        cardService.moveToSet(apple, nouns);
+        cardService.delete(run);
+
+        var overview = cardSetService.overview(user);
+        assertThat(overview.totalCards()).isEqualTo(2);
+        assertThat(cardService.countByUser(user)).isEqualTo(2);
+        assertThat(overview.withoutSet()).isZero();
+        assertThat(overview.sets()).extracting(set -> set.name() + "=" + set.cardCount())
+                .containsExactly("Nouns=1", "Verbs=1");
+    }
+
+    @Test
+    void getRandomCard_shouldCoverAllOwnCards_whenIdsInterleaveWithOtherUsers() {
+        User otherUser = userRepository.save(User.builder()
+                .telegramId(333L)
+                .username("other")
+                .createdAt(Instant.now())
+                .build());
+        Set<Long> own = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            own.add(cardService.create(user, "word" + i, "слово" + i, null).getId());
+            for (int j = 0; j < 20; j++) {
+                cardService.create(otherUser, "foreign" + j, "чужое" + j, null);
+            }
+        }
+
+        Set<Long> drawn = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            drawn.add(cardService.getRandomCard(user).orElseThrow().getId());
+        }
+
+        assertThat(drawn).isEqualTo(own);
+    }
+
+    @Test
+    void delete_shouldKeepUserOrdinalsDense() {
+        Card first = cardService.create(user, "one", "один", null);
+        Card second = cardService.create(user, "two", "два", null);
+        Card third = cardService.create(user, "three", "три", null);
+
+        cardService.delete(first);
+
+        assertThat(cardRepository.findUserOrdinal(third.getId())).contains(1);
+        assertThat(cardRepository.findUserOrdinal(second.getId())).contains(2);
+        Card fourth = cardService.create(user, "four", "четыре", null);
+        assertThat(fourth.getUserOrdinal()).isEqualTo(3);
+
+        Set<Long> drawn = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            drawn.add(cardService.getRandomCard(user).orElseThrow().getId());
+        }
+        assertThat(drawn).containsExactlyInAnyOrder(second.getId(), third.getId(), fourth.getId());
+    }
+
+    @Test
+    void getRandomCard_shouldRespectSetFilter() {
+        CardSet set = cardSetService.create(user, "Animals");
+        Card inSet = cardService.create(user, set, "cat", "кошка", null);
+        Card withoutSet = cardService.create(user, "apple", "яблоко", null);
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(cardService.getRandomCard(user, set.getId())).map(Card::getId).contains(inSet.getId());
+            assertThat(cardService.getRandomCardWithoutSet(user)).map(Card::getId).contains(withoutSet.getId());
+        }
+    }
+
+    @Test
+    void getRandomCard_shouldReturnEmpty_whenNoCards() {
+        assertThat(cardService.getRandomCard(user)).isEmpty();
+    }
 }
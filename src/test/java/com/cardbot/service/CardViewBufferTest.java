@@ -0,0 +1,191 @@
+package com.cardbot.service;
+
+import com.cardbot.model.Card;
+import com.cardbot.model.User;
+import com.cardbot.repository.CardRepository;
+import com.cardbot.repository.LearningStatsRepository;
+import com.cardbot.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class CardViewBufferTest {
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LearningStatsRepository learningStatsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CardViewBuffer buffer;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        // интервал больше времени теста: пишет только явный flush()
+        buffer = new CardViewBuffer(CardViewBuffer.Durability.BUFFERED, Duration.ofHours(1), 1000, 1000, ZoneOffset.UTC,
+                jdbcTemplate, transactionManager, learningStatsRepository, userRepository, event -> { }, new SimpleMeterRegistry());
+        user = userRepository.save(User.builder()
+                .telegramId(555L)
+                .username("viewer")
+                .createdAt(Instant.now())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        buffer.shutdown();
+    }
+
+    @Test
+    void flush_shouldWriteViewsInOneBatchAndSumStatsPerUser() {
+        Card apple = cardService.create(user, "apple", "яблоко", null);
+        Card pear = cardService.create(user, "pear", "груша", null);
+        Instant last = Instant.parse("2026-03-01T10:00:00Z");
+        buffer.record(user.getId(), apple.getId(), last.minusSeconds(60));
+        buffer.record(user.getId(), pear.getId(), last.minusSeconds(30));
+        buffer.record(user.getId(), apple.getId(), last);
+
+        assertThat(viewCount()).isZero();
+        assertThat(learningStatsRepository.findByUser_Id(user.getId())).isEmpty();
+
+        buffer.flush();
+
+        assertThat(viewCount()).isEqualTo(3);
+        var stats = learningStatsRepository.findByUser_Id(user.getId()).orElseThrow();
+        assertThat(stats.getCardsViewedTotal()).isEqualTo(3L);
+        assertThat(stats.getLastLearnedAt()).isEqualTo(last);
+
+        buffer.record(user.getId(), pear.getId(), last.plusSeconds(5));
+        buffer.flush();
+        assertThat(learningStatsRepository.findByUser_Id(user.getId()).orElseThrow().getCardsViewedTotal()).isEqualTo(4L);
+        assertThat(totalViews(apple)).isEqualTo(2L);
+        assertThat(totalViews(pear)).isEqualTo(2L);
+    }
+
+    @Test
+    void flush_shouldSkipViewsOfCardsDeletedBeforeWrite() {
+        Card kept = cardService.create(user, "cat", "кошка", null);
+        Card deleted = cardService.create(user, "dog", "собака", null);
+        buffer.record(user.getId(), kept.getId(), Instant.now());
+        buffer.record(user.getId(), deleted.getId(), Instant.now());
+        cardService.delete(deleted);
+        cardRepository.flush();
+
+        buffer.flush();
+
+        assertThat(viewCount()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT views FROM daily_activity WHERE user_id = ?", Integer.class, user.getId()))
+                .isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_view_totals WHERE user_id = ?", Integer.class, user.getId()))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void flush_shouldExtendStreakAcrossDaysAndKeepLongest() {
+        Card card = cardService.create(user, "sun", "солнце", null);
+        Instant day = Instant.parse("2026-03-01T12:00:00Z");
+        for (int i : new int[]{0, 1, 2, 5, 6}) {
+            buffer.record(user.getId(), card.getId(), day.plus(Duration.ofDays(i)));
+        }
+        buffer.flush();
+
+        var stats = learningStatsRepository.findByUser_Id(user.getId()).orElseThrow();
+        assertThat(stats.getCurrentStreak()).isEqualTo(2);
+        assertThat(stats.getLongestStreak()).isEqualTo(3);
+        assertThat(stats.getLastActiveDay()).isEqualTo(LocalDate.parse("2026-03-07"));
+
+        // запоздавший просмотр за прошлый день серию не меняет, повторный в тот же день — тоже
+        buffer.record(user.getId(), card.getId(), day.plus(Duration.ofDays(3)));
+        buffer.record(user.getId(), card.getId(), day.plus(Duration.ofDays(6)));
+        buffer.flush();
+
+        stats = learningStatsRepository.findByUser_Id(user.getId()).orElseThrow();
+        assertThat(stats.getCurrentStreak()).isEqualTo(2);
+        assertThat(stats.getCardsViewedTotal()).isEqualTo(7L);
+        assertThat(stats.getLastLearnedAt()).isEqualTo(day.plus(Duration.ofDays(6)));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void flush_shouldRetryFailedBatchInsteadOfDroppingIt() throws InterruptedException {
+        Card card = cardService.create(user, "rain", "дождь", null);
+        AtomicInteger attempts = new AtomicInteger();
+        // первая запись падает в конце транзакции и откатывается целиком
+        CardViewBuffer failing = new CardViewBuffer(CardViewBuffer.Durability.BUFFERED, Duration.ofMillis(20), 1000, 1000,
+                ZoneOffset.UTC, jdbcTemplate, transactionManager, learningStatsRepository, userRepository, event -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IllegalStateException("БД недоступна");
+                    }
+                }, new SimpleMeterRegistry());
+        try {
+            failing.record(user.getId(), card.getId(), Instant.now());
+            failing.record(user.getId(), card.getId(), Instant.now());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (viewCount() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+
+            assertThat(attempts.get()).isGreaterThan(1);
+            assertThat(viewCount()).isEqualTo(2);
+            assertThat(learningStatsRepository.findByUser_Id(user.getId()).orElseThrow().getCardsViewedTotal()).isEqualTo(2L);
+        } finally {
+            failing.shutdown();
+            for (String table : new String[]{"card_views", "card_view_days", "card_view_totals", "daily_activity", "learning_stats", "cards"}) {
+                jdbcTemplate.update("DELETE FROM " + table + " WHERE user_id = ?", user.getId());
+            }
+            userRepository.deleteById(user.getId());
+        }
+    }
+
+    @Test
+    void record_shouldWriteImmediatelyAfterShutdown() throws InterruptedException {
+        Card card = cardService.create(user, "snow", "снег", null);
+        buffer.shutdown();
+
+        buffer.record(user.getId(), card.getId(), Instant.now());
+
+        assertThat(viewCount()).isEqualTo(1);
+    }
+
+    private long viewCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_views WHERE user_id = ?", Long.class, user.getId());
+    }
+
+    private long totalViews(Card card) {
+        return jdbcTemplate.queryForObject("SELECT views FROM card_view_totals WHERE card_id = ?", Long.class, card.getId());
+    }
+}
@@ -0,0 +1,73 @@
+package com.cardbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardViewRetentionJobTest {
+
+    @Test
+    void partitionMonth_shouldParseMonthlyPartitionsOnly() {
+        assertThat(CardViewRetentionJob.partitionMonth("card_views_y2025m03")).contains(YearMonth.of(2025, 3));
+        assertThat(CardViewRetentionJob.partitionMonth("card_views_y2025m12")).contains(YearMonth.of(2025, 12));
+        assertThat(CardViewRetentionJob.partitionMonth("card_views_default")).isEmpty();
+        assertThat(CardViewRetentionJob.partitionMonth("card_views_y2025m13")).isEmpty();
+        assertThat(CardViewRetentionJob.partitionMonth("card_views_y2025m3")).isEmpty();
+        assertThat(CardViewRetentionJob.partitionMonth("card_views_y2025m03_old")).isEmpty();
+    }
+
+    @Test
+    void partitionMonth_shouldReadNamesOfCreatedPartitions() {
+        YearMonth month = YearMonth.of(2026, 1);
+
+        assertThat(CardViewRetentionJob.createPartitionSql(month)).isEqualTo(
+                "CREATE TABLE IF NOT EXISTS card_views_y2026m01 PARTITION OF card_views"
+                        + " FOR VALUES FROM ('2026-01-01 00:00:00+00') TO ('2026-02-01 00:00:00+00')");
+        assertThat(CardViewRetentionJob.partitionMonth("card_views_y2026m01")).contains(month);
+    }
+
+    @Test
+    void horizon_shouldKeepRetentionMonthsBeforeCurrent() {
+        YearMonth current = YearMonth.of(2026, 10);
+        YearMonth horizon = CardViewRetentionJob.horizon(current, 12);
+
+        assertThat(horizon).isEqualTo(YearMonth.of(2025, 10));
+        assertThat(CardViewRetentionJob.isExpired(YearMonth.of(2025, 9), horizon)).isTrue();
+        assertThat(CardViewRetentionJob.isExpired(YearMonth.of(2025, 10), horizon)).isFalse();
+        assertThat(CardViewRetentionJob.isExpired(current, horizon)).isFalse();
+        assertThat(CardViewRetentionJob.isExpired(current.plusMonths(2), horizon)).isFalse();
+    }
+
+    @Test
+    void horizon_shouldCrossYearBoundary() {
+        YearMonth horizon = CardViewRetentionJob.horizon(YearMonth.of(2026, 2), 3);
+
+        assertThat(horizon).isEqualTo(YearMonth.of(2025, 11));
+        assertThat(CardViewRetentionJob.isExpired(YearMonth.of(2025, 10), horizon)).isTrue();
+        assertThat(CardViewRetentionJob.isExpired(YearMonth.of(2025, 12), horizon)).isFalse();
+    }
+
+    @Test
+    void compactCardDaysSql_shouldAddOnlyInsertedDaysToTotals() {
+        String sql = CardViewRetentionJob.compactCardDaysSql("card_views_y2025m01");
+
+        assertThat(sql).isEqualTo("WITH added AS (INSERT INTO card_view_days (user_id, activity_date, card_id, views) "
+                + "SELECT user_id, CAST(viewed_at AT TIME ZONE ? AS DATE), card_id, COUNT(*) FROM card_views_y2025m01"
+                + " GROUP BY 1, 2, 3 ON CONFLICT DO NOTHING RETURNING card_id, user_id, views) "
+                + "INSERT INTO card_view_totals (card_id, user_id, views) "
+                + "SELECT card_id, user_id, SUM(views) FROM added GROUP BY 1, 2 "
+                + "ON CONFLICT (card_id) DO UPDATE SET views = card_view_totals.views + EXCLUDED.views");
+    }
+
+    @Test
+    void compactDailyActivitySql_shouldReadGivenPartition() {
+        String sql = CardViewRetentionJob.compactDailyActivitySql("card_views_y2025m01");
+
+        assertThat(sql).isEqualTo("INSERT INTO daily_activity (user_id, activity_date, views, distinct_cards) "
+                + "SELECT user_id, CAST(viewed_at AT TIME ZONE ? AS DATE), COUNT(*), COUNT(DISTINCT card_id) FROM card_views_y2025m01"
+                + " GROUP BY 1, 2 ON CONFLICT DO NOTHING");
+        assertThat(sql).doesNotContain("FROM card_views ");
+    }
+}
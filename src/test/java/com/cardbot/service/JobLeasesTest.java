@@ -0,0 +1,72 @@
+package com.cardbot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class JobLeasesTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private JobLeases instance(String owner, Duration ttl) {
+        return new JobLeases(jdbcTemplate, transactionManager, meterRegistry, ttl, owner);
+    }
+
+    @Test
+    void runExclusive_shouldSkipJob_whileAnotherInstanceHoldsLease() {
+        JobLeases first = instance("first", Duration.ofMinutes(5));
+        JobLeases second = instance("second", Duration.ofMinutes(5));
+        AtomicBoolean secondRan = new AtomicBoolean();
+
+        boolean ran = first.runExclusive("exclusive", lease ->
+                assertThat(second.runExclusive("exclusive", other -> secondRan.set(true))).isFalse());
+
+        assertThat(ran).isTrue();
+        assertThat(secondRan).isFalse();
+        assertThat(meterRegistry.get("cardbot.jobs.lease").tag("job", "exclusive").tag("result", "busy").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("cardbot.jobs.lease.held").tag("job", "exclusive").timer().count()).isEqualTo(1);
+        // после освобождения аренду сразу берёт другой экземпляр
+        assertThat(second.runExclusive("exclusive", lease -> secondRan.set(true))).isTrue();
+        assertThat(secondRan).isTrue();
+    }
+
+    @Test
+    void tryAcquire_shouldIssueGrowingTokens_andFenceOutPreviousHolder() {
+        JobLeases first = instance("first", Duration.ZERO);
+        JobLeases second = instance("second", Duration.ofMinutes(5));
+        AtomicLong tokens = new AtomicLong();
+
+        // нулевой ttl — аренда первого сразу просрочена, как после долгой паузы
+        JobLeases.Lease stale = first.tryAcquire("fenced").orElseThrow();
+        JobLeases.Lease fresh = second.tryAcquire("fenced").orElseThrow();
+        tokens.set(fresh.token());
+
+        assertThat(fresh.token()).isGreaterThan(stale.token());
+        assertThatThrownBy(stale::fence).isInstanceOf(JobLeases.LeaseLostException.class);
+        fresh.fence();
+        assertThat(first.tryAcquire("fenced")).isEmpty();
+        second.release(fresh);
+        assertThat(first.tryAcquire("fenced")).get().extracting(JobLeases.Lease::token).isEqualTo(tokens.get() + 1);
+    }
+}
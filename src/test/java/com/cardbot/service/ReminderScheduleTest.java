@@ -0,0 +1,46 @@
+package com.cardbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReminderScheduleTest {
+
+    private final ReminderSchedule schedule = new ReminderSchedule(15);
+
+    @Test
+    void next_shouldPickTodayBeforeLocalHourAndTomorrowAfter() {
+        ZoneId moscow = ZoneId.of("Europe/Moscow");
+
+        assertThat(schedule.next(30L, moscow, 9, Instant.parse("2026-03-01T05:00:00Z")))
+                .isEqualTo(Instant.parse("2026-03-01T06:00:00Z"));
+        assertThat(schedule.next(30L, moscow, 9, Instant.parse("2026-03-01T06:00:00Z")))
+                .isEqualTo(Instant.parse("2026-03-02T06:00:00Z"));
+    }
+
+    @Test
+    void next_shouldSpreadUsersOverMinutesById() {
+        Instant after = Instant.parse("2026-03-01T00:00:00Z");
+
+        assertThat(schedule.next(7L, ZoneId.of("UTC"), 10, after)).isEqualTo(Instant.parse("2026-03-01T10:07:00Z"));
+        assertThat(schedule.next(22L, ZoneId.of("UTC"), 10, after)).isEqualTo(Instant.parse("2026-03-01T10:07:00Z"));
+        assertThat(schedule.next(14L, ZoneId.of("UTC"), 10, after)).isEqualTo(Instant.parse("2026-03-01T10:14:00Z"));
+    }
+
+    @Test
+    void next_shouldShiftNonexistentLocalTimeForwardOnDstGap() {
+        // 29.03.2026 в Берлине часы переводятся с 02:00 на 03:00
+        Instant next = schedule.next(0L, ZoneId.of("Europe/Berlin"), 2, Instant.parse("2026-03-28T23:00:00Z"));
+
+        assertThat(next).isEqualTo(Instant.parse("2026-03-29T01:00:00Z"));
+    }
+
+    @Test
+    void zoneOf_shouldFallBackToUtcForUnknownZone() {
+        assertThat(ReminderSchedule.zoneOf("Mars/Olympus")).isEqualTo(ReminderSchedule.DEFAULT_ZONE);
+        assertThat(ReminderSchedule.zoneOf("Asia/Almaty")).isEqualTo(ZoneId.of("Asia/Almaty"));
+    }
+}
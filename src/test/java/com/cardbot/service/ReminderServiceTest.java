@@ -0,0 +1,113 @@
+package com.cardbot.service;
+
+import com.cardbot.model.Card;
+import com.cardbot.model.LearningStats;
+import com.cardbot.model.User;
+import com.cardbot.repository.CardRepository;
+import com.cardbot.repository.LearningStatsRepository;
+import com.cardbot.repository.ReminderTarget;
+import com.cardbot.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class ReminderServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-01T10:00:30Z");
+
+    @Autowired
+    private ReminderService reminderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private LearningStatsRepository learningStatsRepository;
+
+    @Autowired
+    private JobLeases jobLeases;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void commitChunk_shouldMarkDeliveredInBatchAndMoveWholeChunkToNextDay() {
+        User withStats = dueUser(801L, "UTC");
+        learningStatsRepository.save(LearningStats.builder().user(withStats).cardsViewedTotal(5L).build());
+        User withoutStats = dueUser(802L, "UTC");
+        User notDelivered = dueUser(803L, "Asia/Tokyo");
+
+        List<ReminderTarget> chunk = userRepository.findDueReminders(NOW, Limit.of(10));
+        assertThat(chunk).hasSize(3);
+        JobLeases.Lease lease = jobLeases.tryAcquire("reminders-commit").orElseThrow();
+        int advanced = reminderService.commitChunk(chunk, List.of(withStats.getId(), withoutStats.getId()), NOW, lease);
+
+        assertThat(advanced).isEqualTo(3);
+        assertThat(userRepository.findDueReminders(NOW, Limit.of(10))).isEmpty();
+        var stats = learningStatsRepository.findByUser_Id(withStats.getId()).orElseThrow();
+        assertThat(stats.getLastReminderAt()).isEqualTo(NOW);
+        assertThat(stats.getCardsViewedTotal()).isEqualTo(5L);
+        assertThat(learningStatsRepository.findByUser_Id(withoutStats.getId()).orElseThrow().getLastReminderAt()).isEqualTo(NOW);
+        assertThat(learningStatsRepository.findByUser_Id(notDelivered.getId())).isEmpty();
+        // 10:00 по Токио уже прошло — следующее напоминание завтра
+        assertThat(userRepository.findById(notDelivered.getId()).orElseThrow().getNextReminderAt())
+                .isAfter(Instant.parse("2026-03-02T01:00:00Z"))
+                .isBefore(Instant.parse("2026-03-02T01:15:00Z"));
+    }
+
+    @Test
+    void commitChunk_shouldNotWriteChunk_whenLeaseWasTakenOver() {
+        User user = dueUser(804L, "UTC");
+        List<ReminderTarget> chunk = userRepository.findDueReminders(NOW, Limit.of(10));
+        JobLeases.Lease lease = jobLeases.tryAcquire("reminders-fenced").orElseThrow();
+        jdbcTemplate.update("UPDATE job_leases SET fencing_token = fencing_token + 1 WHERE job_name = ?", "reminders-fenced");
+
+        assertThatThrownBy(() -> reminderService.commitChunk(chunk, List.of(user.getId()), NOW, lease))
+                .isInstanceOf(JobLeases.LeaseLostException.class);
+        assertThat(learningStatsRepository.findByUser_Id(user.getId())).isEmpty();
+        assertThat(userRepository.findDueReminders(NOW, Limit.of(10))).hasSize(1);
+    }
+
+    @Test
+    void needsReminder_shouldUseUsersLocalDay() {
+        // занимался в 07:00 UTC: в Токио это 16:00 того же дня, в Лос-Анджелесе — 23:00 накануне
+        Instant learnedAt = Instant.parse("2026-03-01T07:00:00Z");
+
+        assertThat(ReminderService.needsReminder(target("UTC", true, learnedAt), NOW)).isFalse();
+        assertThat(ReminderService.needsReminder(target("Asia/Tokyo", true, learnedAt), NOW)).isFalse();
+        assertThat(ReminderService.needsReminder(target("America/Los_Angeles", true, learnedAt), NOW)).isTrue();
+        assertThat(ReminderService.needsReminder(target("UTC", true, null), NOW)).isTrue();
+        assertThat(ReminderService.needsReminder(target("UTC", false, null), NOW)).isFalse();
+    }
+
+    private User dueUser(long telegramId, String timeZone) {
+        User user = userRepository.save(User.builder()
+                .telegramId(telegramId)
+                .timeZone(timeZone)
+                .nextReminderAt(NOW.minusSeconds(30))
+                .createdAt(Instant.now())
+                .build());
+        cardRepository.save(Card.builder().user(user).word("word").translation("слово").userOrdinal(1).build());
+        return user;
+    }
+
+    private static ReminderTarget target(String timeZone, boolean hasCards, Instant lastLearnedAt) {
+        return new ReminderTarget(1L, 1L, timeZone, 10, NOW, hasCards, lastLearnedAt, null);
+    }
+}
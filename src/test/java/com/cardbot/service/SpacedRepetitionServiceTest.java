@@ -0,0 +1,128 @@
+package com.cardbot.service;
+
+import com.cardbot.model.Card;
+import com.cardbot.model.CardReview;
+import com.cardbot.model.CardSet;
+import com.cardbot.model.User;
+import com.cardbot.repository.CardReviewRepository;
+import com.cardbot.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class SpacedRepetitionServiceTest {
+
+    @Autowired
+    private SpacedRepetitionService spacedRepetitionService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardSetService cardSetService;
+
+    @Autowired
+    private CardReviewRepository cardReviewRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .telegramId(444L)
+                .username("spaced")
+                .createdAt(Instant.now())
+                .build());
+    }
+
+    @Test
+    void schedule_shouldGrowIntervalOnGoodAnswersAndResetOnAgain() {
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        CardReview review = CardReview.builder().ease(SpacedRepetitionService.INITIAL_EASE).build();
+
+        SpacedRepetitionService.schedule(review, ReviewGrade.GOOD, now);
+        assertThat(review.getIntervalDays()).isEqualTo(1);
+        SpacedRepetitionService.schedule(review, ReviewGrade.GOOD, now);
+        assertThat(review.getIntervalDays()).isEqualTo(6);
+        SpacedRepetitionService.schedule(review, ReviewGrade.EASY, now);
+        assertThat(review.getIntervalDays()).isEqualTo(16);
+        assertThat(review.getDueAt()).isEqualTo(now.plus(Duration.ofDays(16)));
+
+        SpacedRepetitionService.schedule(review, ReviewGrade.AGAIN, now);
+        assertThat(review.getRepetitions()).isZero();
+        assertThat(review.getLapses()).isEqualTo(1);
+        assertThat(review.getDueAt()).isEqualTo(now.plus(SpacedRepetitionService.RELEARN_DELAY));
+        assertThat(review.getEase()).isBetween(SpacedRepetitionService.MIN_EASE, SpacedRepetitionService.INITIAL_EASE);
+    }
+
+    @Test
+    void nextDue_shouldServeMostOverdueCardAndMoveItAfterGrade() {
+        Card newer = cardService.create(user, "newer", "новее", null);
+        Card older = cardService.create(user, "older", "старше", null);
+        setDue(newer, Instant.now().minus(Duration.ofHours(1)));
+        setDue(older, Instant.now().minus(Duration.ofDays(3)));
+
+        assertThat(spacedRepetitionService.nextDue(user.getId(), null)).map(Card::getId).contains(older.getId());
+
+        spacedRepetitionService.grade(user.getId(), older.getId(), ReviewGrade.GOOD);
+
+        assertThat(spacedRepetitionService.nextDue(user.getId(), null)).map(Card::getId).contains(newer.getId());
+        spacedRepetitionService.grade(user.getId(), newer.getId(), ReviewGrade.HARD);
+        assertThat(spacedRepetitionService.nextDue(user.getId(), null)).isEmpty();
+    }
+
+    @Test
+    void nextDueAfter_shouldSkipCardBeingGraded() {
+        Card first = cardService.create(user, "first", "первая", null);
+        Card second = cardService.create(user, "second", "вторая", null);
+        setDue(first, Instant.now().minus(Duration.ofDays(2)));
+        setDue(second, Instant.now().minus(Duration.ofDays(1)));
+
+        assertThat(spacedRepetitionService.nextDueAfter(user.getId(), null, first.getId())).map(Card::getId).contains(second.getId());
+        assertThat(spacedRepetitionService.nextDueAfter(user.getId(), null, second.getId())).map(Card::getId).contains(first.getId());
+
+        setDue(second, Instant.now().plus(Duration.ofDays(1)));
+        assertThat(spacedRepetitionService.nextDueAfter(user.getId(), null, first.getId())).isEmpty();
+    }
+
+    @Test
+    void nextDue_shouldFollowCardMovedToAnotherSet() {
+        CardSet set = cardSetService.create(user, "Еда");
+        Card card = cardService.create(user, "bread", "хлеб", null);
+
+        assertThat(spacedRepetitionService.nextDue(user.getId(), set.getId())).isEmpty();
+        assertThat(spacedRepetitionService.nextDue(user.getId(), -1L)).map(Card::getId).contains(card.getId());
+
+        cardService.moveToSet(card, set);
+
+        assertThat(spacedRepetitionService.nextDue(user.getId(), set.getId())).map(Card::getId).contains(card.getId());
+        assertThat(spacedRepetitionService.nextDue(user.getId(), -1L)).isEmpty();
+    }
+
+    @Test
+    void grade_shouldIgnoreForeignCard() {
+        Card card = cardService.create(user, "cat", "кошка", null);
+        User other = userRepository.save(User.builder().telegramId(445L).username("other").createdAt(Instant.now()).build());
+
+        assertThat(spacedRepetitionService.grade(other.getId(), card.getId(), ReviewGrade.EASY)).isEmpty();
+    }
+
+    private void setDue(Card card, Instant dueAt) {
+        CardReview review = cardReviewRepository.findById(card.getId()).orElseThrow();
+        review.setDueAt(dueAt);
+    }
+}
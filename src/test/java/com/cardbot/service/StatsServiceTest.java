@@ -1,21 +1,32 @@
 package com.cardbot.service;
 
+import com.cardbot.model.CardSnapshot;
 import com.cardbot.model.User;
+import com.cardbot.repository.CardViewDayRepository;
+import com.cardbot.repository.CardViewTotalRepository;
+import com.cardbot.repository.DailyActivityRepository;
+import com.cardbot.repository.LearningStatsRepository;
 import com.cardbot.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @ActiveProfiles("test")
 @Transactional
+@RecordApplicationEvents
 class StatsServiceTest {
 
     @Autowired
@@ -27,9 +38,27 @@ class StatsServiceTest {
     @Autowired
     private LearningService learningService;
 
+    @Autowired
+    private CardViewBuffer cardViewBuffer;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private LearningStatsRepository learningStatsRepository;
+
+    @Autowired
+    private DailyActivityRepository dailyActivityRepository;
+
+    @Autowired
+    private CardViewDayRepository cardViewDayRepository;
+
+    @Autowired
+    private CardViewTotalRepository cardViewTotalRepository;
+
+    @Autowired
+    private ApplicationEvents events;
+
     private User user;
 
     @BeforeEach
@@ -64,4 +93,63 @@ class StatsServiceTest {
         assertThat(stats.streak()).isEqualTo(1);
         assertThat(stats.distinctCardsToday()).isEqualTo(1);
     }
+
+    @Test
+    void getStats_shouldReadStoredStreakAndDistinctCountsFromDailyRollups() {
+        var apple = cardService.create(user, "apple", "яблоко", null);
+        var book = cardService.create(user, "book", "книга", null);
+        var cat = cardService.create(user, "cat", "кошка", null);
+        Instant now = Instant.now();
+        cardViewBuffer.record(user.getId(), cat.getId(), now.minus(Duration.ofDays(10)));
+        cardViewBuffer.record(user.getId(), apple.getId(), now.minus(Duration.ofDays(2)));
+        cardViewBuffer.record(user.getId(), book.getId(), now.minus(Duration.ofDays(1)));
+        cardViewBuffer.record(user.getId(), apple.getId(), now);
+        cardViewBuffer.record(user.getId(), apple.getId(), now);
+
+        var stats = statsService.getStats(user);
+
+        assertThat(stats.cardsViewedTotal()).isEqualTo(5);
+        assertThat(stats.streak()).isEqualTo(3);
+        assertThat(stats.longestStreak()).isEqualTo(3);
+        assertThat(stats.distinctCardsToday()).isEqualTo(1);
+        assertThat(stats.distinctCardsThisWeek()).isEqualTo(2);
+    }
+
+    @Test
+    void getStats_shouldServeSnapshotUntilUserStatsChange() {
+        var card = cardService.create(user, "apple", "яблоко", null);
+        var unused = cardService.create(user, "book", "книга", null);
+        learningService.incrementCardsViewed(user, card);
+
+        var first = statsService.getStats(user);
+        assertThat(statsService.getStats(user)).isSameAs(first);
+        assertThat(first.topViewedCards()).extracting(CardSnapshot::word).containsExactly("apple");
+
+        cardService.delete(unused);
+        assertThat(events.stream(UserStatsChangedEvent.class))
+                .extracting(UserStatsChangedEvent::userId)
+                .containsOnly(user.getId())
+                .hasSize(4);
+
+        // в тесте транзакция не коммитится, поэтому слушатель вызывается напрямую
+        statsService.onStatsChanged(new UserStatsChangedEvent(user.getId()));
+        var fresh = statsService.getStats(user);
+        assertThat(fresh).isNotSameAs(first);
+        assertThat(fresh.totalCards()).isEqualTo(1);
+        assertThat(first.totalCards()).isEqualTo(2);
+    }
+
+    @Test
+    void getStats_shouldNotCacheSnapshots_whenSessionsAreShared() {
+        StatsService shared = new StatsService(cardService, learningStatsRepository, dailyActivityRepository,
+                cardViewDayRepository, cardViewTotalRepository, new SimpleMeterRegistry(), ZoneOffset.UTC,
+                100, Duration.ofMinutes(10), "database");
+        var first = shared.getStats(user);
+
+        // карточку добавил другой экземпляр: событие до этого процесса не дойдёт
+        cardService.create(user, "apple", "яблоко", null);
+
+        assertThat(shared.getStats(user).totalCards()).isEqualTo(1);
+        assertThat(first.totalCards()).isZero();
+    }
 }
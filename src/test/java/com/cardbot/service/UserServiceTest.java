@@ -1,12 +1,19 @@
 package com.cardbot.service;
 
+import com.cardbot.metrics.QueryTimeTracker;
 import com.cardbot.model.User;
 import com.cardbot.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.ZoneId;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -21,6 +28,15 @@ class UserServiceTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private DefaultTopicsService defaultTopicsService;
+
+    @Autowired
+    private ReminderSchedule reminderSchedule;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Test
     void getOrCreate_shouldCreateNewUser_whenNotExists() {
         User user = userService.getOrCreate(12345L, "newuser");
@@ -38,4 +54,75 @@ class UserServiceTest {
         assertThat(second.getId()).isEqualTo(first.getId());
         assertThat(userRepository.count()).isEqualTo(1);
     }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void getOrCreate_shouldServeRepeatCallsFromCache() {
+        User first = userService.getOrCreate(424242L, "cached");
+        try {
+            QueryTimeTracker.start();
+            User second = userService.getOrCreate(424242L, "cached");
+            QueryTimeTracker.Usage usage = QueryTimeTracker.stop();
+
+            assertThat(second.getId()).isEqualTo(first.getId());
+            assertThat(usage.queries()).isZero();
+        } finally {
+            userRepository.deleteById(first.getId());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void getOrCreate_shouldReadDatabaseEachTime_whenSessionsAreShared() {
+        UserService shared = new UserService(userRepository, defaultTopicsService, reminderSchedule, transactionTemplate,
+                new SimpleMeterRegistry(), 100, Duration.ofMinutes(30), "database");
+        User first = shared.getOrCreate(464646L, "shared");
+        try {
+            // другой экземпляр меняет пользователя в обход этого
+            userService.updateReminder(first, ZoneId.of("Asia/Tokyo"), 9);
+
+            QueryTimeTracker.start();
+            User second = shared.getOrCreate(464646L, "shared");
+            QueryTimeTracker.Usage usage = QueryTimeTracker.stop();
+
+            assertThat(usage.queries()).isPositive();
+            assertThat(second.getReminderHour()).isEqualTo(9);
+        } finally {
+            userRepository.deleteById(first.getId());
+        }
+    }
+
+    @Test
+    void getOrCreate_shouldNotCacheUserBeforeCommit() {
+        userService.getOrCreate(434343L, "uncommitted");
+
+        QueryTimeTracker.start();
+        userService.getOrCreate(434343L, "uncommitted");
+        QueryTimeTracker.Usage usage = QueryTimeTracker.stop();
+
+        assertThat(usage.queries()).isPositive();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void updateReminder_shouldRescheduleAndRefreshCachedUser() {
+        User user = userService.getOrCreate(454545L, "reminder");
+        try {
+            assertThat(user.getNextReminderAt()).isNotNull();
+
+            userService.updateReminder(user, ZoneId.of("Asia/Tokyo"), 8);
+            User cached = userService.getOrCreate(454545L, "reminder");
+
+            assertThat(cached.getTimeZone()).isEqualTo("Asia/Tokyo");
+            assertThat(cached.getReminderHour()).isEqualTo(8);
+            assertThat(cached.getNextReminderAt().atZone(ZoneId.of("Asia/Tokyo")).getHour()).isEqualTo(8);
+
+            userService.disableReminders(cached);
+
+            assertThat(userService.getOrCreate(454545L, "reminder").getNextReminderAt()).isNull();
+            assertThat(userRepository.findById(user.getId()).orElseThrow().getNextReminderAt()).isNull();
+        } finally {
+            userRepository.deleteById(user.getId());
+        }
+    }
 }